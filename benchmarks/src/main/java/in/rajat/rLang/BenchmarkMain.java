@@ -0,0 +1,27 @@
+package in.rajat.rLang;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached and writes the results
+ * as JSON, so allocation rates can be tracked across commits. Any regular
+ * JMH command line options (benchmark regex, -p, -f, ...) are passed through.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("rlang.bench.result", "jmh-result.json"))
+                .build();
+
+        new Runner(options).run();
+    }
+}
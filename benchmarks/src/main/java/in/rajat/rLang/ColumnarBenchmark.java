@@ -0,0 +1,74 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.columnar.Column;
+import in.rajat.rLang.columnar.ColumnarEvaluator;
+import in.rajat.rLang.expressions.Expression;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores one expression against a table of rows, once through the columnar
+ * evaluator and once row by row through the Interpreter. Both report rows
+ * per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColumnarBenchmark {
+
+    @Param({"(price * quantity - discount) / quantity > threshold"})
+    public String source;
+
+    @Param({"100000"})
+    public int rows;
+
+    private Expression expression;
+    private Map<String, Column> columns;
+    private double[][] values;
+    private final String[] names = {"price", "quantity", "discount", "threshold"};
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long rows;
+    }
+
+    @Setup
+    public void setup() {
+        Diagnostics diagnostics = new Diagnostics();
+        expression = new RParser(new RScanner(source, diagnostics).scanTokenBuffer(), diagnostics).parse();
+
+        Random random = new Random(42);
+        values = new double[names.length][rows];
+        columns = new HashMap<>();
+        for (int c = 0; c < names.length; c++) {
+            for (int r = 0; r < rows; r++) values[c][r] = 1 + random.nextInt(1000);
+            columns.put(names[c], Column.of(values[c]));
+        }
+    }
+
+    @Benchmark
+    public Object columnar(Counters counters) {
+        counters.rows += rows;
+        return new ColumnarEvaluator(expression, columns).evaluate(rows);
+    }
+
+    @Benchmark
+    public void rowByRow(Counters counters, Blackhole blackhole) {
+        Map<String, Object> bindings = new HashMap<>();
+        Interpreter interpreter = new Interpreter(bindings);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < names.length; c++) bindings.put(names[c], values[c][r]);
+            blackhole.consume(interpreter.interpret(expression));
+        }
+        counters.rows += rows;
+    }
+}
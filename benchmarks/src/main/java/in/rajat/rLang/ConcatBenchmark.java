@@ -0,0 +1,55 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluations per second of a long string concatenation chain, the shape
+ * templating expressions take: {@code "<" + x + "," + y + ...}. A chain
+ * headed by a string literal is joined in one pass by the VM and the
+ * specializing tree; one headed by a variable goes through ropes there.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcatBenchmark {
+
+    @Param({"INTERPRETER", "VM", "SPECIALIZING", "JIT"})
+    public ExecutionMode mode;
+
+    // Operands in the chain. Kept under Script.MAX_RECURSIVE_DEPTH so every
+    // mode runs its own evaluator.
+    @Param({"10", "100", "500"})
+    public int length;
+
+    // Whether the chain starts with a string literal or a variable.
+    @Param({"true", "false"})
+    public boolean literalHead;
+
+    private RLangEngine engine;
+    private Script script;
+    private final Map<String, Object> bindings = Map.of("x", "value-0123456789", "y", 42.0);
+
+    @Setup
+    public void setup() {
+        engine = new RLangEngine(mode, false, 16, 1);
+        StringBuilder source = new StringBuilder(literalHead ? "\"<\"" : "x");
+        for (int i = 1; i < length; i++) {
+            source.append(" + ").append(i % 3 == 0 ? "\", \"" : i % 3 == 1 ? "x" : "y");
+        }
+        Diagnostics diagnostics = new Diagnostics();
+        script = engine.compile(source.toString(), diagnostics);
+        if (script == null) throw new IllegalStateException(diagnostics.messages().toString());
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        return engine.execute(script, bindings);
+    }
+}
@@ -0,0 +1,62 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of one shared RLangEngine evaluating a working set of sources
+ * from several threads. Run with {@code -t 1}, {@code -t 2}, ... up to the
+ * core count to check that throughput scales with the number of threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+
+    @Param({"INTERPRETER", "VM", "SPECIALIZING", "JIT"})
+    public ExecutionMode mode;
+
+    @Param({"WIDE_FLAT"})
+    public InputShape shape;
+
+    @Param({"100"})
+    public int size;
+
+    // Collect RLangMetrics. JFR events cost nothing here unless the run is
+    // started with a recording (-jvmArgsAppend -XX:StartFlightRecording).
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    // Distinct sources in the working set; all of them fit in the cache.
+    @Param({"256"})
+    public int sources;
+
+    private RLangEngine engine;
+    private String[] inputs;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int next;
+    }
+
+    @Setup
+    public void setup() {
+        // With the optimizer on every constant source would fold to a literal.
+        engine = new RLangEngine(mode, false, sources * 2, 1000, metrics);
+        inputs = new String[sources];
+        for (int i = 0; i < sources; i++) {
+            inputs[i] = i + " + " + shape.generate(size);
+        }
+    }
+
+    @Benchmark
+    public Object eval(ThreadState state) {
+        String source = inputs[state.next++ & (inputs.length - 1)];
+        return engine.eval(source, new Diagnostics());
+    }
+}
@@ -0,0 +1,65 @@
+package in.rajat.rLang;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to bring a parse up to date after typing a character in the middle
+ * of a source and deleting it again: a full scan and parse of each text
+ * against IncrementalParser, with and without building the expression.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IncrementalBenchmark {
+
+    @Param({"DEEP_NESTING", "WIDE_FLAT", "STRING_HEAVY", "NUMBER_HEAVY", "COMMENT_HEAVY"})
+    public InputShape shape;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private String source;
+    private String edited;
+    private int offset;
+    private IncrementalParser parser;
+
+    @Setup
+    public void setup() {
+        source = shape.generate(size);
+        // Inside a number, string or comment for every shape.
+        offset = source.length() / 2;
+        while (!Character.isLetterOrDigit(source.charAt(offset - 1))) offset++;
+        edited = source.substring(0, offset) + "7" + source.substring(offset);
+        parser = new IncrementalParser(source);
+    }
+
+    @Benchmark
+    public Object fullReparse() {
+        Object first = parse(edited);
+        return parse(source) != first;
+    }
+
+    @Benchmark
+    public Object incrementalDiagnostics() {
+        parser.edit(offset, 0, "7");
+        return parser.edit(offset, 1, "");
+    }
+
+    @Benchmark
+    public Object incrementalExpression() {
+        parser.edit(offset, 0, "7");
+        Object first = parser.expression();
+        parser.edit(offset, 1, "");
+        return parser.expression() != first;
+    }
+
+    private static Object parse(String text) {
+        Diagnostics diagnostics = new Diagnostics();
+        return new RParser(new RScanner(text, diagnostics).scanTokenBuffer(), diagnostics).parse();
+    }
+}
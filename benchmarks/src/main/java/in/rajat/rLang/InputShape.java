@@ -0,0 +1,81 @@
+package in.rajat.rLang;
+
+import java.util.Random;
+
+/**
+ * Synthetic rLang sources used by the benchmarks. {@code size} is roughly
+ * the number of operands in the generated expression.
+ */
+public enum InputShape {
+    DEEP_NESTING {
+        @Override
+        String generate(int size, Random random) {
+            StringBuilder out = new StringBuilder();
+            for (int i = 0; i < size; i++) out.append("(").append(random.nextInt(100)).append(" + ");
+            out.append("1");
+            for (int i = 0; i < size; i++) out.append(")");
+            return out.toString();
+        }
+    },
+
+    WIDE_FLAT {
+        @Override
+        String generate(int size, Random random) {
+            String[] operators = {" + ", " - ", " * ", " / "};
+            StringBuilder out = new StringBuilder("1");
+            for (int i = 0; i < size; i++) {
+                out.append(operators[random.nextInt(operators.length)]).append(1 + random.nextInt(9));
+            }
+            return out.toString();
+        }
+    },
+
+    STRING_HEAVY {
+        @Override
+        String generate(int size, Random random) {
+            StringBuilder out = new StringBuilder("\"start\"");
+            for (int i = 0; i < size; i++) {
+                out.append(" + \"");
+                int length = 4 + random.nextInt(28);
+                for (int c = 0; c < length; c++) out.append((char) ('a' + random.nextInt(26)));
+                out.append('"');
+            }
+            return out.toString();
+        }
+    },
+
+    NUMBER_HEAVY {
+        @Override
+        String generate(int size, Random random) {
+            StringBuilder out = new StringBuilder("0.5");
+            for (int i = 0; i < size; i++) {
+                out.append(i % 2 == 0 ? " + " : " * ")
+                        .append(random.nextInt(1_000_000))
+                        .append('.')
+                        .append(random.nextInt(1_000_000));
+            }
+            return out.toString();
+        }
+    },
+
+    COMMENT_HEAVY {
+        @Override
+        String generate(int size, Random random) {
+            StringBuilder out = new StringBuilder("1");
+            for (int i = 0; i < size; i++) {
+                out.append(" // ");
+                int length = 40 + random.nextInt(80);
+                for (int c = 0; c < length; c++) out.append((char) ('a' + random.nextInt(26)));
+                out.append("\n + ").append(random.nextInt(10));
+            }
+            return out.toString();
+        }
+    };
+
+    abstract String generate(int size, Random random);
+
+    public String generate(int size) {
+        // Fixed seed so every run measures the same input.
+        return generate(size, new Random(42));
+    }
+}
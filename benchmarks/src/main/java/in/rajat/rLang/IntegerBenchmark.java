@@ -0,0 +1,59 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluations per second of integer-heavy arithmetic, the shape counters and
+ * IDs take: {@code (x * 32 + 1) - (x * 1 - 7) + ...}. The same expression is
+ * run with integer literals and an integer binding, and with every literal
+ * and the binding written as a double, so the two number kinds can be
+ * compared in each mode.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntegerBenchmark {
+
+    @Param({"INTERPRETER", "VM", "SPECIALIZING", "JIT"})
+    public ExecutionMode mode;
+
+    @Param({"true", "false"})
+    public boolean integers;
+
+    // Terms in the sum. Kept under Script.MAX_RECURSIVE_DEPTH so every mode
+    // runs its own evaluator.
+    @Param({"100"})
+    public int terms;
+
+    private RLangEngine engine;
+    private Script script;
+    private Map<String, Object> bindings;
+
+    @Setup
+    public void setup() {
+        engine = new RLangEngine(mode, false, 16, 1);
+        String suffix = integers ? "" : ".0";
+        StringBuilder source = new StringBuilder();
+        for (int i = 1; i <= terms; i++) {
+            if (i > 1) source.append(" + ");
+            source.append("(x * ").append(31 + i).append(suffix).append(" + ").append(i).append(suffix)
+                    .append(") - (x * ").append(i).append(suffix).append(" - 7").append(suffix).append(')');
+        }
+        bindings = Map.of("x", integers ? (Object) 123_456_789L : (Object) 123_456_789.0);
+        Diagnostics diagnostics = new Diagnostics();
+        script = engine.compile(source.toString(), diagnostics);
+        if (script == null) throw new IllegalStateException(diagnostics.messages().toString());
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        return engine.execute(script, bindings);
+    }
+}
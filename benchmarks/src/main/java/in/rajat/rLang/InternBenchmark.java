@@ -0,0 +1,77 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generated source that keeps repeating the same few subexpressions, the
+ * way templated rules do, compiled and interpreted with and without an
+ * interning parse. The GC profiler's alloc rate on {@code compile} shows
+ * the tree shrinking; {@code evaluate} shows shared subtrees being
+ * evaluated once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InternBenchmark {
+
+    @Param({"false", "true"})
+    public boolean intern;
+
+    // Terms in the top-level sum. Kept under Script.MAX_RECURSIVE_DEPTH so
+    // the optimizer and the recursive interpreter are used.
+    @Param({"100", "800"})
+    public int size;
+
+    private RLangEngine engine;
+    private String source;
+    private Script script;
+    private final Map<String, Object> bindings = Map.of("x", 3.0, "y", 0.5);
+
+    @Setup
+    public void setup() {
+        engine = new RLangEngine(ExecutionMode.INTERPRETER, true, 16, 1000, false, intern);
+        source = generate(size, new Random(42));
+        Diagnostics diagnostics = new Diagnostics();
+        script = engine.compile(source, diagnostics);
+        if (script == null) throw new IllegalStateException(diagnostics.messages().toString());
+    }
+
+    @Benchmark
+    public Object compile() {
+        // Readers bypass the cache.
+        return engine.compile(new StringReader(source), new Diagnostics());
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        return engine.execute(script, bindings);
+    }
+
+    // Each level combines two pieces of the level below, so the top level
+    // repeats a handful of subtrees many times over.
+    private static String generate(int size, Random random) {
+        String[] pieces = {"x", "y", "(x + 1)", "(y * 2)"};
+        String[] operators = {" + ", " - ", " * "};
+        for (int level = 0; level < 3; level++) {
+            String[] next = new String[pieces.length];
+            for (int i = 0; i < next.length; i++) {
+                next[i] = "(" + pieces[random.nextInt(pieces.length)]
+                        + operators[random.nextInt(operators.length)]
+                        + pieces[random.nextInt(pieces.length)] + ")";
+            }
+            pieces = next;
+        }
+        StringBuilder out = new StringBuilder(pieces[0]);
+        for (int i = 1; i < size; i++) out.append(" + ").append(pieces[random.nextInt(pieces.length)]);
+        return out.toString();
+    }
+}
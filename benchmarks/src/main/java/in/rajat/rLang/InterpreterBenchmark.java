@@ -0,0 +1,70 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.expressions.Expression;
+import in.rajat.rLang.jit.CompiledExpression;
+import in.rajat.rLang.jit.ExpressionJit;
+import in.rajat.rLang.nodes.NodeBuilder;
+import in.rajat.rLang.nodes.RootNode;
+import in.rajat.rLang.vm.Chunk;
+import in.rajat.rLang.vm.Compiler;
+import in.rajat.rLang.vm.VM;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluations per second of an already parsed (and unoptimized) expression,
+ * on the tree-walking Interpreter, the bytecode VM, the self-specializing
+ * node tree and JIT-compiled bytecode.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InterpreterBenchmark {
+
+    @Param({"DEEP_NESTING", "WIDE_FLAT", "STRING_HEAVY", "NUMBER_HEAVY", "COMMENT_HEAVY"})
+    public InputShape shape;
+
+    @Param({"1000"})
+    public int size;
+
+    private Expression expression;
+    private Chunk chunk;
+    private RootNode nodes;
+    private CompiledExpression compiled;
+    private final Interpreter interpreter = new Interpreter();
+    private final VM vm = new VM();
+
+    @Setup
+    public void setup() {
+        Diagnostics diagnostics = new Diagnostics();
+        expression = new RParser(new RScanner(shape.generate(size), diagnostics).scanTokenBuffer(), diagnostics).parse();
+        chunk = new Compiler().compile(expression);
+        nodes = NodeBuilder.build(expression);
+        compiled = new ExpressionJit(1).compile(expression);
+    }
+
+    @Benchmark
+    public Object interpreter() {
+        return interpreter.interpret(expression);
+    }
+
+    @Benchmark
+    public Object vm() {
+        return vm.run(chunk);
+    }
+
+    @Benchmark
+    public Object specializing() {
+        return nodes.execute(Map.of());
+    }
+
+    @Benchmark
+    public Object jit() {
+        return compiled.evaluate(Map.of());
+    }
+}
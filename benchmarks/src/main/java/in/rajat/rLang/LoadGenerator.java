@@ -0,0 +1,131 @@
+package in.rajat.rLang;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop load generator for {@link RLangServer}. Opens {@code
+ * --connections} connections, each on its own virtual thread, and has each
+ * send {@code --requests} requests one at a time, waiting for every
+ * response. The first {@code --warmup} requests of each connection are not
+ * measured. Prints latency percentiles and overall throughput:
+ * <pre>
+ * java -cp target/benchmarks.jar in.rajat.rLang.LoadGenerator --port 7878 --connections 2000
+ * </pre>
+ * {@code --expression} is sent with every {@code %d} replaced by the
+ * request's number, so the default sends distinct sources; one without
+ * {@code %d} measures the server's cache.
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        SocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 7878);
+        int connections = 1000;
+        int requests = 100;
+        int warmup = 10;
+        String expression = "%d * 2 + 1 / 3 - 4";
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--port" -> address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(value));
+                case "--socket" -> address = UnixDomainSocketAddress.of(Path.of(value));
+                case "--connections" -> connections = Integer.parseInt(value);
+                case "--requests" -> requests = Integer.parseInt(value);
+                case "--warmup" -> warmup = Integer.parseInt(value);
+                case "--expression" -> expression = value;
+                default -> {
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(64);
+                }
+            }
+        }
+
+        SocketAddress target = address;
+        String template = expression;
+        int perConnection = requests;
+        int skipped = warmup;
+        List<Future<long[]>> results = new ArrayList<>();
+        long start;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            start = System.nanoTime();
+            for (int c = 0; c < connections; c++) {
+                int client = c;
+                results.add(executor.submit(() -> run(target, template, client, skipped, perConnection)));
+            }
+        }
+        long wall = System.nanoTime() - start;
+
+        long errors = 0;
+        long[] latencies = new long[0];
+        int count = 0;
+        for (Future<long[]> result : results) {
+            long[] connection = result.get();
+            // The last slot carries the connection's ERROR responses.
+            errors += connection[connection.length - 1];
+            int measured = connection.length - 1;
+            if (count + measured > latencies.length) latencies = Arrays.copyOf(latencies, Math.max(count + measured, latencies.length * 2));
+            System.arraycopy(connection, 0, latencies, count, measured);
+            count += measured;
+        }
+        Arrays.sort(latencies, 0, count);
+
+        long total = (long) connections * (warmup + requests);
+        System.out.printf("%d connections, %d requests (%d measured, %d errors) in %.1f ms%n",
+                connections, total, count, errors, wall / 1e6);
+        System.out.printf("throughput %.0f req/s%n", total / (wall / 1e9));
+        System.out.printf("latency p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                percentile(latencies, count, 0.50) / 1e3,
+                percentile(latencies, count, 0.99) / 1e3,
+                count == 0 ? 0.0 : latencies[count - 1] / 1e3);
+    }
+
+    // Latencies in nanoseconds of the measured requests, then the number of
+    // ERROR responses.
+    private static long[] run(SocketAddress address, String template, int client, int warmup, int requests) throws IOException {
+        long[] latencies = new long[requests + 1];
+        StandardProtocolFamily family = address instanceof UnixDomainSocketAddress ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET;
+        try (SocketChannel channel = SocketChannel.open(family)) {
+            channel.connect(address);
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+            for (int i = 0; i < warmup + requests; i++) {
+                String source = template.replace("%d", Integer.toString(client * (warmup + requests) + i));
+                long sent = System.nanoTime();
+                out.write(source);
+                out.write('\n');
+                out.flush();
+                String response = in.readLine();
+                long latency = System.nanoTime() - sent;
+                if (response == null) throw new IOException("Server closed the connection");
+                if (!response.startsWith("OK ")) latencies[requests]++;
+                if (i >= warmup) latencies[i - warmup] = latency;
+            }
+        }
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, int count, double fraction) {
+        if (count == 0) return 0;
+        return sorted[Math.min(count - 1, (int) Math.ceil(fraction * count) - 1)];
+    }
+}
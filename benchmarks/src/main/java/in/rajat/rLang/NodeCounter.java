@@ -0,0 +1,35 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.expressions.*;
+
+class NodeCounter implements Expression.Visitor<Integer> {
+
+    static int count(Expression expression) {
+        return expression == null ? 0 : expression.accept(new NodeCounter());
+    }
+
+    @Override
+    public Integer visitBinaryExpr(BinaryExpr expr) {
+        return 1 + expr.left.accept(this) + expr.right.accept(this);
+    }
+
+    @Override
+    public Integer visitGroupingExpr(GroupingExpr expr) {
+        return 1 + expr.expression.accept(this);
+    }
+
+    @Override
+    public Integer visitLiteralExpr(LiteralExpr expr) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitUnaryExpr(UnaryExpr expr) {
+        return 1 + expr.right.accept(this);
+    }
+
+    @Override
+    public Integer visitVariableExpr(VariableExpr expr) {
+        return 1;
+    }
+}
@@ -0,0 +1,57 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.models.Token;
+import in.rajat.rLang.models.TokenBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AST nodes per second for RParser over pre-scanned tokens, so only the
+ * parsing itself is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"DEEP_NESTING", "WIDE_FLAT", "STRING_HEAVY", "NUMBER_HEAVY", "COMMENT_HEAVY"})
+    public InputShape shape;
+
+    @Param({"1000"})
+    public int size;
+
+    private List<Token> tokenList;
+    private TokenBuffer tokenBuffer;
+    private int nodeCount;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() {
+        String source = shape.generate(size);
+        tokenList = new RScanner(source, new Diagnostics()).scanTokens();
+        tokenBuffer = new RScanner(source, new Diagnostics()).scanTokenBuffer();
+        nodeCount = NodeCounter.count(new RParser(tokenBuffer, new Diagnostics()).parse());
+    }
+
+    @Benchmark
+    public Object parseTokenList(Counters counters) {
+        counters.nodes += nodeCount;
+        return new RParser(tokenList, new Diagnostics()).parse();
+    }
+
+    @Benchmark
+    public Object parseTokenBuffer(Counters counters) {
+        counters.nodes += nodeCount;
+        return new RParser(tokenBuffer, new Diagnostics()).parse();
+    }
+}
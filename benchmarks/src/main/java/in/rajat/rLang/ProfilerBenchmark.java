@@ -0,0 +1,60 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What leaving the source-level profiler on costs an evaluation: the same
+ * scripts run with and without a {@link Profiler} sampling them at its
+ * default interval, on the tree interpreter it instruments and on JIT code
+ * it samples through JFR.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+UnlockDiagnosticVMOptions", "-XX:+DebugNonSafepoints"})
+@State(Scope.Benchmark)
+public class ProfilerBenchmark {
+
+    @Param({"false", "true"})
+    public boolean profiled;
+
+    @Param({"INTERPRETER", "JIT"})
+    public ExecutionMode mode;
+
+    @Param({"NUMBER_HEAVY", "WIDE_FLAT", "STRING_HEAVY"})
+    public InputShape shape;
+
+    // Under and over Script.MAX_RECURSIVE_DEPTH, for the recursive and the
+    // iterative walk.
+    @Param({"500", "5000"})
+    public int size;
+
+    private Profiler profiler;
+    private RLangEngine engine;
+    private Script script;
+
+    @Setup
+    public void setup() {
+        profiler = profiled ? new Profiler(1000, null) : null;
+        engine = new RLangEngine(mode, false, 16, 1000, false, false, profiler);
+        Diagnostics diagnostics = new Diagnostics();
+        script = engine.compile(shape.generate(size), diagnostics);
+        if (script == null) throw new IllegalStateException(diagnostics.messages().toString());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (profiler != null) profiler.close();
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        return engine.execute(script, Map.of());
+    }
+}
@@ -0,0 +1,52 @@
+package in.rajat.rLang;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokens per second for RScanner, both into a List of Tokens and into the
+ * compact TokenBuffer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+
+    @Param({"DEEP_NESTING", "WIDE_FLAT", "STRING_HEAVY", "NUMBER_HEAVY", "COMMENT_HEAVY"})
+    public InputShape shape;
+
+    @Param({"1000"})
+    public int size;
+
+    private String source;
+    private int tokenCount;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long tokens;
+    }
+
+    @Setup
+    public void setup() {
+        source = shape.generate(size);
+        tokenCount = new RScanner(source, new Diagnostics()).scanTokenBuffer().size();
+    }
+
+    @Benchmark
+    public void scanTokens(Counters counters, Blackhole blackhole) {
+        blackhole.consume(new RScanner(source, new Diagnostics()).scanTokens());
+        counters.tokens += tokenCount;
+    }
+
+    @Benchmark
+    public void scanTokenBuffer(Counters counters, Blackhole blackhole) {
+        blackhole.consume(new RScanner(source, new Diagnostics()).scanTokenBuffer());
+        counters.tokens += tokenCount;
+    }
+}
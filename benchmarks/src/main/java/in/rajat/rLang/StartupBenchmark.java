@@ -0,0 +1,67 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to get from a script file on disk to a runnable Script early in a
+ * JVM's life, scanning and parsing the source versus loading its
+ * precompiled form. Each fork measures a single load while the loading code
+ * is still running in the bytecode interpreter, as it is at startup. Setup
+ * runs both paths once so that neither pays for class loading alone.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({"WIDE_FLAT", "STRING_HEAVY", "NUMBER_HEAVY"})
+    public InputShape shape;
+
+    @Param({"1000"})
+    public int size;
+
+    private RLangEngine engine;
+    private Path directory;
+    private Path source;
+
+    @Setup
+    public void setup() throws IOException {
+        engine = new RLangEngine(ExecutionMode.INTERPRETER, true, 16);
+        directory = Files.createTempDirectory("rlang-startup");
+        source = directory.resolve("script.rl");
+        Files.writeString(source, shape.generate(size));
+        // Writes the precompiled file next to the source.
+        engine.load(source, new Diagnostics());
+        source();
+        precompiled();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(ScriptFile.compiledPath(source));
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Script source() throws IOException {
+        try (Reader reader = Files.newBufferedReader(source)) {
+            return engine.compile(reader, new Diagnostics());
+        }
+    }
+
+    @Benchmark
+    public Script precompiled() throws IOException {
+        return engine.load(source, new Diagnostics());
+    }
+}
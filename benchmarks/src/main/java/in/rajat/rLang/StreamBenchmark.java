@@ -0,0 +1,54 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for StreamEvaluator to get through a long stream of distinct
+ * expressions, one per line, by number of evaluation workers. On a machine
+ * with enough cores the time should drop close to 1/workers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int workers;
+
+    @Param({"WIDE_FLAT"})
+    public InputShape shape;
+
+    // Operands per line.
+    @Param({"20"})
+    public int size;
+
+    @Param({"20000"})
+    public int lines;
+
+    private StreamEvaluator evaluator;
+    private String input;
+
+    @Setup
+    public void setup() {
+        // Every line is distinct, so the cache never saves a parse.
+        RLangEngine engine = new RLangEngine(ExecutionMode.VM, false, 16);
+        evaluator = new StreamEvaluator(engine, workers);
+        String expression = shape.generate(size);
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < lines; i++) out.append(i).append(" + ").append(expression).append('\n');
+        input = out.toString();
+    }
+
+    @Benchmark
+    public Object stream() throws Exception {
+        return evaluator.run(new StringReader(input), Writer.nullWriter(), Writer.nullWriter());
+    }
+}
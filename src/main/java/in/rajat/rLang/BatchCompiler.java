@@ -0,0 +1,156 @@
+package in.rajat.rLang;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Loads many script files in parallel on a ForkJoinPool, from their
+ * precompiled forms where those are up to date (see RLangEngine.load).
+ * Every file gets its own Diagnostics, and results come back in the order
+ * the files were given, so the report is the same no matter how the work
+ * was scheduled.
+ */
+public class BatchCompiler {
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final RLangEngine engine;
+    private final ForkJoinPool pool;
+
+    public BatchCompiler(RLangEngine engine, ForkJoinPool pool) {
+        this.engine = engine;
+        this.pool = pool;
+    }
+
+    public static class Result {
+        public final Path path;
+        // Null if the file had syntax errors or could not be read.
+        public final Script script;
+        public final Diagnostics diagnostics;
+        public final IOException ioError;
+        public final long cpuNanos;
+
+        Result(Path path, Script script, Diagnostics diagnostics, IOException ioError, long cpuNanos) {
+            this.path = path;
+            this.script = script;
+            this.diagnostics = diagnostics;
+            this.ioError = ioError;
+            this.cpuNanos = cpuNanos;
+        }
+
+        public boolean failed() {
+            return script == null;
+        }
+    }
+
+    /**
+     * Expands directories (recursively) into their regular files, sorted so
+     * the batch order does not depend on the file system. Precompiled files
+     * found there are skipped; they are loaded along with their sources.
+     */
+    public static List<Path> collect(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(file -> !file.getFileName().toString().endsWith(ScriptFile.EXTENSION))
+                            .sorted().forEach(files::add);
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    public List<Result> compile(List<Path> files) {
+        Result[] results = new Result[files.size()];
+        pool.invoke(new CompileTask(files, results, 0, files.size()));
+        return List.of(results);
+    }
+
+    private Result compileOne(Path path) {
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        Diagnostics diagnostics = new Diagnostics();
+        Script script = null;
+        IOException ioError = null;
+
+        try {
+            script = engine.load(path, diagnostics);
+        } catch (IOException e) {
+            ioError = e;
+        } catch (UncheckedIOException e) {
+            ioError = e.getCause();
+        }
+
+        return new Result(path, script, diagnostics, ioError,
+                threads.getCurrentThreadCpuTime() - cpuStart);
+    }
+
+    private class CompileTask extends RecursiveAction {
+        // Below this many files a task just compiles them itself.
+        private static final int THRESHOLD = 4;
+
+        private final List<Path> files;
+        private final Result[] results;
+        private final int from;
+        private final int to;
+
+        CompileTask(List<Path> files, Result[] results, int from, int to) {
+            this.files = files;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    results[i] = compileOne(files.get(i));
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new CompileTask(files, results, from, middle),
+                    new CompileTask(files, results, middle, to));
+        }
+    }
+
+    /**
+     * Prints each file's diagnostics in batch order, then a summary line
+     * comparing wall time with the CPU time spent across all workers.
+     */
+    public static void report(List<Result> results, long wallNanos, int parallelism, PrintStream out) {
+        long cpuNanos = 0;
+        int failed = 0;
+
+        for (Result result : results) {
+            cpuNanos += result.cpuNanos;
+            if (result.failed()) failed++;
+
+            if (result.ioError != null) {
+                out.println(result.path + ": " + result.ioError);
+            }
+            for (String message : result.diagnostics.messages()) {
+                out.println(result.path + ": " + message);
+            }
+        }
+
+        out.printf("Compiled %d files (%d failed) on %d workers: wall %.1f ms, cpu %.1f ms, speedup %.2fx%n",
+                results.size(), failed, parallelism,
+                wallNanos / 1e6, cpuNanos / 1e6,
+                wallNanos == 0 ? 0.0 : (double) cpuNanos / wallNanos);
+    }
+}
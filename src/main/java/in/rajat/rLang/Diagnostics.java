@@ -0,0 +1,74 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.models.Token;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the errors of one compilation or evaluation. Each run gets its
+ * own instance, so concurrent runs never share error state. Messages can
+ * optionally be echoed to a stream as they are reported.
+ */
+public class Diagnostics {
+    private final PrintStream echo;
+    private final List<String> messages = new ArrayList<>();
+    private boolean hadError = false;
+    private boolean hadRuntimeError = false;
+
+    public Diagnostics() {
+        this(null);
+    }
+
+    public Diagnostics(PrintStream echo) {
+        this.echo = echo;
+    }
+
+    public void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    public void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme() + "'", message);
+        }
+    }
+
+    public void runtimeError(RuntimeError error) {
+        add(error.getMessage() + "\n[line " + error.line + "]");
+        hadRuntimeError = true;
+    }
+
+    private void report(int line, String where, String message) {
+        add("[line "
+                + line
+                + "] Error"
+                + where
+                + ": "
+                + message);
+
+        hadError = true;
+    }
+
+    private void add(String message) {
+        messages.add(message);
+        if (echo != null) echo.println(message);
+    }
+
+    public boolean hadError() {
+        return hadError;
+    }
+
+    public boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    public List<String> messages() {
+        return Collections.unmodifiableList(messages);
+    }
+}
@@ -0,0 +1,66 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.expressions.Expression;
+
+import java.util.Map;
+
+/**
+ * An evaluation that runs in slices: each {@link #resume(long)} applies at
+ * most the given number of operators, then returns so the caller can run
+ * something else and continue it later, possibly on another thread. Started
+ * by {@link RLangEngine#start}. Not thread-safe; one thread at a time.
+ */
+public final class Evaluation {
+    private final Interpreter interpreter;
+    private final Interpreter.Walk walk;
+    private long used;
+    private boolean done;
+    // Set once a slice has thrown; the walk's state is then meaningless.
+    private boolean failed;
+
+    Evaluation(Expression expression, Map<String, Object> bindings) {
+        this.interpreter = new Interpreter(bindings);
+        this.walk = new Interpreter.Walk(expression);
+        interpreter.startRun();
+    }
+
+    /**
+     * Runs until the value is known or {@code fuel} more operators have been
+     * applied, and returns whether it is done. Throws RuntimeError if the
+     * evaluation fails, after which resuming it throws IllegalStateException.
+     */
+    public boolean resume(long fuel) {
+        if (failed) throw new IllegalStateException("Evaluation failed.");
+        if (done) return true;
+        interpreter.refuel(fuel);
+        try {
+            done = interpreter.walk(walk);
+        } catch (RuntimeException e) {
+            failed = true;
+            throw e;
+        } finally {
+            used += fuel - interpreter.fuelLeft();
+        }
+        return done;
+    }
+
+    public boolean done() {
+        return done;
+    }
+
+    /**
+     * The result, once {@link #done()}.
+     */
+    public Object value() {
+        if (failed) throw new IllegalStateException("Evaluation failed.");
+        if (!done) throw new IllegalStateException("Evaluation is not finished.");
+        return walk.value;
+    }
+
+    /**
+     * Operators applied so far, over every slice.
+     */
+    public long fuelUsed() {
+        return used;
+    }
+}
@@ -0,0 +1,137 @@
+package in.rajat.rLang;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache from source text to its parsed (and, when enabled,
+ * optimized) Script, so repeated evaluations of the same source skip
+ * RScanner and RParser entirely.
+ * <p>
+ * The cache is split into independently locked segments chosen by the
+ * source's hash, so threads looking up different sources rarely contend.
+ * LRU order is kept per segment, but the bound is on the whole cache: a
+ * put that takes it past {@code maxEntries} evicts the least recently used
+ * entry of its own segment, or of another one if its segment holds nothing
+ * else. Concurrent puts can overshoot the bound by one entry each until
+ * they return.
+ */
+public class ExpressionCache {
+    private static final int SEGMENTS = 16;
+
+    private final int maxEntries;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    // Entries in all segments, updated under the lock of the segment changed.
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpressionCache(int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    public Script get(String source) {
+        Script script = segmentFor(source).get(source);
+        if (script == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return script;
+    }
+
+    public void put(String source, Script script) {
+        if (maxEntries == 0) return;
+        int index = indexFor(source);
+        segments[index].put(source, script);
+
+        // Over the bound only if the segment written to holds nothing but
+        // the new entry, so take the excess from the others. Segment locks
+        // are never nested.
+        for (int i = 1; i < SEGMENTS && size.get() > maxEntries; i++) {
+            Segment other = segments[(index + i) & (SEGMENTS - 1)];
+            while (size.get() > maxEntries && other.evictEldest()) {
+                // Evicted one.
+            }
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int capacity() {
+        return maxEntries;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ExpressionCache[size=" + size() + "/" + capacity()
+                + ", hits=" + hits() + ", misses=" + misses() + ", evictions=" + evictions() + "]";
+    }
+
+    private Segment segmentFor(String source) {
+        return segments[indexFor(source)];
+    }
+
+    private static int indexFor(String source) {
+        int hash = source.hashCode();
+        hash ^= hash >>> 16;
+        return hash & (SEGMENTS - 1);
+    }
+
+    private class Segment extends LinkedHashMap<String, Script> {
+        Segment() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        public synchronized Script get(Object key) {
+            return super.get(key);
+        }
+
+        // Evicts from this segment while the cache is over its bound, down
+        // to the entry just put.
+        @Override
+        public synchronized Script put(String key, Script value) {
+            Script previous = super.put(key, value);
+            if (previous == null) size.incrementAndGet();
+            while (size.get() > maxEntries && super.size() > 1) removeEldest();
+            return previous;
+        }
+
+        synchronized boolean evictEldest() {
+            if (isEmpty()) return false;
+            removeEldest();
+            return true;
+        }
+
+        private void removeEldest() {
+            Iterator<String> eldest = keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            size.decrementAndGet();
+            evictions.increment();
+        }
+    }
+}
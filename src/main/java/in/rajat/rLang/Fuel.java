@@ -0,0 +1,31 @@
+package in.rajat.rLang;
+
+/**
+ * Budget for one evaluation: how many operators (unary and binary
+ * applications, counting each link of a concatenation chain) it may apply
+ * before it is stopped with an {@link OutOfFuelError}. After the run,
+ * {@link #used()} tells how much of it was spent.
+ */
+public final class Fuel {
+    // Limit for the command line runners and the server; 0 means none.
+    private static final long DEFAULT_LIMIT = Long.getLong("rlang.fuel", 0);
+
+    public final long limit;
+    long used;
+
+    public Fuel(long limit) {
+        if (limit < 0) throw new IllegalArgumentException("Negative fuel limit " + limit);
+        this.limit = limit;
+    }
+
+    /**
+     * A budget of -Drlang.fuel operations, or null if that is not set.
+     */
+    public static Fuel fromSystemProperties() {
+        return DEFAULT_LIMIT > 0 ? new Fuel(DEFAULT_LIMIT) : null;
+    }
+
+    public long used() {
+        return used;
+    }
+}
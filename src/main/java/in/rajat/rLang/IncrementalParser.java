@@ -0,0 +1,1013 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.expressions.*;
+import in.rajat.rLang.models.Token;
+import in.rajat.rLang.models.TokenSource;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keeps a source text scanned and parsed across edits, for editors and
+ * other callers that re-validate on every change. After each
+ * {@link #edit(int, int, String)} the expression and diagnostics are the
+ * same as a full scan and parse of the new text would give.
+ * <p>
+ * Text and tokens are kept in gap buffers whose gap sits at the last edit.
+ * Offsets and lines of tokens past the gap are stored relative to the end
+ * of the text, so an edit shifts them without touching them.
+ * <p>
+ * Re-scanning starts at the last token the edit can affect (the scanner
+ * looks up to two characters past a token) and stops at the first new token
+ * that starts where an old token past the edit did: from there on the text,
+ * and so the tokens, are the same as before.
+ * <p>
+ * Re-parsing starts from the last tree that parsed, whose nodes carry their
+ * width in tokens. A run of binary operators parsed by one loop of the
+ * parser is kept flat as a chain of operands, indexed by width, so finding
+ * and resizing an operand in a long {@code a + b + c ...} takes logarithmic
+ * time. The smallest subtree or run of chain operands covering every token
+ * changed since then is parsed again the way it was parsed the first time;
+ * if the result would not end at the same token it did, a larger one is
+ * tried. Everything outside it is kept.
+ * <p>
+ * The expression is only built when asked for: the nodes above a change,
+ * and the nodes after it if it added or removed lines (tokens carry
+ * absolute line numbers), are rebuilt then. Editors that only need
+ * {@link #diagnostics()} never pay for that.
+ * <p>
+ * Not thread-safe.
+ */
+public class IncrementalParser {
+    // Characters scanned past the edit before looking further for the
+    // point where the new tokens meet the old ones.
+    private static final int SLACK = 64;
+
+    // Text with a gap at the last edit.
+    private char[] text = new char[64];
+    private int textGapStart = 0;
+    private int textGapEnd = text.length;
+    private int lineCount = 1;
+
+    // Tokens with a gap at the last edit. Past the gap, starts and lines are
+    // stored minus length() and lineCount.
+    private Token[] tokens = new Token[64];
+    private int[] starts = new int[64];
+    private int[] lines = new int[64];
+    private int gapStart = 0;
+    private int gapEnd = tokens.length;
+
+    // Sorted by offset. An error is placed at the start of the token that
+    // follows it, or at the end of the text.
+    private List<LexicalError> lexicalErrors = new ArrayList<>();
+    private Token syntaxErrorToken;
+    private String syntaxErrorMessage;
+
+    // The last tree that parsed, and the tokens changed since then as a
+    // range of current token indexes. Outside that range the tokens match
+    // the tree's, shifted by tokenDelta once past it.
+    private Syntax tree;
+    private boolean valid;
+    private boolean dirty;
+    private int dirtyFrom;
+    private int dirtyTo;
+    private int tokenDelta;
+
+    // Reused by every reparse, since on deep trees it gets long.
+    private final Path path = new Path();
+
+    private Diagnostics diagnostics = new Diagnostics();
+    private int rescannedCharacters;
+    private int reparsedTokens;
+
+    public IncrementalParser(String source) {
+        edit(0, 0, source);
+    }
+
+    /**
+     * Replaces {@code removed} characters at {@code offset} with
+     * {@code inserted} and returns the diagnostics for the new text.
+     */
+    public Diagnostics edit(int offset, int removed, String inserted) {
+        Objects.checkFromIndexSize(offset, removed, length());
+        rescannedCharacters = 0;
+        reparsedTokens = 0;
+
+        int delta = inserted.length() - removed;
+        int editEnd = offset + inserted.length();
+
+        // Re-scan from the last token that ends two or more characters before
+        // the edit; it scans the same as before, so its start is a safe place
+        // to resume.
+        int first = lastTokenEndingBefore(offset - 1);
+        int scanStart = 0;
+        int scanLine = 1;
+        if (first >= 0) {
+            scanStart = start(first);
+            scanLine = line(first);
+            // A token's line is the one it ends on; strings can span lines.
+            for (int i = scanStart, end = i + tokens[slot(first)].length; i < end; i++) {
+                if (charAt(i) == '\n') scanLine--;
+            }
+        } else {
+            first = 0;
+        }
+        moveGap(first);
+
+        int oldLength = length();
+        int oldLineCount = lineCount;
+        for (int i = offset; i < offset + removed; i++) {
+            if (charAt(i) == '\n') lineCount--;
+        }
+        for (int i = 0; i < inserted.length(); i++) {
+            if (inserted.charAt(i) == '\n') lineCount++;
+        }
+        replaceText(offset, removed, inserted);
+
+        // Scan a window past the edit, widening it until the new tokens meet
+        // an old one or the window reaches the end of the text.
+        List<Token> scanned = new ArrayList<>();
+        Capture capture;
+        int resync = -1;
+        for (int slack = SLACK; ; slack *= 4) {
+            int windowEnd = (int) Math.min(length(), (long) editEnd + slack);
+            boolean complete = windowEnd == length();
+            rescannedCharacters += windowEnd - scanStart;
+
+            scanned.clear();
+            capture = new Capture();
+            RScanner scanner = new RScanner(text(scanStart, windowEnd), scanLine, capture);
+            int old = gapEnd;
+            for (; ; ) {
+                Token token = scanner.nextToken();
+                int start = scanStart + token.start;
+                capture.place(token.type == TokenType.EOF ? windowEnd : start);
+                if (token.type == TokenType.EOF) break;
+
+                // Near the end of a partial window the scanner may have cut a
+                // token short, so only meet old tokens well inside it.
+                if (start >= editEnd && (complete || start + token.length + 2 <= windowEnd)) {
+                    while (old < tokens.length && starts[old] + oldLength < start - delta) old++;
+                    if (old < tokens.length && starts[old] + oldLength == start - delta) {
+                        resync = old;
+                        break;
+                    }
+                }
+                scanned.add(token);
+            }
+            if (resync >= 0 || complete) break;
+        }
+
+        int oldCount = (resync >= 0 ? resync : tokens.length) - gapEnd;
+        int newCount = scanned.size();
+        int oldScanEnd = resync >= 0 ? starts[resync] + oldLength : Integer.MAX_VALUE;
+
+        // Tokens at either end of the scan that did not change.
+        int same = 0;
+        while (same < newCount && same < oldCount) {
+            Token token = scanned.get(same);
+            int slot = gapEnd + same;
+            int start = scanStart + token.start;
+            if (start + token.length > offset || start != starts[slot] + oldLength || !sameToken(token, tokens[slot])) break;
+            same++;
+        }
+        int tail = 0;
+        while (tail < newCount - same && tail < oldCount - same) {
+            Token token = scanned.get(newCount - 1 - tail);
+            int slot = gapEnd + oldCount - 1 - tail;
+            int start = scanStart + token.start;
+            if (start < editEnd || start - delta != starts[slot] + oldLength || !sameToken(token, tokens[slot])) break;
+            tail++;
+        }
+
+        replaceTokens(oldCount, scanned, scanStart);
+        updateLexicalErrors(scanStart, oldScanEnd, delta, lineCount - oldLineCount, capture.lexical);
+
+        int from = first + same;
+        int oldTo = first + oldCount - tail;
+        int to = first + newCount - tail;
+        boolean changed = oldTo > from || to > from || lineCount != oldLineCount;
+        if (tree == null) {
+            reparse();
+        } else if (changed) {
+            int tokensDelta = newCount - oldCount;
+            if (!dirty) {
+                dirtyFrom = from;
+                dirtyTo = to;
+            } else {
+                int mapped = dirtyTo <= from ? dirtyTo : dirtyTo >= oldTo ? dirtyTo + tokensDelta : to;
+                dirtyFrom = Math.min(dirtyFrom, from);
+                dirtyTo = Math.max(mapped, to);
+            }
+            dirty = true;
+            tokenDelta += tokensDelta;
+            reparse();
+        }
+
+        report();
+        return diagnostics;
+    }
+
+    /**
+     * The expression for the current text, or null if it has lexical or
+     * syntax errors, as with a full compile.
+     */
+    public Expression expression() {
+        return compiles() ? materialize() : null;
+    }
+
+    /**
+     * The current expression as an unoptimized script, or null if the text
+     * has lexical or syntax errors.
+     */
+    public Script script() {
+        return compiles() ? new Script(materialize(), tree.depth) : null;
+    }
+
+    /**
+     * Lexical and syntax errors in the current text, as a full scan and
+     * parse would report them.
+     */
+    public Diagnostics diagnostics() {
+        return diagnostics;
+    }
+
+    public String text() {
+        return text(0, length());
+    }
+
+    public int length() {
+        return text.length - (textGapEnd - textGapStart);
+    }
+
+    /**
+     * Characters scanned by the last edit.
+     */
+    public int rescannedCharacters() {
+        return rescannedCharacters;
+    }
+
+    /**
+     * Tokens parsed by the last edit.
+     */
+    public int reparsedTokens() {
+        return reparsedTokens;
+    }
+
+    // The scanner skips characters it reports, so the tree can be whole
+    // even when the text is not.
+    private boolean compiles() {
+        return valid && lexicalErrors.isEmpty();
+    }
+
+    private void reparse() {
+        int count = tokenCount();
+        if (tree == null) {
+            Capture capture = new Capture();
+            RParser parser = new RParser(tokens(0, count), capture);
+            Expression expr = parser.parseOperands(RParser.UNARY, RParser.EQUALITY, count);
+            reparsedTokens += Math.min(parser.position(), count);
+            if (expr == null) {
+                fail(capture);
+            } else {
+                tree = syntax(expr, 0);
+                commit();
+            }
+            return;
+        }
+        if (dirtyFrom > tree.width) {
+            // The parse stopped before the change, at a token that still
+            // does not continue the expression.
+            commit();
+            return;
+        }
+
+        // Path from the root to the smallest node holding the change, with
+        // the precedence each node was parsed at and its entry in its parent
+        // if that is a chain. When the change spans several operands of a
+        // chain, the path ends at the chain and [a, b] are those operands.
+        Path path = this.path;
+        path.size = 0;
+        Syntax node = tree;
+        int start = 0;
+        int precedence = RParser.EQUALITY;
+        int entry = -1;
+        int a = -1;
+        int b = -1;
+        // The end of the change in the tree's token indexes.
+        int dirtyEnd = dirtyTo - tokenDelta;
+        for (; ; ) {
+            path.push(node, start, precedence, entry);
+            if (node instanceof Prefix prefix) {
+                if (start + 1 <= dirtyFrom && dirtyEnd <= start + 1 + prefix.operand.width) {
+                    precedence = prefix.grouping ? RParser.EQUALITY : RParser.UNARY;
+                    node = prefix.operand;
+                    start++;
+                    entry = -1;
+                    continue;
+                }
+            } else if (node instanceof Chain chain) {
+                int from = dirtyFrom - start;
+                int to = dirtyEnd - start;
+                a = chain.entryAt(Math.min(from, chain.width - 1));
+                // A changed operator belongs to the run before it.
+                if (a > 0 && from == chain.prefix(a)) a--;
+                b = to > from ? Math.max(a, chain.entryAt(Math.min(to - 1, chain.width - 1))) : a;
+                if (a == b && to <= chain.prefix(a + 1)) {
+                    precedence = operandPrecedence(chain, start, a);
+                    node = chain.operands[a];
+                    start += chain.operandStart(a);
+                    entry = a;
+                    a = b = -1;
+                    continue;
+                }
+            }
+            break;
+        }
+
+        int k = path.size - 1;
+        for (; ; ) {
+            Syntax candidate = path.nodes[k];
+            int candidateStart = path.starts[k];
+            int from;
+            int end;
+            int first;
+            // The root may stop anywhere: what follows is a syntax error.
+            boolean open;
+            if (a >= 0) {
+                Chain chain = (Chain) candidate;
+                from = candidateStart + chain.operandStart(a);
+                open = k == 0 && b == chain.count - 1;
+                end = open ? count : candidateStart + chain.prefix(b + 1) + tokenDelta;
+                first = a == 0 ? RParser.UNARY : operandPrecedence(chain, candidateStart, a);
+            } else {
+                from = candidateStart;
+                open = k == 0;
+                end = open ? count : from + candidate.width + tokenDelta;
+                first = RParser.UNARY;
+            }
+
+            Capture capture = new Capture();
+            RParser parser = new RParser(tokens(from, end), capture);
+            Expression expr = parser.parseOperands(first, path.precedences[k], end - from);
+            int stopped = from + parser.position();
+            reparsedTokens += Math.min(stopped, end) - from;
+
+            if (expr != null && (open || stopped == end)) {
+                if (a >= 0) {
+                    splice(path, k, a, b, expr, parser.operators(), from);
+                } else {
+                    replace(path, k, syntax(expr, from));
+                }
+                commit();
+                return;
+            }
+            // Up to and including `end` the tokens are the real ones, so an
+            // error there is the one a full parse would report.
+            if (expr == null && stopped <= end) {
+                fail(capture);
+                return;
+            }
+
+            // Grow the next attempt geometrically so a long run of failing
+            // attempts costs no more than parsing the last one.
+            int needed = 2 * (end - from);
+            if (a >= 0 && stopped > end && b < ((Chain) candidate).count - 1) {
+                // An operand took in the operator after the run.
+                Chain chain = (Chain) candidate;
+                do b++; while (b < chain.count - 1 && chain.prefix(b + 1) - chain.operandStart(a) + tokenDelta < needed);
+                continue;
+            }
+            if (k == 0) {
+                // Only a run of the root chain gets here; the root as a whole
+                // always parses or fails for good.
+                a = -1;
+                continue;
+            }
+            // Up to the first enclosing node or run that is wide enough; a
+            // run starts at the operand the failed attempt was in.
+            for (; ; ) {
+                int child = path.entries[k];
+                k--;
+                Syntax up = path.nodes[k];
+                if (up instanceof Chain chain) {
+                    if (k == 0 || chain.width - chain.operandStart(child) + tokenDelta >= needed) {
+                        a = b = child;
+                        while (b < chain.count - 1 && chain.prefix(b + 1) - chain.operandStart(a) + tokenDelta < needed) b++;
+                        break;
+                    }
+                } else if (k == 0 || up.width + tokenDelta >= needed) {
+                    a = -1;
+                    break;
+                }
+            }
+        }
+    }
+
+    // What the operand of entry `k` of a chain starting at token `start` was
+    // parsed at.
+    private int operandPrecedence(Chain chain, int start, int k) {
+        return k == 0 ? RParser.UNARY : RParser.precedence(tokens[slot(start + chain.prefix(k))].type) + 1;
+    }
+
+    // Puts `replacement` in place of path.nodes[k].
+    private void replace(Path path, int k, Syntax replacement) {
+        if (k == 0) {
+            tree = replacement;
+            return;
+        }
+        Syntax old = path.nodes[k];
+        Syntax parent = path.nodes[k - 1];
+        if (parent instanceof Chain chain) {
+            chain.operands[path.entries[k]] = replacement;
+        } else {
+            ((Prefix) parent).operand = replacement;
+        }
+        resize(path, k - 1, replacement.width - old.width);
+    }
+
+    // Puts the operands of `expr`, parsed from token `from`, in place of
+    // operands [a, b] of the chain at path.nodes[k]. The last `operators`
+    // binary nodes down its left side are the chain's.
+    private void splice(Path path, int k, int a, int b, Expression expr, int operators, int from) {
+        Expression[] rights = new Expression[operators];
+        for (int i = operators - 1; i >= 0; i--) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            rights[i] = binary.right;
+            expr = binary.left;
+        }
+        Syntax[] operands = new Syntax[operators + 1];
+        operands[0] = syntax(expr, from);
+        int next = from + operands[0].width;
+        for (int i = 0; i < operators; i++) {
+            operands[i + 1] = syntax(rights[i], next + 1);
+            next += 1 + operands[i + 1].width;
+        }
+
+        Chain chain = (Chain) path.nodes[k];
+        int old = chain.width;
+        chain.splice(a, b, operands);
+        if (k > 0) resize(path, k - 1, chain.width - old);
+    }
+
+    // Resizes path.nodes[k] and its ancestors by `delta` tokens and drops
+    // their expressions, which hold the old child.
+    private static void resize(Path path, int k, int delta) {
+        for (; k >= 0; k--) {
+            Syntax node = path.nodes[k];
+            node.expression = null;
+            if (node instanceof Chain chain) {
+                chain.resize(path.entries[k + 1], delta);
+            } else {
+                node.width += delta;
+            }
+        }
+    }
+
+    private void commit() {
+        valid = true;
+        dirty = false;
+        tokenDelta = 0;
+        syntaxErrorToken = null;
+        syntaxErrorMessage = null;
+    }
+
+    private void fail(Capture capture) {
+        valid = false;
+        syntaxErrorToken = capture.token;
+        syntaxErrorMessage = capture.message;
+    }
+
+    private void report() {
+        diagnostics = new Diagnostics();
+        for (LexicalError error : lexicalErrors) {
+            diagnostics.error(error.line, error.message);
+        }
+        if (!valid) diagnostics.error(syntaxErrorToken, syntaxErrorMessage);
+    }
+
+    // Tokens [from, end] followed by EOF. Past `end` the parse result is not
+    // used, only whether it got there.
+    private TokenSource tokens(int from, int end) {
+        Token eof = new Token(TokenType.EOF, "", null, lineCount);
+        int last = Math.min(end, tokenCount() - 1);
+        return new TokenSource() {
+            private int next = from;
+
+            @Override
+            public Token nextToken() {
+                return next <= last ? token(next++) : eof;
+            }
+        };
+    }
+
+    private static boolean sameToken(Token scanned, Token old) {
+        return scanned.type == old.type && scanned.length == old.length;
+    }
+
+    private void updateLexicalErrors(int scanStart, int oldScanEnd, int delta, int lineDelta, List<LexicalError> found) {
+        if (lexicalErrors.isEmpty() && found.isEmpty()) return;
+
+        List<LexicalError> updated = new ArrayList<>();
+        for (LexicalError error : lexicalErrors) {
+            if (error.offset <= scanStart) updated.add(error);
+        }
+        updated.addAll(found);
+        for (LexicalError error : lexicalErrors) {
+            if (error.offset > oldScanEnd) {
+                error.offset += delta;
+                error.line += lineDelta;
+                updated.add(error);
+            }
+        }
+        lexicalErrors = updated;
+    }
+
+    // Token buffer.
+
+    private int tokenCount() {
+        return tokens.length - (gapEnd - gapStart);
+    }
+
+    private int slot(int index) {
+        return index < gapStart ? index : index + gapEnd - gapStart;
+    }
+
+    private int start(int index) {
+        return index < gapStart ? starts[index] : starts[slot(index)] + length();
+    }
+
+    private int line(int index) {
+        return index < gapStart ? lines[index] : lines[slot(index)] + lineCount;
+    }
+
+    private Token token(int index) {
+        Token token = tokens[slot(index)];
+        int line = line(index);
+        return token.line == line ? token : token.atLine(line);
+    }
+
+    private int lastTokenEndingBefore(int offset) {
+        int low = 0;
+        int high = tokenCount() - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (start(middle) + tokens[slot(middle)].length < offset) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    // Only called before the text changes, so the stored offsets and lines
+    // past the gap are relative to the current length and line count.
+    private void moveGap(int index) {
+        int textLength = length();
+        while (gapStart > index) {
+            gapStart--;
+            gapEnd--;
+            // Clear before copying: with an empty gap both are the same slot.
+            Token token = tokens[gapStart];
+            tokens[gapStart] = null;
+            tokens[gapEnd] = token;
+            starts[gapEnd] = starts[gapStart] - textLength;
+            lines[gapEnd] = lines[gapStart] - lineCount;
+        }
+        while (gapStart < index) {
+            Token token = tokens[gapEnd];
+            tokens[gapEnd] = null;
+            tokens[gapStart] = token;
+            starts[gapStart] = starts[gapEnd] + textLength;
+            lines[gapStart] = lines[gapEnd] + lineCount;
+            gapStart++;
+            gapEnd++;
+        }
+    }
+
+    // Replaces the `removed` tokens after the gap with `scanned`, which are
+    // spans over a window that starts at `scanStart`.
+    private void replaceTokens(int removed, List<Token> scanned, int scanStart) {
+        for (int i = 0; i < removed; i++) tokens[gapEnd + i] = null;
+        gapEnd += removed;
+
+        if (gapEnd - gapStart < scanned.size()) {
+            int after = tokens.length - gapEnd;
+            int capacity = Math.max(tokens.length * 2, gapStart + scanned.size() + after + 16);
+            Token[] grownTokens = new Token[capacity];
+            int[] grownStarts = new int[capacity];
+            int[] grownLines = new int[capacity];
+            System.arraycopy(tokens, 0, grownTokens, 0, gapStart);
+            System.arraycopy(starts, 0, grownStarts, 0, gapStart);
+            System.arraycopy(lines, 0, grownLines, 0, gapStart);
+            System.arraycopy(tokens, gapEnd, grownTokens, capacity - after, after);
+            System.arraycopy(starts, gapEnd, grownStarts, capacity - after, after);
+            System.arraycopy(lines, gapEnd, grownLines, capacity - after, after);
+            tokens = grownTokens;
+            starts = grownStarts;
+            lines = grownLines;
+            gapEnd = capacity - after;
+        }
+
+        for (Token token : scanned) {
+            tokens[gapStart] = token;
+            starts[gapStart] = scanStart + token.start;
+            lines[gapStart] = token.line;
+            gapStart++;
+        }
+    }
+
+    // Text buffer.
+
+    private char charAt(int index) {
+        return text[index < textGapStart ? index : index + textGapEnd - textGapStart];
+    }
+
+    private String text(int from, int to) {
+        char[] out = new char[to - from];
+        // Characters [from, split) are before the gap.
+        int split = Math.min(Math.max(from, textGapStart), to);
+        System.arraycopy(text, from, out, 0, split - from);
+        System.arraycopy(text, split + textGapEnd - textGapStart, out, split - from, to - split);
+        return new String(out);
+    }
+
+    private void replaceText(int offset, int removed, String inserted) {
+        if (offset < textGapStart) {
+            int moved = textGapStart - offset;
+            System.arraycopy(text, offset, text, textGapEnd - moved, moved);
+            textGapStart -= moved;
+            textGapEnd -= moved;
+        } else if (offset > textGapStart) {
+            int moved = offset - textGapStart;
+            System.arraycopy(text, textGapEnd, text, textGapStart, moved);
+            textGapStart += moved;
+            textGapEnd += moved;
+        }
+        textGapEnd += removed;
+
+        if (textGapEnd - textGapStart < inserted.length()) {
+            int after = text.length - textGapEnd;
+            int capacity = Math.max(text.length * 2, textGapStart + inserted.length() + after + 64);
+            char[] grown = new char[capacity];
+            System.arraycopy(text, 0, grown, 0, textGapStart);
+            System.arraycopy(text, textGapEnd, grown, capacity - after, after);
+            text = grown;
+            textGapEnd = capacity - after;
+        }
+        inserted.getChars(0, inserted.length(), text, textGapStart);
+        textGapStart += inserted.length();
+    }
+
+    // Tree.
+
+    // The nodes of the tree carry their width in tokens, so that a token
+    // index can be followed down it, and the expression built for them, or
+    // null once a change below has made it stale. `line` is the line of the
+    // node's first token when the expression was built: tokens after a
+    // change move together, so if it still matches the whole subtree does.
+    private abstract static class Syntax {
+        int width;
+        Expression expression;
+        int depth;
+        int line;
+    }
+
+    // A literal or variable.
+    private static final class Leaf extends Syntax {
+        Leaf(Expression expression) {
+            this.width = 1;
+            this.expression = expression;
+            this.depth = 1;
+        }
+    }
+
+    // A unary operator or parentheses around an operand.
+    private static final class Prefix extends Syntax {
+        final boolean grouping;
+        Syntax operand;
+
+        Prefix(Expression expression, Syntax operand) {
+            this.grouping = expression instanceof GroupingExpr;
+            this.operand = operand;
+            this.width = (grouping ? 2 : 1) + operand.width;
+            this.expression = expression;
+            this.depth = 1 + operand.depth;
+        }
+    }
+
+    // Operands joined by the binary operators one loop of the parser took,
+    // which fold to the left: entry 0 is the first operand, entry k > 0 an
+    // operator and the operand after it. The operators themselves are read
+    // from the token buffer.
+    private static final class Chain extends Syntax {
+        Syntax[] operands = new Syntax[4];
+        int[] widths = new int[4];
+        // The binary node for entries [0, k], and its depth; valid below
+        // `valid`.
+        Expression[] prefixes = new Expression[4];
+        int[] depths = new int[4];
+        int count;
+        int valid;
+        // Fenwick tree over widths, built when first needed.
+        private int[] index;
+
+        Chain(Syntax first) {
+            add(first, first.width, first.expression, first.depth);
+        }
+
+        void append(Syntax operand, BinaryExpr expression) {
+            add(operand, 1 + operand.width, expression, 1 + Math.max(depths[count - 1], operand.depth));
+        }
+
+        private void add(Syntax operand, int entryWidth, Expression prefix, int prefixDepth) {
+            if (count == operands.length) grow(count * 2);
+            operands[count] = operand;
+            widths[count] = entryWidth;
+            prefixes[count] = prefix;
+            depths[count] = prefixDepth;
+            count++;
+            valid = count;
+            width += entryWidth;
+            expression = prefix;
+            depth = prefixDepth;
+            index = null;
+        }
+
+        private void grow(int capacity) {
+            operands = Arrays.copyOf(operands, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            prefixes = Arrays.copyOf(prefixes, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+        }
+
+        // Tokens in the entries before entry k.
+        int prefix(int k) {
+            if (k >= count) return width;
+            buildIndex();
+            int sum = 0;
+            for (int i = k; i > 0; i -= i & -i) sum += index[i];
+            return sum;
+        }
+
+        int operandStart(int k) {
+            return prefix(k) + (k > 0 ? 1 : 0);
+        }
+
+        // The entry holding token t of the chain.
+        int entryAt(int t) {
+            buildIndex();
+            int k = 0;
+            for (int step = Integer.highestOneBit(count); step > 0; step >>= 1) {
+                if (k + step <= count && index[k + step] <= t) {
+                    k += step;
+                    t -= index[k];
+                }
+            }
+            return Math.min(k, count - 1);
+        }
+
+        void resize(int k, int delta) {
+            widths[k] += delta;
+            width += delta;
+            if (index != null) {
+                for (int i = k + 1; i <= count; i += i & -i) index[i] += delta;
+            }
+            valid = Math.min(valid, k);
+        }
+
+        // Replaces entries [a, b] with `replacement`; entry a keeps its
+        // operator.
+        void splice(int a, int b, Syntax[] replacement) {
+            int moved = count - b - 1;
+            int newCount = a + replacement.length + moved;
+            if (newCount > operands.length) grow(Math.max(newCount, count * 2));
+            for (int i = a; i <= b; i++) width -= widths[i];
+            System.arraycopy(operands, b + 1, operands, a + replacement.length, moved);
+            System.arraycopy(widths, b + 1, widths, a + replacement.length, moved);
+            for (int i = 0; i < replacement.length; i++) {
+                operands[a + i] = replacement[i];
+                widths[a + i] = replacement[i].width + (a + i > 0 ? 1 : 0);
+                width += widths[a + i];
+            }
+            for (int i = newCount; i < count; i++) operands[i] = null;
+            count = newCount;
+            valid = Math.min(valid, a);
+            expression = null;
+            index = null;
+        }
+
+        private void buildIndex() {
+            if (index != null) return;
+            index = new int[count + 1];
+            for (int i = 1; i <= count; i++) {
+                index[i] += widths[i - 1];
+                int parent = i + (i & -i);
+                if (parent <= count) index[parent] += index[i];
+            }
+        }
+    }
+
+    // The nodes from the root down to where a change is, in reparse().
+    private static final class Path {
+        Syntax[] nodes = new Syntax[16];
+        int[] starts = new int[16];
+        int[] precedences = new int[16];
+        int[] entries = new int[16];
+        int size;
+
+        void push(Syntax node, int start, int precedence, int entry) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                precedences = Arrays.copyOf(precedences, size * 2);
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            nodes[size] = node;
+            starts[size] = start;
+            precedences[size] = precedence;
+            entries[size] = entry;
+            size++;
+        }
+    }
+
+    // The walks below use explicit stacks, so trees of any depth can be
+    // handled.
+
+    // The tree for `root`, parsed from token `start`. The expressions in it
+    // are the ones from `root`.
+    private Syntax syntax(Expression root, int start) {
+        // Reversed, a node-right-left walk visits children before parents.
+        List<Expression> order = new ArrayList<>();
+        ArrayDeque<Expression> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Expression expr = pending.pop();
+            order.add(expr);
+            if (expr instanceof BinaryExpr binary) {
+                pending.push(binary.left);
+                pending.push(binary.right);
+            } else if (expr instanceof UnaryExpr unary) {
+                pending.push(unary.right);
+            } else if (expr instanceof GroupingExpr grouping) {
+                pending.push(grouping.expression);
+            }
+        }
+
+        ArrayDeque<Syntax> built = new ArrayDeque<>();
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Expression expr = order.get(i);
+            if (expr instanceof BinaryExpr binary) {
+                Syntax right = built.pop();
+                Syntax left = built.pop();
+                // A binary left operand was built by the same loop.
+                Chain chain = binary.left instanceof BinaryExpr ? (Chain) left : new Chain(left);
+                chain.append(right, binary);
+                built.push(chain);
+            } else if (expr instanceof UnaryExpr || expr instanceof GroupingExpr) {
+                built.push(new Prefix(expr, built.pop()));
+            } else {
+                built.push(new Leaf(expr));
+            }
+        }
+        Syntax syntax = built.pop();
+
+        ArrayDeque<Syntax> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> nodeStarts = new ArrayDeque<>();
+        nodes.push(syntax);
+        nodeStarts.push(start);
+        while (!nodes.isEmpty()) {
+            Syntax node = nodes.pop();
+            int nodeStart = nodeStarts.pop();
+            node.line = line(nodeStart);
+            if (node instanceof Prefix prefix) {
+                nodes.push(prefix.operand);
+                nodeStarts.push(nodeStart + 1);
+            } else if (node instanceof Chain chain) {
+                for (int k = 0, offset = nodeStart; k < chain.count; offset += chain.widths[k], k++) {
+                    nodes.push(chain.operands[k]);
+                    nodeStarts.push(offset + (k > 0 ? 1 : 0));
+                }
+            }
+        }
+        return syntax;
+    }
+
+    private boolean fresh(Syntax node, int start) {
+        return node.expression != null && node.line == line(start);
+    }
+
+    // Builds the expressions the tree is missing, reusing every subtree that
+    // did not change or move to other lines.
+    private Expression materialize() {
+        if (fresh(tree, 0)) return tree.expression;
+
+        ArrayDeque<Syntax> nodes = new ArrayDeque<>();
+        ArrayDeque<int[]> states = new ArrayDeque<>();
+        nodes.push(tree);
+        // Start token, and for chains the next entry and its start.
+        states.push(new int[]{0, -1, 0});
+        while (!nodes.isEmpty()) {
+            Syntax node = nodes.peek();
+            int[] state = states.peek();
+            int start = state[0];
+            if (node instanceof Leaf) {
+                if (node.expression instanceof VariableExpr && node.line != line(start)) {
+                    node.expression = new VariableExpr(token(start));
+                }
+            } else if (node instanceof Prefix prefix) {
+                if (!fresh(prefix.operand, start + 1)) {
+                    nodes.push(prefix.operand);
+                    states.push(new int[]{start + 1, -1, 0});
+                    continue;
+                }
+                Expression operand = prefix.operand.expression;
+                prefix.expression = prefix.grouping ? new GroupingExpr(operand) : new UnaryExpr(token(start), operand);
+                prefix.depth = 1 + prefix.operand.depth;
+            } else {
+                Chain chain = (Chain) node;
+                if (state[1] < 0) {
+                    // Moved to other lines: every operator moved with it.
+                    if (chain.line != line(start)) chain.valid = 0;
+                    state[1] = chain.valid;
+                    state[2] = start + chain.prefix(chain.valid);
+                }
+                boolean waiting = false;
+                for (; state[1] < chain.count; state[1]++) {
+                    int k = state[1];
+                    Syntax operand = chain.operands[k];
+                    int operandStart = state[2] + (k > 0 ? 1 : 0);
+                    if (!fresh(operand, operandStart)) {
+                        nodes.push(operand);
+                        states.push(new int[]{operandStart, -1, 0});
+                        waiting = true;
+                        break;
+                    }
+                    if (k == 0) {
+                        chain.prefixes[0] = operand.expression;
+                        chain.depths[0] = operand.depth;
+                    } else {
+                        chain.prefixes[k] = new BinaryExpr(chain.prefixes[k - 1], token(state[2]), operand.expression);
+                        chain.depths[k] = 1 + Math.max(chain.depths[k - 1], operand.depth);
+                    }
+                    chain.valid = k + 1;
+                    state[2] += chain.widths[k];
+                }
+                if (waiting) continue;
+                chain.expression = chain.prefixes[chain.count - 1];
+                chain.depth = chain.depths[chain.count - 1];
+            }
+            node.line = line(start);
+            nodes.pop();
+            states.pop();
+        }
+        return tree.expression;
+    }
+
+    // Errors.
+
+    private static final class LexicalError {
+        int offset;
+        int line;
+        final String message;
+
+        LexicalError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+    }
+
+    // Records what the scanner and parser report instead of formatting it,
+    // so it can be kept across edits and reported again.
+    private static final class Capture extends Diagnostics {
+        final List<LexicalError> lexical = new ArrayList<>();
+        // Lexical errors that already have an offset.
+        private int placed;
+        Token token;
+        String message;
+
+        @Override
+        public void error(int line, String message) {
+            lexical.add(new LexicalError(line, message));
+        }
+
+        @Override
+        public void error(Token token, String message) {
+            // The parser stops at its first error.
+            this.token = token;
+            this.message = message;
+        }
+
+        // The scanner reports an error before returning the token after it.
+        void place(int offset) {
+            for (; placed < lexical.size(); placed++) lexical.get(placed).offset = offset;
+        }
+    }
+}
@@ -2,10 +2,78 @@ package in.rajat.rLang;
 
 import in.rajat.rLang.enums.TokenType;
 import in.rajat.rLang.expressions.*;
+import in.rajat.rLang.models.Token;
 
+import java.util.Arrays;
+import java.util.Map;
 
+import static in.rajat.rLang.Values.isTruthy;
+
+
+/**
+ * Tree-walking evaluator.
+ * <p>
+ * Numbers never travel through the visitor boxed: a numeric result is left
+ * in the {@code number} register, or the {@code integer} register for an
+ * integer, and the visitor returns the {@link #NUMBER} or {@link #INTEGER}
+ * tag instead. Only values that escape (the final result, string
+ * concatenation, equality against a non-number) are boxed. Integer
+ * arithmetic follows {@link Numbers}.
+ * <p>
+ * Nodes an {@link in.rajat.rLang.expressions.InterningFactory} shared
+ * between several places are evaluated once per run: the first result is
+ * kept in the node's memo slot and reused wherever the node appears again.
+ * Evaluation has no side effects and bindings do not change during a run,
+ * so that is always the value the node would have had.
+ */
 public class Interpreter implements Expression.Visitor<Object> {
 
+    // Tag returned by the visitor when the actual value sits unboxed in `number`.
+    private static final Object NUMBER = new Object();
+    // Likewise for an integer in `integer`.
+    private static final Object INTEGER = new Object();
+
+    private double number;
+    private long integer;
+
+    // Operators still allowed this run, and how many were allowed in all;
+    // see refuel().
+    private long fuel = Long.MAX_VALUE;
+    private long granted;
+    private boolean metered;
+
+    // Operators being evaluated, for the profiler; null when not profiled.
+    private Profiler.Probe probe;
+
+    // Runs of PLUS being evaluated by plusChain.
+    private BinaryExpr[] chain = new BinaryExpr[16];
+    private int chainTop;
+
+    // Values of shared nodes, by memo slot. A slot holds a value for the
+    // current run when its stamp in memoRuns equals `run`.
+    private Object[] memoValues = new Object[0];
+    private double[] memoNumbers = new double[0];
+    private long[] memoIntegers = new long[0];
+    private int[] memoRuns = new int[0];
+    private int run;
+
+    // Values for the variables the expression refers to.
+    private final Map<String, Object> bindings;
+
+    public Interpreter() {
+        this(Map.of());
+    }
+
+    public Interpreter(Map<String, Object> bindings) {
+        this.bindings = bindings;
+    }
+
+    public Object interpret(Expression expression) {
+        chainTop = 0;
+        startRun();
+        return Values.flatten(box(evaluate(expression)));
+    }
+
     @Override
     public Object visitGroupingExpr(GroupingExpr expr) {
         return evaluate(expr.expression);
@@ -13,63 +81,519 @@ public class Interpreter implements Expression.Visitor<Object> {
 
     @Override
     public Object visitLiteralExpr(LiteralExpr expr) {
+        if (expr.value instanceof Double) {
+            number = (double) expr.value;
+            return NUMBER;
+        }
+        if (expr.value instanceof Long) {
+            integer = (long) expr.value;
+            return INTEGER;
+        }
         return expr.value;
     }
 
     @Override
-    public Object visitUnaryExpr(UnaryExpr expr) {
-        Object right = evaluate(expr.right);
+    public Object visitVariableExpr(VariableExpr expr) {
+        Object value = bindings.get(expr.identifier);
+        if (value == null && !bindings.containsKey(expr.identifier)) {
+            throw new RuntimeError(expr.name, "Undefined variable '" + expr.identifier + "'.");
+        }
 
-        Object ans;
+        if (value instanceof Double) {
+            number = (double) value;
+            return NUMBER;
+        }
+        if (value instanceof Long) {
+            integer = (long) value;
+            return INTEGER;
+        }
+        return value;
+    }
 
-        ans = switch (expr.operator.type) {
-            case BANG -> !isTruthy(right);
-            case MINUS -> -(double) right;
-            default -> null;
-        };
-        return ans;
+    // With a probe, each operator is on its stack while it is evaluated.
+    // Leaving on a runtime error is not needed: the run, and the probe,
+    // end with it.
+
+    @Override
+    public Object visitUnaryExpr(UnaryExpr expr) {
+        int slot = expr.memo();
+        if (slot >= 0 && cached(slot)) return recall(slot);
+        Object value;
+        if (probe == null) {
+            value = unary(expr.operator, evaluate(expr.right));
+        } else {
+            probe.enter(expr);
+            value = unary(expr.operator, evaluate(expr.right));
+            probe.leave();
+        }
+        return slot < 0 ? value : remember(slot, value);
     }
 
     @Override
     public Object visitBinaryExpr(BinaryExpr expr) {
+        int slot = expr.memo();
+        if (slot >= 0 && cached(slot)) return recall(slot);
+        Object value;
+        if (probe == null) {
+            value = binary(expr);
+        } else {
+            probe.enter(expr);
+            value = binary(expr);
+            probe.leave();
+        }
+        return slot < 0 ? value : remember(slot, value);
+    }
 
+    private Object binary(BinaryExpr expr) {
+        if (expr.operator.type == TokenType.PLUS && expr.left instanceof BinaryExpr left
+                && left.operator.type == TokenType.PLUS && left.memo() < 0) {
+            return plusChain(expr);
+        }
         Object left = evaluate(expr.left);
+        double leftNumber = number;
+        long leftInteger = integer;
         Object right = evaluate(expr.right);
+        return binary(expr.operator, left, leftNumber, leftInteger, right, number, integer);
+    }
 
-        switch (expr.operator.type) {
+    // A run of PLUS down the left side, like "a" + x + "b" + y, evaluated in
+    // one loop. Once the running value is a string every later step is a
+    // concatenation, so the rest of the operands go into a single builder.
+    private Object plusChain(BinaryExpr expr) {
+        // The run is pushed on `chain` top-down; runs inside its operands
+        // are pushed above it and gone by the time it continues. A shared
+        // node ends the run so that its memoized value is used.
+        int base = chainTop;
+        Expression head = expr;
+        while (head instanceof BinaryExpr binary && binary.operator.type == TokenType.PLUS
+                && (binary == expr || binary.memo() < 0)) {
+            if (chainTop == chain.length) chain = Arrays.copyOf(chain, chainTop * 2);
+            chain[chainTop++] = binary;
+            head = binary.left;
+        }
+
+        // The run's first link is on the probe's stack already; the others
+        // go on now and come off as they are applied.
+        if (probe != null) {
+            for (int i = base + 1; i < chainTop; i++) probe.enter(chain[i]);
+        }
+
+        Object value = evaluate(head);
+        int next = chainTop - 1;
+        for (; next >= base && !Values.isString(value); next--) {
+            double leftNumber = number;
+            long leftInteger = integer;
+            BinaryExpr binary = chain[next];
+            Object right = evaluate(binary.right);
+            value = binary(binary.operator, value, leftNumber, leftInteger, right, number, integer);
+            if (probe != null && next > base) probe.leave();
+        }
+        if (next >= base) {
+            StringBuilder out = new StringBuilder();
+            Values.append(out, value);
+            for (; next >= base; next--) {
+                Object right = evaluate(chain[next].right);
+                Values.append(out, box(right));
+                if (probe != null && next > base) probe.leave();
+            }
+            value = out.toString();
+        }
+        Arrays.fill(chain, base, chainTop, null);
+        chainTop = base;
+        return value;
+    }
+
+    /**
+     * Same result as {@link #interpret(Expression)}, but walks the tree with
+     * heap-allocated stacks instead of recursion, so it works for trees of
+     * any depth. The recursive walk is faster on ordinary trees.
+     */
+    public Object interpretIteratively(Expression expression) {
+        startRun();
+        Walk walk = new Walk(expression);
+        if (!walk(walk)) throw outOfFuel(walk.pending());
+        return walk.value;
+    }
+
+    /**
+     * State of an iterative walk, kept off the Java stack so that a walk
+     * stopped by running out of fuel can be picked up again later.
+     */
+    static final class Walk {
+        // Work stack of nodes to visit; a node is pushed a second time (with
+        // its `operands` flag set) to be applied once its operands are on the
+        // value stack.
+        private Expression[] work = new Expression[32];
+        private boolean[] operands = new boolean[32];
+        private int top;
+
+        // Evaluated operands, with numbers kept unboxed as in the recursive walk.
+        private Object[] values = new Object[16];
+        private double[] numbers = new double[16];
+        private long[] integers = new long[16];
+        private int count;
+
+        // The result, once the walk has finished.
+        Object value;
+
+        Walk(Expression expression) {
+            work[top++] = expression;
+        }
+
+        // The operator the walk stopped in front of.
+        Token pending() {
+            Expression expr = work[top - 1];
+            return expr instanceof UnaryExpr unary ? unary.operator : ((BinaryExpr) expr).operator;
+        }
+    }
+
+    /**
+     * Continues {@code walk} until it finishes, returning true, or until the
+     * fuel runs out in front of an operator, returning false with that
+     * operator left on the work stack.
+     */
+    boolean walk(Walk walk) {
+        // Locals for the loop; written back when it stops.
+        Expression[] work = walk.work;
+        boolean[] operands = walk.operands;
+        int top = walk.top;
+        Object[] values = walk.values;
+        double[] numbers = walk.numbers;
+        long[] integers = walk.integers;
+        int count = walk.count;
+
+        // Metered walks apply every occurrence of a shared node, so that they
+        // use the fuel Script.operations() says the tree needs.
+        boolean memoize = !metered;
+        boolean finished = true;
+        while (top > 0) {
+            Expression expr = work[--top];
+            boolean apply = operands[top];
+            work[top] = null;
+
+            if (apply) {
+                if (--fuel < 0) {
+                    fuel = 0;
+                    work[top] = expr;
+                    top++;
+                    finished = false;
+                    break;
+                }
+                Object value;
+                int slot;
+                if (expr instanceof UnaryExpr unary) {
+                    count--;
+                    number = numbers[count];
+                    integer = integers[count];
+                    value = unary(unary.operator, values[count]);
+                    slot = unary.memo();
+                } else {
+                    BinaryExpr binary = (BinaryExpr) expr;
+                    count -= 2;
+                    value = binary(binary.operator, values[count], numbers[count], integers[count],
+                            values[count + 1], numbers[count + 1], integers[count + 1]);
+                    slot = binary.memo();
+                }
+                if (slot >= 0) remember(slot, value);
+                if (probe != null) probe.leave();
+                values[count] = value;
+                numbers[count] = number;
+                integers[count] = integer;
+                count++;
+                continue;
+            }
+
+            while (expr instanceof GroupingExpr grouping) expr = grouping.expression;
+
+            int slot = expr instanceof UnaryExpr unary ? unary.memo()
+                    : expr instanceof BinaryExpr binary ? binary.memo() : -1;
+            if (slot >= 0 && memoize && cached(slot)) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                    numbers = Arrays.copyOf(numbers, count * 2);
+                    integers = Arrays.copyOf(integers, count * 2);
+                }
+                values[count] = memoValues[slot];
+                numbers[count] = memoNumbers[slot];
+                integers[count] = memoIntegers[slot];
+                count++;
+                continue;
+            }
+
+            if (expr instanceof UnaryExpr || expr instanceof BinaryExpr) {
+                if (top + 3 > work.length) {
+                    work = Arrays.copyOf(work, work.length * 2);
+                    operands = Arrays.copyOf(operands, operands.length * 2);
+                }
+                work[top] = expr;
+                operands[top++] = true;
+                if (probe != null) probe.enter(expr);
+                if (expr instanceof UnaryExpr unary) {
+                    work[top] = unary.right;
+                    operands[top++] = false;
+                } else {
+                    BinaryExpr binary = (BinaryExpr) expr;
+                    // Pushed right first so the left operand is evaluated first.
+                    work[top] = binary.right;
+                    operands[top++] = false;
+                    work[top] = binary.left;
+                    operands[top++] = false;
+                }
+                continue;
+            }
+
+            // A leaf.
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+                numbers = Arrays.copyOf(numbers, count * 2);
+                integers = Arrays.copyOf(integers, count * 2);
+            }
+            values[count] = evaluate(expr);
+            numbers[count] = number;
+            integers[count] = integer;
+            count++;
+        }
+
+        walk.work = work;
+        walk.operands = operands;
+        walk.top = top;
+        walk.values = values;
+        walk.numbers = numbers;
+        walk.integers = integers;
+        walk.count = count;
+        if (finished) {
+            number = numbers[0];
+            integer = integers[0];
+            walk.value = Values.flatten(box(values[0]));
+        }
+        return finished;
+    }
+
+    /**
+     * Limits the operators the iterative walk applies from now on to
+     * {@code fuel} more. The recursive walk is never metered; callers check
+     * a tree's cost up front instead (see {@link Script#operations()}).
+     */
+    void refuel(long fuel) {
+        granted += fuel;
+        this.fuel = fuel;
+        metered = true;
+    }
+
+    long fuelLeft() {
+        return fuel;
+    }
+
+    /**
+     * Reports the operators this interpreter is inside to {@code probe},
+     * for the {@link Profiler} to sample.
+     */
+    void profile(Profiler.Probe probe) {
+        this.probe = probe;
+    }
+
+    private OutOfFuelError outOfFuel(Token operator) {
+        return new OutOfFuelError(operator.line, granted);
+    }
+
+    // Starts a run: memoized values from earlier runs are stale from here.
+    void startRun() {
+        if (++run == 0) {
+            // Wrapped around: stamps from 2^32 runs ago would look current.
+            Arrays.fill(memoRuns, 0);
+            run = 1;
+        }
+    }
+
+    private boolean cached(int slot) {
+        return slot < memoRuns.length && memoRuns[slot] == run;
+    }
+
+    private Object recall(int slot) {
+        number = memoNumbers[slot];
+        integer = memoIntegers[slot];
+        return memoValues[slot];
+    }
+
+    // Keeps `value`, with its register if it is a tag, as the value of `slot`
+    // for this run.
+    private Object remember(int slot, Object value) {
+        if (slot >= memoRuns.length) {
+            int capacity = Math.max(slot + 1, memoRuns.length * 2);
+            memoValues = Arrays.copyOf(memoValues, capacity);
+            memoNumbers = Arrays.copyOf(memoNumbers, capacity);
+            memoIntegers = Arrays.copyOf(memoIntegers, capacity);
+            memoRuns = Arrays.copyOf(memoRuns, capacity);
+        }
+        memoValues[slot] = value;
+        memoNumbers[slot] = number;
+        memoIntegers[slot] = integer;
+        memoRuns[slot] = run;
+        return value;
+    }
+
+    // The operand sits in its register if it is a tag.
+    private Object unary(Token operator, Object right) {
+        return switch (operator.type) {
+            case BANG -> !isNumber(right) && !isTruthy(right);
+            case MINUS -> {
+                checkNumberOperand(operator, right);
+                if (right == INTEGER && integer != Long.MIN_VALUE) {
+                    integer = -integer;
+                    yield INTEGER;
+                }
+                number = -asDouble(right, number, integer);
+                yield NUMBER;
+            }
+            default -> null;
+        };
+    }
+
+    private Object binary(Token operator, Object left, double leftNumber, long leftInteger,
+                          Object right, double rightNumber, long rightInteger) {
+        if (left == NUMBER && right == NUMBER) return doubles(operator.type, leftNumber, rightNumber);
+        if (left == INTEGER && right == INTEGER) return integers(operator.type, leftInteger, rightInteger);
+        return mixed(operator, left, leftNumber, leftInteger, right, rightNumber, rightInteger);
+    }
+
+    // Both operands are doubles.
+    private Object doubles(TokenType type, double a, double b) {
+        switch (type) {
+            case GREATER:
+                return a > b;
+            case GREATER_EQUAL:
+                return a >= b;
+            case LESS:
+                return a < b;
+            case LESS_EQUAL:
+                return a <= b;
+            case MINUS:
+                number = a - b;
+                return NUMBER;
+            case SLASH:
+                number = a / b;
+                return NUMBER;
+            case STAR:
+                number = a * b;
+                return NUMBER;
+            case PLUS:
+                number = a + b;
+                return NUMBER;
+            case BANG_EQUAL:
+                return !Numbers.isEqual(a, b);
+            case EQUAL_EQUAL:
+                return Numbers.isEqual(a, b);
+        }
+        return null;
+    }
+
+    // Both operands are integers. A result that overflows is computed in
+    // double instead.
+    private Object integers(TokenType type, long a, long b) {
+        switch (type) {
+            case GREATER:
+                return a > b;
+            case GREATER_EQUAL:
+                return a >= b;
+            case LESS:
+                return a < b;
+            case LESS_EQUAL:
+                return a <= b;
+            case MINUS:
+                if (Numbers.subtractOverflows(a, b)) break;
+                integer = a - b;
+                return INTEGER;
+            case STAR:
+                if (Numbers.multiplyOverflows(a, b)) break;
+                integer = a * b;
+                return INTEGER;
+            case PLUS:
+                if (Numbers.addOverflows(a, b)) break;
+                integer = a + b;
+                return INTEGER;
+            case BANG_EQUAL:
+                return a != b;
+            case EQUAL_EQUAL:
+                return a == b;
+        }
+        return doubles(type, a, b);
+    }
+
+    // Operands of different kinds, or not both numbers.
+    private Object mixed(Token operator, Object left, double leftNumber, long leftInteger,
+                         Object right, double rightNumber, long rightInteger) {
+        boolean integers = left == INTEGER && right == INTEGER;
+        switch (operator.type) {
             // Relational Operators
             case GREATER:
-                return (double) left > (double) right;
+                checkNumberOperands(operator, left, right);
+                if (integers) return leftInteger > rightInteger;
+                if (left == INTEGER) return Numbers.greater(leftInteger, rightNumber);
+                if (right == INTEGER) return Numbers.greater(leftNumber, rightInteger);
+                return leftNumber > rightNumber;
             case GREATER_EQUAL:
-                return (double) left >= (double) right;
+                checkNumberOperands(operator, left, right);
+                if (integers) return leftInteger >= rightInteger;
+                if (left == INTEGER) return Numbers.greaterEqual(leftInteger, rightNumber);
+                if (right == INTEGER) return Numbers.greaterEqual(leftNumber, rightInteger);
+                return leftNumber >= rightNumber;
             case LESS:
-                return (double) left < (double) right;
+                checkNumberOperands(operator, left, right);
+                if (integers) return leftInteger < rightInteger;
+                if (left == INTEGER) return Numbers.less(leftInteger, rightNumber);
+                if (right == INTEGER) return Numbers.less(leftNumber, rightInteger);
+                return leftNumber < rightNumber;
             case LESS_EQUAL:
-                return (double) left <= (double) right;
+                checkNumberOperands(operator, left, right);
+                if (integers) return leftInteger <= rightInteger;
+                if (left == INTEGER) return Numbers.lessEqual(leftInteger, rightNumber);
+                if (right == INTEGER) return Numbers.lessEqual(leftNumber, rightInteger);
+                return leftNumber <= rightNumber;
 
-            // Arithmetic Operators
+            // Arithmetic Operators. Integer results that overflow fall
+            // through to the double computation.
             case MINUS:
-                return (double) left + (double) right;
+                checkNumberOperands(operator, left, right);
+                if (integers && !Numbers.subtractOverflows(leftInteger, rightInteger)) {
+                    integer = leftInteger - rightInteger;
+                    return INTEGER;
+                }
+                number = asDouble(left, leftNumber, leftInteger) - asDouble(right, rightNumber, rightInteger);
+                return NUMBER;
             case SLASH:
-                return (double) left / (double) right;
+                checkNumberOperands(operator, left, right);
+                number = asDouble(left, leftNumber, leftInteger) / asDouble(right, rightNumber, rightInteger);
+                return NUMBER;
             case STAR:
-                return (double) left * (double) right;
+                checkNumberOperands(operator, left, right);
+                if (integers && !Numbers.multiplyOverflows(leftInteger, rightInteger)) {
+                    integer = leftInteger * rightInteger;
+                    return INTEGER;
+                }
+                number = asDouble(left, leftNumber, leftInteger) * asDouble(right, rightNumber, rightInteger);
+                return NUMBER;
             case PLUS:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left + (double) right;
+                if (integers && !Numbers.addOverflows(leftInteger, rightInteger)) {
+                    integer = leftInteger + rightInteger;
+                    return INTEGER;
+                }
+                if (isNumber(left) && isNumber(right)) {
+                    number = asDouble(left, leftNumber, leftInteger) + asDouble(right, rightNumber, rightInteger);
+                    return NUMBER;
                 }
 
-                if (left instanceof String || right instanceof String) {
-                    return left.toString() + right.toString();
+                if (Values.isString(left) || Values.isString(right)) {
+                    return Values.concat(box(left, leftNumber, leftInteger), box(right, rightNumber, rightInteger));
                 }
 
-                break;
+                throw new RuntimeError(operator,
+                        "Operands must be two numbers or two strings.");
 
             // Equality Check operators
             case BANG_EQUAL:
-                return !isEqual(left, right);
+                return !isEqual(left, leftNumber, leftInteger, right, rightNumber, rightInteger);
             case EQUAL_EQUAL:
-                return isEqual(left, right);
+                return isEqual(left, leftNumber, leftInteger, right, rightNumber, rightInteger);
         }
         return null;
     }
@@ -79,23 +603,43 @@ public class Interpreter implements Expression.Visitor<Object> {
         return expr.accept(this);
     }
 
-    private boolean isTruthy(Object obj) {
-        if (obj == null) {
-            return false;
-        }
+    private Object box(Object value) {
+        return box(value, number, integer);
+    }
 
-        if (obj instanceof Boolean) {
-            return ((boolean) obj);
-        }
+    private static Object box(Object value, double number, long integer) {
+        return value == NUMBER ? (Object) number : value == INTEGER ? (Object) integer : value;
+    }
+
+    private static boolean isNumber(Object value) {
+        return value == NUMBER || value == INTEGER;
+    }
 
-        return true;
+    // A number tag's value as a double.
+    private static double asDouble(Object value, double number, long integer) {
+        return value == INTEGER ? integer : number;
     }
 
-    private boolean isEqual(Object a, Object b) {
-        if (a == null && b == null) return true;
-        if (a == null) return false;
+    private static boolean isEqual(Object left, double leftNumber, long leftInteger,
+                                   Object right, double rightNumber, long rightInteger) {
+        if (isNumber(left) || isNumber(right)) {
+            if (left == INTEGER && right == INTEGER) return leftInteger == rightInteger;
+            // Same comparisons Numbers makes on boxed numbers, without boxing.
+            if (left == INTEGER && right == NUMBER) return Numbers.isEqual(leftInteger, rightNumber);
+            if (left == NUMBER && right == INTEGER) return Numbers.isEqual(rightInteger, leftNumber);
+            return left == NUMBER && right == NUMBER && Numbers.isEqual(leftNumber, rightNumber);
+        }
+        return Values.isEqual(left, right);
+    }
+
+    private void checkNumberOperand(Token operator, Object operand) {
+        if (isNumber(operand)) return;
+        throw new RuntimeError(operator, "Operand must be a number.");
+    }
 
-        return a.equals(b);
+    private void checkNumberOperands(Token operator, Object left, Object right) {
+        if (isNumber(left) && isNumber(right)) return;
+        throw new RuntimeError(operator, "Operands must be numbers.");
     }
 
 }
@@ -0,0 +1,185 @@
+package in.rajat.rLang;
+
+/**
+ * The two number kinds and how they combine, shared by every execution
+ * mode. Integer literals are {@link Long}s, and {@code +}, {@code -},
+ * {@code *} and negation stay exact while both operands are integers. A
+ * result that overflows a long is computed in double instead, as is any
+ * operation with a Double operand. {@code /} is always a double division,
+ * so {@code 7 / 2} is {@code 3.5}. Comparisons and equality hold across
+ * kinds, and are exact: {@code 2 == 2.0}, but {@code 9007199254740993} is
+ * greater than {@code 9007199254740992.0}, the double it converts to.
+ */
+public final class Numbers {
+    // What compare() returns for NaN: neither -1, 0 nor 1, so NaN fails
+    // every relational test.
+    private static final int UNORDERED = 2;
+
+    private Numbers() {
+    }
+
+    public static boolean isNumber(Object obj) {
+        return obj instanceof Double || obj instanceof Long;
+    }
+
+    // `obj` must be a number.
+    public static double toDouble(Object obj) {
+        return obj instanceof Long l ? (double) l : (double) obj;
+    }
+
+    // Whether a + b, a - b or a * b does not fit in a long.
+    public static boolean addOverflows(long a, long b) {
+        long r = a + b;
+        return ((a ^ r) & (b ^ r)) < 0;
+    }
+
+    public static boolean subtractOverflows(long a, long b) {
+        long r = a - b;
+        return ((a ^ b) & (a ^ r)) < 0;
+    }
+
+    public static boolean multiplyOverflows(long a, long b) {
+        return Math.multiplyHigh(a, b) != (a * b) >> 63;
+    }
+
+    // The operations on boxed numbers, for the generic paths of the
+    // evaluators. Both operands must be numbers.
+    public static Object negate(Object right) {
+        if (right instanceof Long l) return l == Long.MIN_VALUE ? -(double) l : (Object) (-l);
+        return -(double) right;
+    }
+
+    public static Object add(Object left, Object right) {
+        if (left instanceof Long a && right instanceof Long b) {
+            return addOverflows(a, b) ? (double) a + (double) b : (Object) (a + b);
+        }
+        return toDouble(left) + toDouble(right);
+    }
+
+    public static Object subtract(Object left, Object right) {
+        if (left instanceof Long a && right instanceof Long b) {
+            return subtractOverflows(a, b) ? (double) a - (double) b : (Object) (a - b);
+        }
+        return toDouble(left) - toDouble(right);
+    }
+
+    public static Object multiply(Object left, Object right) {
+        if (left instanceof Long a && right instanceof Long b) {
+            return multiplyOverflows(a, b) ? (double) a * (double) b : (Object) (a * b);
+        }
+        return toDouble(left) * toDouble(right);
+    }
+
+    public static double divide(Object left, Object right) {
+        return toDouble(left) / toDouble(right);
+    }
+
+    // Relational operators, like Java's: numbers compare by their exact
+    // values, and NaN makes them all false.
+    public static boolean greater(Object left, Object right) {
+        if (left instanceof Long a) {
+            return right instanceof Long b ? a > b : greater(a.longValue(), (double) right);
+        }
+        if (right instanceof Long b) return greater((double) left, b.longValue());
+        return (double) left > (double) right;
+    }
+
+    public static boolean greaterEqual(Object left, Object right) {
+        if (left instanceof Long a) {
+            return right instanceof Long b ? a >= b : greaterEqual(a.longValue(), (double) right);
+        }
+        if (right instanceof Long b) return greaterEqual((double) left, b.longValue());
+        return (double) left >= (double) right;
+    }
+
+    public static boolean less(Object left, Object right) {
+        if (left instanceof Long a) {
+            return right instanceof Long b ? a < b : less(a.longValue(), (double) right);
+        }
+        if (right instanceof Long b) return less((double) left, b.longValue());
+        return (double) left < (double) right;
+    }
+
+    public static boolean lessEqual(Object left, Object right) {
+        if (left instanceof Long a) {
+            return right instanceof Long b ? a <= b : lessEqual(a.longValue(), (double) right);
+        }
+        if (right instanceof Long b) return lessEqual((double) left, b.longValue());
+        return (double) left <= (double) right;
+    }
+
+    // The same across kinds, for evaluators that keep numbers unboxed.
+    public static boolean greater(long left, double right) {
+        return compare(left, right) == 1;
+    }
+
+    public static boolean greater(double left, long right) {
+        return compare(right, left) == -1;
+    }
+
+    public static boolean greaterEqual(long left, double right) {
+        int comparison = compare(left, right);
+        return comparison == 1 || comparison == 0;
+    }
+
+    public static boolean greaterEqual(double left, long right) {
+        int comparison = compare(right, left);
+        return comparison == -1 || comparison == 0;
+    }
+
+    public static boolean less(long left, double right) {
+        return compare(left, right) == -1;
+    }
+
+    public static boolean less(double left, long right) {
+        return compare(right, left) == 1;
+    }
+
+    public static boolean lessEqual(long left, double right) {
+        int comparison = compare(left, right);
+        return comparison == -1 || comparison == 0;
+    }
+
+    public static boolean lessEqual(double left, long right) {
+        int comparison = compare(right, left);
+        return comparison == 1 || comparison == 0;
+    }
+
+    /**
+     * Compares a long with a double without rounding either: -1, 0 or 1, or
+     * UNORDERED if the double is NaN. Converting the long to double instead
+     * would make 2^53 + 1 equal to 2^53, and Long.MAX_VALUE equal to 2^63.
+     */
+    private static int compare(long left, double right) {
+        if (right != right) return UNORDERED;
+        // Past the range of a long; -2^63 itself is Long.MIN_VALUE.
+        if (right >= 0x1p63) return -1;
+        if (right < -0x1p63) return 1;
+        // Truncating an in-range double is exact, and so is comparing the
+        // double with its own whole part.
+        long whole = (long) right;
+        if (left != whole) return left < whole ? -1 : 1;
+        return right > whole ? -1 : right < whole ? 1 : 0;
+    }
+
+    /**
+     * Equality of two numbers of either kind. Like Double.equals, NaN equals
+     * itself and 0.0 differs from -0.0; an integer equals a double of exactly
+     * its value (and 0 differs from -0.0, as 0.0 does).
+     */
+    public static boolean isEqual(Object left, Object right) {
+        if (left instanceof Long a) {
+            return right instanceof Long b ? a.longValue() == b.longValue() : isEqual(a.longValue(), (double) right);
+        }
+        if (right instanceof Long b) return isEqual(b.longValue(), (double) left);
+        return isEqual((double) left, (double) right);
+    }
+
+    public static boolean isEqual(double left, double right) {
+        return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+    }
+
+    public static boolean isEqual(long left, double right) {
+        return compare(left, right) == 0 && (left != 0 || Double.doubleToRawLongBits(right) == 0);
+    }
+}
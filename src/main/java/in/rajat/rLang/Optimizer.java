@@ -0,0 +1,211 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.expressions.*;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * AST rewriting pass that runs between RParser and evaluation.
+ * <ul>
+ *     <li>constant subtrees are folded into a single LiteralExpr,</li>
+ *     <li>groupings are dropped since the tree already encodes precedence,</li>
+ *     <li>identities such as {@code x * 1}, {@code x / 1}, {@code x - 0},
+ *     {@code --x} and {@code !!b} are removed when the operand's type is
+ *     known, so the rewrite cannot hide a runtime error.</li>
+ * </ul>
+ * A subtree whose evaluation raises a RuntimeError is left in place so the
+ * error still surfaces, with its line, when the program runs.
+ */
+public class Optimizer implements Expression.Visitor<Expression> {
+
+    // NUMBER is a number of either kind, DOUBLE one known to be a double.
+    private enum Kind {NUMBER, DOUBLE, STRING, BOOLEAN, NULL, UNKNOWN}
+
+    private final Interpreter folder = new Interpreter();
+    private final ExpressionFactory factory;
+    // Kind of every node looked at during one optimize(), so the kind of a
+    // long chain is worked out once per node rather than once per level.
+    private final Map<Expression, Kind> kinds = new IdentityHashMap<>();
+
+    public Optimizer() {
+        this(ExpressionFactory.PLAIN);
+    }
+
+    /**
+     * Rewritten nodes are built by {@code factory}; pass the one the tree was
+     * parsed with to keep an interned tree's sharing.
+     */
+    public Optimizer(ExpressionFactory factory) {
+        this.factory = factory;
+    }
+
+    public Expression optimize(Expression expression) {
+        if (expression == null) return null;
+        try {
+            return expression.accept(this);
+        } finally {
+            kinds.clear();
+        }
+    }
+
+    @Override
+    public Expression visitBinaryExpr(BinaryExpr expr) {
+        Expression left = expr.left.accept(this);
+        Expression right = expr.right.accept(this);
+
+        Expression rewritten = left == expr.left && right == expr.right
+                ? expr
+                : factory.binary(left, expr.operator, right);
+
+        if (left instanceof LiteralExpr && right instanceof LiteralExpr) {
+            return fold(rewritten);
+        }
+
+        // An integer operand leaves the kind alone and a double one makes the
+        // result a double, so the double identities only hold for doubles.
+        switch (expr.operator.type) {
+            case STAR:
+                if (isNumber(left, 1) && fits(left, right)) return right;
+                if (isNumber(right, 1) && fits(right, left)) return left;
+                break;
+            case SLASH:
+                // Division always yields a double.
+                if (isNumber(right, 1) && kindOf(left) == Kind.DOUBLE) return left;
+                break;
+            case MINUS:
+                // x + 0 is not an identity (-0 + 0 is 0), but x - 0 is.
+                if (isNumber(right, 0) && fits(right, left)) return left;
+                break;
+        }
+
+        return rewritten;
+    }
+
+    @Override
+    public Expression visitGroupingExpr(GroupingExpr expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Expression visitLiteralExpr(LiteralExpr expr) {
+        return expr;
+    }
+
+    @Override
+    public Expression visitVariableExpr(VariableExpr expr) {
+        return expr;
+    }
+
+    @Override
+    public Expression visitUnaryExpr(UnaryExpr expr) {
+        Expression right = expr.right.accept(this);
+
+        if (right instanceof LiteralExpr) {
+            return fold(factory.unary(expr.operator, right));
+        }
+
+        if (right instanceof UnaryExpr inner && inner.operator.type == expr.operator.type) {
+            TokenType type = expr.operator.type;
+            // Not for integers: negating the smallest long yields a double.
+            if (type == TokenType.MINUS && kindOf(inner.right) == Kind.DOUBLE) return inner.right;
+            if (type == TokenType.BANG && kindOf(inner.right) == Kind.BOOLEAN) return inner.right;
+        }
+
+        return right == expr.right ? expr : factory.unary(expr.operator, right);
+    }
+
+    private Expression fold(Expression expr) {
+        try {
+            return factory.literal(folder.interpret(expr));
+        } catch (RuntimeError error) {
+            return expr;
+        }
+    }
+
+    private static boolean isNumber(Expression expr, long value) {
+        return expr instanceof LiteralExpr literal
+                && (literal.value instanceof Long integer && integer == value
+                || literal.value instanceof Double number && number == value);
+    }
+
+    // Whether `operand` is a number whose kind `literal` cannot change.
+    private boolean fits(Expression literal, Expression operand) {
+        Kind kind = kindOf(operand);
+        return ((LiteralExpr) literal).value instanceof Long ? isNumeric(kind) : kind == Kind.DOUBLE;
+    }
+
+    private static boolean isNumeric(Kind kind) {
+        return kind == Kind.NUMBER || kind == Kind.DOUBLE;
+    }
+
+    // The kind a subtree has if it evaluates without a RuntimeError. Arithmetic
+    // either throws or yields a number, so it is NUMBER whatever its operands;
+    // dropping an identity around it can then only ever remove a no-op.
+    private Kind kindOf(Expression expr) {
+        Kind kind = kinds.get(expr);
+        if (kind == null) {
+            kind = computeKind(expr);
+            kinds.put(expr, kind);
+        }
+        return kind;
+    }
+
+    // Only ever recurses into operands that have no kind yet.
+    private Kind computeKind(Expression expr) {
+        if (expr instanceof LiteralExpr literal) {
+            Object value = literal.value;
+            if (value == null) return Kind.NULL;
+            if (value instanceof Double) return Kind.DOUBLE;
+            if (value instanceof Long) return Kind.NUMBER;
+            if (value instanceof String) return Kind.STRING;
+            if (value instanceof Boolean) return Kind.BOOLEAN;
+            return Kind.UNKNOWN;
+        }
+
+        if (expr instanceof GroupingExpr grouping) {
+            return kindOf(grouping.expression);
+        }
+
+        if (expr instanceof UnaryExpr unary) {
+            return switch (unary.operator.type) {
+                case BANG -> Kind.BOOLEAN;
+                case MINUS -> kindOf(unary.right) == Kind.DOUBLE ? Kind.DOUBLE : Kind.NUMBER;
+                default -> Kind.UNKNOWN;
+            };
+        }
+
+        if (expr instanceof BinaryExpr binary) {
+            switch (binary.operator.type) {
+                case BANG_EQUAL:
+                case EQUAL_EQUAL:
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    return Kind.BOOLEAN;
+                case SLASH:
+                    return Kind.DOUBLE;
+                case MINUS:
+                case STAR:
+                    return numberKind(kindOf(binary.left), kindOf(binary.right));
+                case PLUS: {
+                    Kind left = kindOf(binary.left);
+                    Kind right = kindOf(binary.right);
+                    if (isNumeric(left) && isNumeric(right)) return numberKind(left, right);
+                    if (left == Kind.STRING || right == Kind.STRING) return Kind.STRING;
+                    return Kind.UNKNOWN;
+                }
+            }
+        }
+
+        return Kind.UNKNOWN;
+    }
+
+    // Arithmetic on a double is a double; otherwise the operands' kinds,
+    // or overflow, decide.
+    private static Kind numberKind(Kind left, Kind right) {
+        return left == Kind.DOUBLE || right == Kind.DOUBLE ? Kind.DOUBLE : Kind.NUMBER;
+    }
+}
@@ -0,0 +1,14 @@
+package in.rajat.rLang;
+
+/**
+ * Raised when an evaluation has applied as many operators as its {@link Fuel}
+ * allowed. The line is that of the operator it stopped in front of.
+ */
+public class OutOfFuelError extends RuntimeError {
+    public final long limit;
+
+    public OutOfFuelError(int line, long limit) {
+        super(line, "Out of fuel: evaluation stopped after " + limit + " operations.");
+        this.limit = limit;
+    }
+}
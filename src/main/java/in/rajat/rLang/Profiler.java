@@ -0,0 +1,286 @@
+package in.rajat.rLang;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import in.rajat.rLang.expressions.BinaryExpr;
+import in.rajat.rLang.expressions.Expression;
+import in.rajat.rLang.expressions.UnaryExpr;
+import in.rajat.rLang.jit.ExpressionJit;
+import in.rajat.rLang.models.Token;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sampling profiler that attributes evaluation time to operators in the
+ * source rather than to the evaluator's Java frames. An interpreter being
+ * profiled keeps a {@link Probe}: a stack of the operators it is inside,
+ * pushed and popped as it goes, which is all the evaluating thread pays.
+ * A sampler thread wakes every interval, reads each probe's stack and
+ * counts it; time spent outside any operator is not sampled.
+ * <p>
+ * Code compiled by {@link ExpressionJit} runs unchanged instead: see
+ * {@link #sampleCompiledCode()}. The VM and the specializing tree are not
+ * sampled, so an engine profiling in those modes evaluates on the
+ * interpreter.
+ * <p>
+ * {@link #writeCollapsed} writes the counts in the collapsed-stack format
+ * flame-graph tools read: one line per distinct stack, outermost operator
+ * first, frames separated by {@code ;} and followed by the sample count.
+ * A frame is an operator and its line, like {@code '+' line 3}. Directly
+ * nested operators of the same frame are folded into one, so a long
+ * {@code a + b + c + ...} is one frame rather than a tower of them.
+ */
+public final class Profiler implements Closeable {
+    // Hidden classes defined by ExpressionJit are named after this.
+    private static final String COMPILED_PREFIX = "in.rajat.rLang.jit.Compiled";
+
+    private final long intervalNanos;
+    private final Path output;
+    private final Set<Probe> probes = ConcurrentHashMap.newKeySet();
+    // Each thread reuses its probe, so its stack is only grown once.
+    private final ThreadLocal<Probe> threadProbes = ThreadLocal.withInitial(Probe::new);
+    private final Thread sampler;
+    // JFR's execution samples, once sampleCompiledCode() starts them.
+    private RecordingStream compiledSamples;
+    private volatile boolean closed;
+
+    // Samples by collapsed stack, guarded by itself.
+    private final Map<String, long[]> counts = new HashMap<>();
+    private long samples;
+
+    /**
+     * Starts sampling every {@code intervalMicros}. If {@code output} is not
+     * null, {@link #close()} writes the collapsed stacks there.
+     */
+    public Profiler(long intervalMicros, Path output) {
+        this.intervalNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, intervalMicros));
+        this.output = output;
+        this.sampler = new Thread(this::sample, "rlang-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Configured from -Drlang.profile, the file to write the collapsed
+     * stacks to, and -Drlang.profile.interval in microseconds (1000 by
+     * default). Null when -Drlang.profile is not set.
+     */
+    public static Profiler fromSystemProperties() {
+        String output = System.getProperty("rlang.profile");
+        if (output == null || output.isEmpty()) return null;
+        return new Profiler(Long.getLong("rlang.profile.interval", 1000), Path.of(output));
+    }
+
+    /**
+     * A stack of the operators one evaluation is inside. Only its owner
+     * writes it, with plain stores: ordered or opaque ones cost the
+     * interpreter more than all the rest of the profiling. The sampler
+     * reads it without locking, so a sample can be a little stale, or show
+     * a sibling in place of an operator that was just left.
+     */
+    static final class Probe {
+        private Expression[] stack = new Expression[16];
+        private int depth;
+
+        void enter(Expression operator) {
+            int top = depth;
+            if (top == stack.length) grow();
+            stack[top] = operator;
+            depth = top + 1;
+        }
+
+        private void grow() {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+
+        void leave() {
+            depth--;
+        }
+
+        // Drops the operators of the evaluation that ended, which were
+        // written from the bottom up.
+        private void clear() {
+            depth = 0;
+            for (int i = 0; i < stack.length && stack[i] != null; i++) stack[i] = null;
+        }
+
+        // The operators the evaluation is inside, outermost first.
+        private int snapshot(List<Expression> into) {
+            int top = depth;
+            Expression[] frames = stack;
+            for (int i = 0; i < top && i < frames.length; i++) into.add(frames[i]);
+            return top;
+        }
+    }
+
+    /**
+     * A probe for one evaluation on this thread, sampled until {@link
+     * #detach} is called.
+     */
+    Probe attach() {
+        Probe probe = threadProbes.get();
+        probes.add(probe);
+        return probe;
+    }
+
+    void detach(Probe probe) {
+        probes.remove(probe);
+        probe.clear();
+    }
+
+    private void sample() {
+        List<Expression> stack = new ArrayList<>();
+        StringBuilder key = new StringBuilder();
+        while (!closed) {
+            LockSupport.parkNanos(intervalNanos);
+            synchronized (counts) {
+                for (Probe probe : probes) {
+                    stack.clear();
+                    if (probe.snapshot(stack) == 0) continue;
+                    key.setLength(0);
+                    Token previous = null;
+                    for (Expression operator : stack) {
+                        if (operator == null) continue;
+                        Token token = operator(operator);
+                        if (previous != null && token.type == previous.type && token.line == previous.line) continue;
+                        if (previous != null) key.append(';');
+                        key.append('\'').append(token.lexeme()).append("' line ").append(token.line);
+                        previous = token;
+                    }
+                    if (previous == null) continue;
+                    counts.computeIfAbsent(key.toString(), k -> new long[1])[0]++;
+                    samples++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Also samples JIT-compiled code, from JFR's execution samples of the
+     * real thread stacks. Compiled classes carry the script's lines in their
+     * line number tables, so a sample inside one counts as a one-frame stack
+     * like {@code line 3}. HotSpot only places samples inside compiled code
+     * that precisely with -XX:+DebugNonSafepoints (see {@link
+     * #compiledSamplesWarning()}); otherwise most land in the caller and are
+     * not counted.
+     */
+    public synchronized void sampleCompiledCode() {
+        if (compiledSamples != null || closed) return;
+        RecordingStream recording = new RecordingStream();
+        recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofNanos(intervalNanos));
+        recording.onEvent("jdk.ExecutionSample", this::sampleCompiled);
+        // startAsync's thread would keep the JVM from exiting.
+        Thread thread = new Thread(() -> {
+            try {
+                recording.start();
+            } catch (IllegalStateException e) {
+                // Closed before it started.
+            }
+        }, "rlang-profiler-jfr");
+        thread.setDaemon(true);
+        thread.start();
+        compiledSamples = recording;
+    }
+
+    /**
+     * Why samples of compiled code will mostly be missing, or null if they
+     * will not: HotSpot only places them precisely with
+     * -XX:+DebugNonSafepoints, a diagnostic flag that must be set at startup.
+     */
+    public synchronized String compiledSamplesWarning() {
+        if (compiledSamples == null) return null;
+        try {
+            HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            if (Boolean.parseBoolean(hotSpot.getVMOption("DebugNonSafepoints").getValue())) return null;
+        } catch (RuntimeException e) {
+            // Not HotSpot, or no such flag: warn anyway.
+        }
+        return "Profiling JIT-compiled code needs -XX:+UnlockDiagnosticVMOptions -XX:+DebugNonSafepoints"
+                + " to attribute samples to script lines.";
+    }
+
+    private void sampleCompiled(RecordedEvent event) {
+        RecordedStackTrace trace = event.getStackTrace();
+        if (trace == null) return;
+        // The innermost compiled frame; below it are the engine's frames.
+        for (RecordedFrame frame : trace.getFrames()) {
+            if (!frame.isJavaFrame() || !frame.getMethod().getType().getName().startsWith(COMPILED_PREFIX)) continue;
+            int line = frame.getLineNumber();
+            if (line <= 0) return;
+            synchronized (counts) {
+                counts.computeIfAbsent("line " + line, k -> new long[1])[0]++;
+                samples++;
+            }
+            return;
+        }
+    }
+
+    private static Token operator(Expression operator) {
+        return operator instanceof UnaryExpr unary ? unary.operator : ((BinaryExpr) operator).operator;
+    }
+
+    public long samples() {
+        synchronized (counts) {
+            return samples;
+        }
+    }
+
+    /**
+     * Writes the samples so far as collapsed stacks, one per line, most
+     * sampled first.
+     */
+    public void writeCollapsed(Writer out) throws IOException {
+        List<Map.Entry<String, long[]>> entries;
+        synchronized (counts) {
+            entries = new ArrayList<>(counts.size());
+            for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+                entries.add(Map.entry(entry.getKey(), entry.getValue().clone()));
+            }
+        }
+        entries.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+                ? Long.compare(b.getValue()[0], a.getValue()[0])
+                : a.getKey().compareTo(b.getKey()));
+        for (Map.Entry<String, long[]> entry : entries) {
+            out.write(entry.getKey());
+            out.write(' ');
+            out.write(Long.toString(entry.getValue()[0]));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Stops sampling and writes the output file, if there is one.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        LockSupport.unpark(sampler);
+        synchronized (this) {
+            if (compiledSamples != null) compiledSamples.close();
+        }
+        if (output == null) return;
+        try (Writer out = Files.newBufferedWriter(output)) {
+            writeCollapsed(out);
+        }
+    }
+}
@@ -1,24 +1,55 @@
 package in.rajat.rLang;
 
-import in.rajat.rLang.enums.TokenType;
-import in.rajat.rLang.expressions.Expression;
-import in.rajat.rLang.models.Token;
+import in.rajat.rLang.enums.ExecutionMode;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class RLang {
-    static boolean hadError = false;
+    // Select the execution mode with -Drlang.mode=vm, turn the optimizer off
+    // with -Drlang.optimize=false and size the cache with -Drlang.cache.size.
+    // -Drlang.metrics=true prints phase timings and counters on exit,
+    // -Drlang.fuel=N stops any evaluation after N operations and
+    // -Drlang.profile=FILE writes a source-level profile on exit.
+    private static final RLangEngine engine = RLangEngine.fromSystemProperties();
+
+    // With -Drlang.mode=specializing, print the node tree after each run.
+    private static final boolean dumpNodes = Boolean.getBoolean("rlang.dumpNodes");
+
+    // Evaluation threads for --stream.
+    private static final int streamWorkers = Integer.getInteger("rlang.stream.workers", Runtime.getRuntime().availableProcessors());
 
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: rlang [script]");
+        if (engine.metrics().enabled()) {
+            // Also covers the System.exit paths.
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.println(engine.metrics())));
+        }
+        if (engine.profiler() != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(RLang::writeProfile));
+            String warning = engine.profiler().compiledSamplesWarning();
+            if (warning != null) System.err.println(warning);
+        }
+
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length == 1 && args[0].equals("--stream")) {
+            runStream();
+        } else if (args.length > 1) {
+            System.out.println("Usage: rlang [script] | rlang --stream | rlang --batch <file or directory>...");
             System.exit(64);
         } else if (args.length == 1) {
             runFile(args[0]);
@@ -30,9 +61,59 @@ public class RLang {
     }
 
 
+    private static void writeProfile() {
+        try {
+            engine.profiler().close();
+        } catch (IOException e) {
+            System.err.println("Could not write the profile: " + e.getMessage());
+        }
+    }
+
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        Diagnostics diagnostics = new Diagnostics(System.err);
+
+        // Uses the precompiled form next to the script when it is current.
+        run(engine.load(Paths.get(path), diagnostics), diagnostics);
+
+        // Indicate an error in the exit code.
+        if (diagnostics.hadError()) System.exit(65);
+        if (diagnostics.hadRuntimeError()) System.exit(70);
+    }
+
+    private static void runBatch(String[] paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String path : paths) files.add(Paths.get(path));
+        files = BatchCompiler.collect(files);
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long start = System.nanoTime();
+        List<BatchCompiler.Result> results = new BatchCompiler(engine, pool).compile(files);
+        long wall = System.nanoTime() - start;
+
+        BatchCompiler.report(results, wall, pool.getParallelism(), System.err);
+
+        for (BatchCompiler.Result result : results) {
+            if (result.failed()) System.exit(65);
+        }
+    }
+
+    // One expression per line of stdin, evaluated in parallel; see StreamEvaluator.
+    private static void runStream() throws IOException {
+        // Straight to the file descriptors: System.out would flush per line
+        // and hide a closed pipe.
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)), 1 << 16);
+        Writer err = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.err)), 1 << 12);
+
+        StreamEvaluator.Summary summary;
+        try {
+            summary = new StreamEvaluator(engine, streamWorkers).run(new InputStreamReader(System.in), out, err);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (summary.syntaxErrors > 0) System.exit(65);
+        if (summary.runtimeErrors > 0) System.exit(70);
     }
 
     private static void runPrompt() throws IOException {
@@ -49,43 +130,26 @@ public class RLang {
     }
 
     private static void run(String source) {
-        RScanner scanner = new RScanner(source);
-        List<Token> tokens = scanner.scanTokens();
-
-        RParser parser = new RParser(tokens);
-        Expression expression = parser.parse();
+        Diagnostics diagnostics = new Diagnostics(System.err);
+        run(engine.compile(source, diagnostics), diagnostics);
+    }
 
+    private static void run(Script script, Diagnostics diagnostics) {
         // Stop if there was a syntax error.
-        if (hadError) return;
+        if (script == null) return;
 
-        for (Token token : tokens) {
-            System.out.println(token);
+        try {
+            System.out.println(Values.stringify(engine.execute(script, Map.of(), Fuel.fromSystemProperties())));
+        } catch (RuntimeError error) {
+            diagnostics.runtimeError(error);
         }
-    }
 
-    static void error(int line, String message) {
-        report(line, "", message);
-    }
-
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
+        if (dumpNodes && engine.executionMode() == ExecutionMode.SPECIALIZING && !script.deep()) {
+            System.err.print(script.nodes().dump());
+            for (String transition : script.nodes().transitions()) {
+                System.err.println("  " + transition);
+            }
         }
     }
 
-    private static void report(int line, String where, String message) {
-        System.err.println(
-                "[line "
-                        + line
-                        + "] Error"
-                        + where
-                        + ": "
-                        + message);
-
-        hadError = true;
-    }
-
 }
-
@@ -0,0 +1,403 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import in.rajat.rLang.expressions.Expression;
+import in.rajat.rLang.expressions.ExpressionFactory;
+import in.rajat.rLang.expressions.InterningFactory;
+import in.rajat.rLang.jit.CompiledExpression;
+import in.rajat.rLang.metrics.*;
+import in.rajat.rLang.models.TokenBuffer;
+import in.rajat.rLang.vm.Chunk;
+import in.rajat.rLang.vm.VM;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * Embeddable entry point. An engine holds only configuration and the
+ * (thread-safe) expression cache; every compile or evaluation gets its own
+ * Diagnostics and its own scanner, parser and evaluator, so one engine can
+ * be used from any number of threads at once.
+ */
+public class RLangEngine {
+    private final ExecutionMode executionMode;
+    private final boolean optimize;
+    private final ExpressionCache cache;
+    private final int jitThreshold;
+    private final RLangMetrics metrics;
+    private final boolean intern;
+    private final Profiler profiler;
+    // Profiled runs in modes the profiler cannot see into (the VM and the
+    // specializing tree) go to the tree interpreter instead.
+    private final boolean profileOnInterpreter;
+
+    // The VM reuses its operand stack between runs, so each thread keeps one.
+    private final ThreadLocal<VM> vms = ThreadLocal.withInitial(VM::new);
+
+    public RLangEngine(ExecutionMode executionMode, boolean optimize, int cacheSize) {
+        this(executionMode, optimize, cacheSize, 1000, false);
+    }
+
+    public RLangEngine(ExecutionMode executionMode, boolean optimize, int cacheSize, int jitThreshold) {
+        this(executionMode, optimize, cacheSize, jitThreshold, false);
+    }
+
+    /**
+     * @param jitThreshold in JIT mode, how many times a script is interpreted
+     *                     before it is compiled to bytecode
+     * @param metrics      whether to collect {@link #metrics()}. JFR events
+     *                     are emitted whenever a recording enables them,
+     *                     independently of this flag.
+     */
+    public RLangEngine(ExecutionMode executionMode, boolean optimize, int cacheSize, int jitThreshold, boolean metrics) {
+        this(executionMode, optimize, cacheSize, jitThreshold, metrics, false);
+    }
+
+    /**
+     * @param intern whether to parse through an {@link InterningFactory}, so
+     *               repeated subtrees are stored once and the interpreter
+     *               evaluates each of them once per run
+     */
+    public RLangEngine(ExecutionMode executionMode, boolean optimize, int cacheSize, int jitThreshold, boolean metrics, boolean intern) {
+        this(executionMode, optimize, cacheSize, jitThreshold, metrics, intern, null);
+    }
+
+    /**
+     * @param profiler if not null, samples the evaluations that run on the
+     *                 tree interpreter by operator and, in JIT mode, the
+     *                 compiled code by line. In VM and SPECIALIZING mode,
+     *                 which it cannot sample, evaluations run on the tree
+     *                 interpreter instead.
+     */
+    public RLangEngine(ExecutionMode executionMode, boolean optimize, int cacheSize, int jitThreshold, boolean metrics, boolean intern,
+                       Profiler profiler) {
+        this.executionMode = executionMode;
+        this.optimize = optimize;
+        this.cache = new ExpressionCache(cacheSize);
+        this.jitThreshold = Math.max(1, jitThreshold);
+        this.metrics = new RLangMetrics(metrics, cache);
+        this.intern = intern;
+        this.profiler = profiler;
+        this.profileOnInterpreter = profiler != null
+                && (executionMode == ExecutionMode.VM || executionMode == ExecutionMode.SPECIALIZING);
+        if (profiler != null && executionMode == ExecutionMode.JIT) profiler.sampleCompiledCode();
+    }
+
+    /**
+     * Configured from -Drlang.mode, -Drlang.optimize, -Drlang.cache.size,
+     * -Drlang.jit.threshold, -Drlang.metrics, -Drlang.intern and, for the
+     * profiler, -Drlang.profile (see {@link Profiler#fromSystemProperties()}).
+     */
+    public static RLangEngine fromSystemProperties() {
+        return new RLangEngine(
+                ExecutionMode.valueOf(System.getProperty("rlang.mode", "interpreter").toUpperCase()),
+                Boolean.parseBoolean(System.getProperty("rlang.optimize", "true")),
+                Integer.getInteger("rlang.cache.size", 1024),
+                Integer.getInteger("rlang.jit.threshold", 1000),
+                Boolean.getBoolean("rlang.metrics"),
+                Boolean.getBoolean("rlang.intern"),
+                Profiler.fromSystemProperties());
+    }
+
+    public ExecutionMode executionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Parses source text, using the cache when possible. Returns null and
+     * reports to {@code diagnostics} if there was a syntax error.
+     */
+    public Script compile(String source, Diagnostics diagnostics) {
+        CompileEvent event = new CompileEvent();
+        event.begin();
+
+        Script script = cache.get(source);
+        boolean cacheHit = script != null;
+        if (!cacheHit) {
+            // The source is already in memory, so scan it into the compact buffer.
+            RScanner scanner = new RScanner(source, diagnostics);
+            ScanEvent scanEvent = new ScanEvent();
+            scanEvent.begin();
+            long start = metrics.start();
+            TokenBuffer tokens = scanner.scanTokenBuffer();
+            metrics.scanned(start, source.length(), tokens.size());
+            if (scanEvent.shouldCommit()) {
+                scanEvent.characters = source.length();
+                scanEvent.tokens = tokens.size();
+                scanEvent.commit();
+            }
+
+            ExpressionFactory factory = factory();
+            script = parse(new RParser(tokens, diagnostics, factory), factory, diagnostics, null);
+            if (script != null) {
+                cache.put(source, script);
+            }
+        }
+
+        if (event.shouldCommit()) {
+            event.characters = source.length();
+            event.cacheHit = cacheHit;
+            event.failed = script == null;
+            event.commit();
+        }
+        return script;
+    }
+
+    /**
+     * Parses source streamed from a reader. Streamed sources bypass the cache.
+     */
+    public Script compile(Reader reader, Diagnostics diagnostics) {
+        RScanner scanner = new RScanner(reader, diagnostics);
+        ExpressionFactory factory = factory();
+        return parse(new RParser(scanner, diagnostics, factory), factory, diagnostics, scanner);
+    }
+
+    /**
+     * Loads a script file, preferring its precompiled form (see
+     * {@link ScriptFile}) when that is up to date with the source. Otherwise
+     * the source is streamed through the scanner and, if it compiles, the
+     * precompiled form is rewritten next to it.
+     */
+    public Script load(Path source, Diagnostics diagnostics) throws IOException {
+        Path compiled = ScriptFile.compiledPath(source);
+        if (Files.exists(compiled)) {
+            Script script = ScriptFile.read(compiled, ScriptFile.hash(source), optimize, factory());
+            if (script != null) return script;
+        }
+
+        // Hash the source on the way through the scanner rather than reading it twice.
+        MessageDigest digest = ScriptFile.digest();
+        Script script;
+        try (Reader reader = new InputStreamReader(new DigestInputStream(Files.newInputStream(source), digest), Charset.defaultCharset())) {
+            script = compile(reader, diagnostics);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // The encoder recurses, so deep scripts are always loaded from source.
+        if (script != null && !script.deep()) {
+            try {
+                ScriptFile.write(script, compiled, digest.digest(), optimize);
+            } catch (IOException e) {
+                // Precompiling is only a cache; a read-only directory is fine.
+            }
+        }
+        return script;
+    }
+
+    // A fresh interning factory per tree, so its table goes away with the parse.
+    private ExpressionFactory factory() {
+        return intern ? new InterningFactory() : ExpressionFactory.PLAIN;
+    }
+
+    // `streamed` is the scanner feeding the parser when the source is
+    // scanned during the parse rather than up front.
+    private Script parse(RParser parser, ExpressionFactory factory, Diagnostics diagnostics, RScanner streamed) {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        long start = metrics.start();
+        Expression expression = parser.parse();
+        boolean failed = diagnostics.hadError();
+        metrics.parsed(start, streamed != null ? streamed.characters() : 0,
+                parser.tokenCount(), parser.nodeCount(), failed);
+        if (event.shouldCommit()) {
+            event.tokens = parser.tokenCount();
+            event.nodes = parser.nodeCount();
+            event.depth = parser.depth();
+            event.streamed = streamed != null;
+            event.failed = failed;
+            event.commit();
+        }
+        if (failed) return null;
+
+        // The optimizer recurses, so very deep trees are left as parsed.
+        int depth = parser.depth();
+        if (optimize && depth <= Script.MAX_RECURSIVE_DEPTH) {
+            OptimizeEvent optimizeEvent = new OptimizeEvent();
+            optimizeEvent.begin();
+            start = metrics.start();
+            expression = new Optimizer(factory).optimize(expression);
+            metrics.optimized(start);
+            if (optimizeEvent.shouldCommit()) {
+                optimizeEvent.nodes = parser.nodeCount();
+                optimizeEvent.commit();
+            }
+        }
+        return new Script(expression, depth);
+    }
+
+    /**
+     * Runs a compiled script. Throws RuntimeError if evaluation fails.
+     */
+    public Object execute(Script script) {
+        return execute(script, Map.of());
+    }
+
+    /**
+     * Runs a compiled script with values for its variables. Numbers must be
+     * bound as Long or Double.
+     */
+    public Object execute(Script script, Map<String, Object> bindings) {
+        return execute(script, bindings, null);
+    }
+
+    /**
+     * Runs a compiled script under a budget: once it has applied {@code
+     * fuel.limit} operators it is stopped with an {@link OutOfFuelError}.
+     * Either way {@link Fuel#used()} is set afterwards. A script whose
+     * {@link Script#operations()} fit the budget runs unmetered in the
+     * configured mode; if it fails anyway, used() is that whole cost. Only a
+     * script that cannot fit is walked operator by operator, to stop it at
+     * the exact point the fuel runs out. A null {@code fuel} runs unmetered.
+     */
+    public Object execute(Script script, Map<String, Object> bindings, Fuel fuel) {
+        EvaluateEvent event = new EvaluateEvent();
+        event.begin();
+        long start = metrics.start();
+        boolean failed = true;
+        boolean exhausted = false;
+        try {
+            Object result = fuel != null ? metered(script, bindings, fuel) : evaluate(script, bindings);
+            failed = false;
+            return result;
+        } catch (OutOfFuelError error) {
+            exhausted = true;
+            throw error;
+        } finally {
+            metrics.evaluated(start, failed);
+            if (fuel != null) metrics.fueled(fuel.used, exhausted);
+            if (event.shouldCommit()) {
+                event.mode = executionMode.name();
+                event.deep = script.deep();
+                event.failed = failed;
+                event.fuel = fuel != null ? fuel.used : -1;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Starts an evaluation that runs in slices of fuel, for callers that
+     * want to interleave long evaluations with others instead of aborting
+     * them; see {@link Evaluation#resume(long)}. Always runs on the iterative
+     * tree interpreter.
+     */
+    public Evaluation start(Script script, Map<String, Object> bindings) {
+        return new Evaluation(script.expression, bindings);
+    }
+
+    private Object metered(Script script, Map<String, Object> bindings, Fuel fuel) {
+        long cost = script.operations();
+        if (cost <= fuel.limit) {
+            fuel.used = cost;
+            return evaluate(script, bindings);
+        }
+        // Runs out of fuel, unless an earlier operator fails first.
+        Interpreter interpreter = new Interpreter(bindings);
+        interpreter.refuel(fuel.limit);
+        Profiler.Probe probe = profiler != null ? attach(interpreter) : null;
+        try {
+            return interpreter.interpretIteratively(script.expression);
+        } finally {
+            fuel.used = fuel.limit - interpreter.fuelLeft();
+            if (probe != null) profiler.detach(probe);
+        }
+    }
+
+    private Object evaluate(Script script, Map<String, Object> bindings) {
+        // Every mode but the iterative walk would overflow the stack.
+        if (script.deep() || profileOnInterpreter) return interpret(script, bindings);
+
+        return switch (executionMode) {
+            case INTERPRETER -> interpret(script, bindings);
+            case VM -> {
+                Chunk chunk = script.chunk();
+                // Like code too large for the JIT, a pool too large for a chunk is interpreted.
+                yield chunk != null ? vms.get().run(chunk, bindings) : interpret(script, bindings);
+            }
+            case SPECIALIZING -> script.nodes().execute(bindings);
+            case JIT -> {
+                CompiledExpression compiled = script.compiled(jitThreshold, bindings);
+                if (compiled != null) {
+                    try {
+                        yield compiled.evaluate(bindings);
+                    } catch (CompiledExpression.Deoptimized | ArithmeticException e) {
+                        // Not a run the compiled code was specialized for.
+                        script.deoptimized(compiled);
+                    }
+                }
+                yield interpret(script, bindings);
+            }
+        };
+    }
+
+    // The tree interpreter, the one evaluator that has the operators, and
+    // with them the source lines, at hand for the profiler's probe.
+    private Object interpret(Script script, Map<String, Object> bindings) {
+        Interpreter interpreter = new Interpreter(bindings);
+        if (profiler == null) {
+            return script.deep() ? interpreter.interpretIteratively(script.expression) : interpreter.interpret(script.expression);
+        }
+        Profiler.Probe probe = attach(interpreter);
+        try {
+            return script.deep() ? interpreter.interpretIteratively(script.expression) : interpreter.interpret(script.expression);
+        } finally {
+            profiler.detach(probe);
+        }
+    }
+
+    private Profiler.Probe attach(Interpreter interpreter) {
+        Profiler.Probe probe = profiler.attach();
+        interpreter.profile(probe);
+        return probe;
+    }
+
+    /**
+     * Compiles and runs source text. Returns the value, or null with the
+     * reason recorded in {@code diagnostics} if compiling or running failed.
+     */
+    public Object eval(String source, Diagnostics diagnostics) {
+        return eval(source, Map.of(), diagnostics);
+    }
+
+    public Object eval(String source, Map<String, Object> bindings, Diagnostics diagnostics) {
+        return eval(source, bindings, diagnostics, null);
+    }
+
+    /**
+     * Like {@link #eval(String, Map, Diagnostics)}, metered by {@code fuel}
+     * if it is not null. Running out is reported as a runtime error.
+     */
+    public Object eval(String source, Map<String, Object> bindings, Diagnostics diagnostics, Fuel fuel) {
+        Script script = compile(source, diagnostics);
+        if (script == null) return null;
+
+        try {
+            return execute(script, bindings, fuel);
+        } catch (RuntimeError error) {
+            diagnostics.runtimeError(error);
+            return null;
+        }
+    }
+
+    public ExpressionCache cache() {
+        return cache;
+    }
+
+    public RLangMetrics metrics() {
+        return metrics;
+    }
+
+    // Null unless the engine was given one.
+    public Profiler profiler() {
+        return profiler;
+    }
+}
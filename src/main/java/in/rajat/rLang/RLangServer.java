@@ -0,0 +1,182 @@
+package in.rajat.rLang;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Evaluation server for running rLang as a local sidecar, on a loopback TCP
+ * port or a Unix domain socket. Every connection is served by its own
+ * virtual thread, so thousands of concurrent clients cost little more than
+ * their buffers; a blocked read parks the virtual thread, not a carrier.
+ * <p>
+ * The protocol is line-based. A client sends one expression per line and
+ * gets one line back for each, in order:
+ * <pre>
+ * OK &lt;value&gt;
+ * ERROR &lt;messages, newlines replaced by spaces&gt;
+ * </pre>
+ * A client may send several requests before reading the responses; they
+ * are written together once no more requests are waiting. All connections
+ * share one {@link RLangEngine}, and with it the expression cache, while
+ * each request gets its own Diagnostics.
+ */
+public class RLangServer implements Closeable {
+    private static final int DEFAULT_PORT = 7878;
+
+    private final RLangEngine engine;
+    private final ServerSocketChannel server;
+    private final Path socketFile;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    private RLangServer(RLangEngine engine, ServerSocketChannel server, Path socketFile) {
+        this.engine = engine;
+        this.server = server;
+        this.socketFile = socketFile;
+    }
+
+    /**
+     * Listens on {@code port} of the loopback interface; 0 picks a free port.
+     */
+    public static RLangServer tcp(RLangEngine engine, int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        return new RLangServer(engine, server, null);
+    }
+
+    /**
+     * Listens on a Unix domain socket at {@code path}, replacing a socket
+     * file left behind by an earlier server.
+     */
+    public static RLangServer unix(RLangEngine engine, Path path) throws IOException {
+        Files.deleteIfExists(path);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path), 1024);
+        return new RLangServer(engine, server, path);
+    }
+
+    public SocketAddress address() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    /**
+     * Accepts connections until {@link #close()} is called.
+     */
+    public void serve() throws IOException {
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("rlang-connection-", 0).factory())) {
+            for (; ; ) {
+                SocketChannel connection;
+                try {
+                    connection = server.accept();
+                } catch (ClosedChannelException e) {
+                    if (closed) return;
+                    throw e;
+                }
+                connections.add(connection);
+                // Missed by a close() that ran while it was being accepted.
+                if (closed) connection.close();
+                executor.execute(() -> handle(connection));
+            }
+        }
+    }
+
+    private void handle(SocketChannel connection) {
+        try (connection;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(connection), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(connection), StandardCharsets.UTF_8))) {
+            for (String line; (line = in.readLine()) != null; ) {
+                out.write(respond(line));
+                out.write('\n');
+                if (!in.ready()) out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away; nothing to answer.
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    private String respond(String source) {
+        Diagnostics diagnostics = new Diagnostics();
+        Object value = engine.eval(source, Map.of(), diagnostics, Fuel.fromSystemProperties());
+        if (diagnostics.hadError() || diagnostics.hadRuntimeError()) {
+            return "ERROR " + String.join(" ", diagnostics.messages()).replace('\n', ' ');
+        }
+        return "OK " + Values.stringify(value);
+    }
+
+    /**
+     * Stops accepting and closes every open connection.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        for (SocketChannel connection : connections) connection.close();
+        if (socketFile != null) Files.deleteIfExists(socketFile);
+    }
+
+    /**
+     * {@code rlang-server [--port N | --socket PATH]}. The engine is
+     * configured from the same -Drlang.* properties as {@link RLang}.
+     */
+    public static void main(String[] args) throws IOException {
+        RLangEngine engine = RLangEngine.fromSystemProperties();
+        RLangServer server;
+        if (args.length == 0) {
+            server = tcp(engine, DEFAULT_PORT);
+        } else if (args.length == 2 && args[0].equals("--port")) {
+            server = tcp(engine, Integer.parseInt(args[1]));
+        } else if (args.length == 2 && args[0].equals("--socket")) {
+            server = unix(engine, Path.of(args[1]));
+        } else {
+            System.out.println("Usage: rlang-server [--port N | --socket PATH]");
+            System.exit(64);
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // Exiting anyway.
+            }
+            if (engine.profiler() != null) {
+                try {
+                    engine.profiler().close();
+                } catch (IOException e) {
+                    System.err.println("Could not write the profile: " + e.getMessage());
+                }
+            }
+        }));
+        if (engine.profiler() != null) {
+            String warning = engine.profiler().compiledSamplesWarning();
+            if (warning != null) System.err.println(warning);
+        }
+        System.err.println("rLang server listening on " + server.address());
+        server.serve();
+    }
+}
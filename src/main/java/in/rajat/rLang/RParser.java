@@ -3,13 +3,24 @@ package in.rajat.rLang;
 import in.rajat.rLang.enums.TokenType;
 import in.rajat.rLang.expressions.*;
 import in.rajat.rLang.models.Token;
+import in.rajat.rLang.models.TokenBuffer;
+import in.rajat.rLang.models.TokenSource;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 
 /**
  * CONTEXT FREE GRAMMAR
- * PARSER   RECURSIVE DESCENT PARSING
+ * PARSER   PRATT (OPERATOR PRECEDENCE) PARSING
+ * <p>
+ * The grammar below is implemented by tables indexed by TokenType ordinal:
+ * a prefix rule for each kind of leaf, a flag for each prefix operator and
+ * a precedence for each binary operator. Adding an operator is one
+ * {@code prefixOperator(...)} or {@code infix(...)} line. Nesting past a
+ * fixed limit is kept on a heap-allocated stack, so input of any depth parses
+ * without overflowing the Java stack.
  * <p>
  * expression     → equality ;
  * <br>
@@ -23,14 +34,122 @@ import java.util.List;
  * <br>
  * unary          → ( "!" | "-" ) unary | primary ;
  * <br>
- * primary        → NUMBER | STRING | "true" | "false" | "nil" | "(" expression ")" ;
+ * primary        → NUMBER | STRING | "true" | "false" | "nil" | IDENTIFIER | "(" expression ")" ;
  */
 public class RParser {
-    private final List<Token> tokens;
+    // Binding power of each infix operator. Higher binds tighter; NONE marks
+    // tokens that cannot continue an expression.
+    private static final int NONE = 0;
+    static final int EQUALITY = 1;
+    private static final int COMPARISON = 2;
+    private static final int TERM = 3;
+    private static final int FACTOR = 4;
+    static final int UNARY = 5;
+
+    private interface PrefixRule {
+        // Called with the prefix token already consumed.
+        Expression parse(RParser parser);
+    }
+
+    // Indexed by TokenType ordinal. Prefix rules build leaves; prefix
+    // operators, grouping and infix operators are handled by the parse loops
+    // themselves so that nesting can be moved off the Java stack.
+    private static final PrefixRule[] PREFIX_RULES = new PrefixRule[TokenType.values().length];
+    private static final boolean[] PREFIX_OPERATORS = new boolean[TokenType.values().length];
+    private static final int[] PRECEDENCES = new int[TokenType.values().length];
+
+    static {
+        // One instance per handler: every lambda expression gets its own
+        // class, which would make the dispatch site megamorphic.
+        PrefixRule literal = parser -> parser.factory.literal(parser.previousLiteral());
+
+        prefix(TokenType.FALSE, parser -> parser.factory.literal(false));
+        prefix(TokenType.TRUE, parser -> parser.factory.literal(true));
+        prefix(TokenType.NULL, parser -> parser.factory.literal(null));
+        prefix(TokenType.NUMBER, literal);
+        prefix(TokenType.STRING, literal);
+        prefix(TokenType.IDENTIFIER, parser -> parser.factory.variable(parser.previous()));
+
+        prefixOperator(TokenType.BANG);
+        prefixOperator(TokenType.MINUS);
+
+        infix(TokenType.BANG_EQUAL, EQUALITY);
+        infix(TokenType.EQUAL_EQUAL, EQUALITY);
+        infix(TokenType.GREATER, COMPARISON);
+        infix(TokenType.GREATER_EQUAL, COMPARISON);
+        infix(TokenType.LESS, COMPARISON);
+        infix(TokenType.LESS_EQUAL, COMPARISON);
+        infix(TokenType.MINUS, TERM);
+        infix(TokenType.PLUS, TERM);
+        infix(TokenType.SLASH, FACTOR);
+        infix(TokenType.STAR, FACTOR);
+    }
+
+    private static void prefix(TokenType type, PrefixRule rule) {
+        PREFIX_RULES[type.ordinal()] = rule;
+    }
+
+    private static void prefixOperator(TokenType type) {
+        PREFIX_OPERATORS[type.ordinal()] = true;
+    }
+
+    private static void infix(TokenType type, int precedence) {
+        PRECEDENCES[type.ordinal()] = precedence;
+    }
+
+    // How many levels of nesting are parsed by recursion before switching
+    // to the explicit stack.
+    private static final int MAX_NESTING = 64;
+
+    // What a suspended frame of the parse loop is waiting for an operand of.
+    private static final byte UNARY_FRAME = 0;
+    private static final byte BINARY_FRAME = 1;
+    private static final byte GROUP_FRAME = 2;
+
+    // Either a compact buffer read by index, or a source that tokens are
+    // pulled from on demand. When streaming the parser only ever needs the
+    // current token and the one just consumed.
+    private final TokenBuffer tokens;
     private int current = 0;
 
-    RParser(List<Token> tokens) {
+    private final TokenSource source;
+    private Token currentToken;
+    private Token previousToken;
+
+    private final Diagnostics diagnostics;
+    private final ExpressionFactory factory;
+    private int depth;
+    private int parsedDepth;
+    private int nodes;
+    private int tokensRead;
+    private int operators;
+
+    RParser(TokenBuffer tokens, Diagnostics diagnostics) {
+        this(tokens, diagnostics, ExpressionFactory.PLAIN);
+    }
+
+    RParser(TokenBuffer tokens, Diagnostics diagnostics, ExpressionFactory factory) {
+        this.diagnostics = diagnostics;
+        this.factory = factory;
         this.tokens = tokens;
+        this.source = null;
+    }
+
+    RParser(TokenSource source, Diagnostics diagnostics) {
+        this(source, diagnostics, ExpressionFactory.PLAIN);
+    }
+
+    RParser(TokenSource source, Diagnostics diagnostics, ExpressionFactory factory) {
+        this.diagnostics = diagnostics;
+        this.factory = factory;
+        this.tokens = null;
+        this.source = source;
+        this.currentToken = source.nextToken();
+        this.tokensRead = 1;
+    }
+
+    RParser(List<Token> tokens, Diagnostics diagnostics) {
+        this(listSource(tokens), diagnostics);
     }
 
     public Expression parse() {
@@ -38,106 +157,293 @@ public class RParser {
             return expression();
         } catch (ParseError error) {
             return null;
+        } finally {
+            // Drain the rest of the input so lexical errors past the
+            // expression are still reported.
+            while (!isAtEnd()) nextToken();
         }
     }
 
+    private static TokenSource listSource(List<Token> tokens) {
+        Iterator<Token> iterator = tokens.iterator();
+        Token eof = tokens.get(tokens.size() - 1);
+        return () -> iterator.hasNext() ? iterator.next() : eof;
+    }
+
     private static class ParseError extends RuntimeException {
     }
 
     private ParseError error(Token token, String message) {
-        RLang.error(token, message);
+        diagnostics.error(token, message);
         return new ParseError();
     }
 
-    private Expression expression() {
-        return equality();
+    /**
+     * Number of Expression nodes built so far, counting a shared node once
+     * per occurrence.
+     */
+    public int nodeCount() {
+        return nodes;
     }
 
+    /**
+     * Number of tokens read so far, counting EOF.
+     */
+    public int tokenCount() {
+        return tokens != null ? tokens.size() : tokensRead;
+    }
 
-    private Expression equality() {
-        Expression expr = comparison();
+    /**
+     * Nesting depth of the tree returned by the last {@link #parse()}: 1 for
+     * a single leaf, 0 if nothing was parsed.
+     */
+    public int depth() {
+        return depth;
+    }
 
-        while (matchTokenTypes(TokenType.BANG_EQUAL, TokenType.EQUAL_EQUAL)) {
-            Token operator = previous();
-            Expression right = comparison();
-            expr = new BinaryExpr(expr, operator, right);
+    /**
+     * Parses from inside a binary expression, the way parsePrecedence would:
+     * an operand whose binary operators bind at {@code first} or tighter,
+     * then binary operators binding at {@code precedence} or tighter, each
+     * with its right operand. That outermost loop stops at token {@code end}
+     * (counted from the first token of this parser); operators nested deeper
+     * still look past it, so the caller can tell from {@link #position()}
+     * whether the expression really ends there. Returns null on a syntax
+     * error.
+     */
+    Expression parseOperands(int first, int precedence, int end) {
+        operators = 0;
+        try {
+            Expression expr = parsePrecedence(first, 1);
+            int exprDepth = parsedDepth;
+            for (int infixPrecedence; position() != end && precedence <= (infixPrecedence = PRECEDENCES[peekType().ordinal()]); ) {
+                nextToken();
+                Token operator = previous();
+                Expression right = parsePrecedence(infixPrecedence + 1, 1);
+                expr = factory.binary(expr, operator, right);
+                nodes++;
+                operators++;
+                exprDepth = 1 + Math.max(exprDepth, parsedDepth);
+            }
+            depth = exprDepth;
+            return expr;
+        } catch (ParseError error) {
+            return null;
         }
+    }
 
-        return expr;
+    /**
+     * Binary operators taken by the outermost loop of the last
+     * {@link #parseOperands}.
+     */
+    int operators() {
+        return operators;
     }
 
-    private Expression comparison() {
-        Expression expr = term();
+    /**
+     * Index of the next token to be read, counted from the first token.
+     */
+    int position() {
+        return tokens != null ? current : tokensRead - 1;
+    }
 
-        while (matchTokenTypes(TokenType.LESS, TokenType.GREATER, TokenType.LESS_EQUAL, TokenType.GREATER_EQUAL)) {
-            Token operator = previous();
-            Expression right = term();
-            expr = new BinaryExpr(expr, operator, right);
-        }
+    /**
+     * Binding power of {@code type} as a binary operator, or 0 if it is not
+     * one. Its right operand is parsed one level tighter.
+     */
+    static int precedence(TokenType type) {
+        return PRECEDENCES[type.ordinal()];
+    }
 
+    private Expression expression() {
+        Expression expr = parsePrecedence(EQUALITY, 0);
+        depth = parsedDepth;
         return expr;
     }
 
-    private Expression term() {
-        Expression expr = factor();
-
-        while (matchTokenTypes(TokenType.MINUS, TokenType.PLUS)) {
+    // Parses an expression whose binary operators all bind at least as
+    // tightly as {@code precedence}, leaving its depth in parsedDepth.
+    // Recursion is the fastest way to parse ordinary input, so nesting is
+    // followed on the Java stack up to MAX_NESTING and on a heap stack
+    // beyond that.
+    private Expression parsePrecedence(int precedence, int nesting) {
+        if (nesting == MAX_NESTING) return parseIteratively(precedence);
+
+        Expression expr;
+        int exprDepth;
+        TokenType type = peekType();
+        if (type == TokenType.LEFT_PAREN) {
+            nextToken();
+            Expression inner = parsePrecedence(EQUALITY, nesting + 1);
+            consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
+            expr = factory.grouping(inner);
+            nodes++;
+            exprDepth = parsedDepth + 1;
+        } else if (PREFIX_OPERATORS[type.ordinal()]) {
+            nextToken();
             Token operator = previous();
-            Expression right = factor();
-            expr = new BinaryExpr(expr, operator, right);
+            Expression right = parsePrecedence(UNARY, nesting + 1);
+            expr = factory.unary(operator, right);
+            nodes++;
+            exprDepth = parsedDepth + 1;
+        } else {
+            PrefixRule prefix = PREFIX_RULES[type.ordinal()];
+            if (prefix == null) throw error(peek(), "Expect expression.");
+            nextToken();
+            expr = prefix.parse(this);
+            nodes++;
+            exprDepth = 1;
         }
 
-        return expr;
-    }
-
-    private Expression factor() {
-        Expression expr = unary();
-
-        while (matchTokenTypes(TokenType.SLASH, TokenType.STAR)) {
+        // Tokens that are not infix operators have precedence NONE, which
+        // ends the loop.
+        for (int infixPrecedence; precedence <= (infixPrecedence = PRECEDENCES[peekType().ordinal()]); ) {
+            nextToken();
             Token operator = previous();
-            Expression right = unary();
-            expr = new BinaryExpr(expr, operator, right);
-
+            // All binary operators are left-associative, so the right
+            // operand only takes operators that bind tighter.
+            Expression right = parsePrecedence(infixPrecedence + 1, nesting + 1);
+            expr = factory.binary(expr, operator, right);
+            nodes++;
+            exprDepth = 1 + Math.max(exprDepth, parsedDepth);
         }
+
+        parsedDepth = exprDepth;
         return expr;
     }
 
-//      unary      →   ( "!" | "-" ) unary | primary ;
-
-    private Expression unary() {
+    // The same parse with the pending operators kept in heap arrays instead
+    // of on the Java stack. Each frame records what the recursive version
+    // would have been suspended in: a prefix operator, a binary operator
+    // with its left operand, or an open parenthesis, plus the precedence its
+    // caller was parsing at. The arrays are locals, so the loop keeps them
+    // in registers, and are dropped with the parse, so popped slots are not
+    // cleared.
+    private Expression parseIteratively(int precedence) {
+        // Kind, saved precedence and left operand depth packed per frame.
+        long[] states = new long[16];
+        Token[] operators = new Token[16];
+        Expression[] lefts = new Expression[16];
+        int frames = 0;
+
+        // A leaf already parsed as the right operand of the last frame pushed.
+        Expression pending = null;
+
+        for (; ; ) {
+            // Each pass ends by pushing one frame.
+            byte kind;
+            Token operator;
+            Expression left = null;
+            int leftDepth = 0;
+            int nextPrecedence;
+
+            Expression expr = pending;
+            pending = null;
+            TokenType type = peekType();
+            if (expr == null && (PREFIX_OPERATORS[type.ordinal()] || type == TokenType.LEFT_PAREN)) {
+                // Suspend on prefix operators and parentheses until a leaf.
+                nextToken();
+                if (type == TokenType.LEFT_PAREN) {
+                    kind = GROUP_FRAME;
+                    operator = null;
+                    nextPrecedence = EQUALITY;
+                } else {
+                    kind = UNARY_FRAME;
+                    operator = previous();
+                    nextPrecedence = UNARY;
+                }
+            } else {
+                if (expr == null) {
+                    PrefixRule prefix = PREFIX_RULES[type.ordinal()];
+                    if (prefix == null) throw error(peek(), "Expect expression.");
+                    nextToken();
+                    expr = prefix.parse(this);
+                    nodes++;
+                }
+                int exprDepth = 1;
+
+                for (; ; ) {
+                    // Tokens that are not infix operators have precedence
+                    // NONE, which never continues an expression.
+                    int infixPrecedence = PRECEDENCES[peekType().ordinal()];
+                    if (precedence <= infixPrecedence) {
+                        nextToken();
+                        Token binaryOperator = previous();
+
+                        // Common case: the right operand is a leaf with no
+                        // tighter operator after it, so no frame is needed.
+                        PrefixRule prefix = PREFIX_RULES[peekType().ordinal()];
+                        if (prefix != null) {
+                            nextToken();
+                            Expression right = prefix.parse(this);
+                            nodes++;
+                            if (PRECEDENCES[peekType().ordinal()] <= infixPrecedence) {
+                                expr = factory.binary(expr, binaryOperator, right);
+                                nodes++;
+                                exprDepth++;
+                                continue;
+                            }
+                            pending = right;
+                        }
+
+                        kind = BINARY_FRAME;
+                        operator = binaryOperator;
+                        left = expr;
+                        leftDepth = exprDepth;
+                        // All binary operators are left-associative, so the
+                        // right operand only takes operators that bind tighter.
+                        nextPrecedence = infixPrecedence + 1;
+                        break;
+                    }
+
+                    // The operand is complete; hand it to the innermost frame.
+                    if (frames == 0) {
+                        parsedDepth = exprDepth;
+                        return expr;
+                    }
+                    frames--;
+                    long state = states[frames];
+                    switch ((byte) state) {
+                        case UNARY_FRAME -> {
+                            expr = factory.unary(operators[frames], expr);
+                            nodes++;
+                            exprDepth++;
+                        }
+                        case BINARY_FRAME -> {
+                            expr = factory.binary(lefts[frames], operators[frames], expr);
+                            nodes++;
+                            exprDepth = 1 + Math.max((int) (state >>> 32), exprDepth);
+                        }
+                        default -> {
+                            consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
+                            expr = factory.grouping(expr);
+                            nodes++;
+                            exprDepth++;
+                        }
+                    }
+                    precedence = (int) (state >>> 8) & 0xFF;
+                }
+            }
 
-        if (matchTokenTypes(TokenType.BANG, TokenType.MINUS)) {
-            Token operator = previous();
-            Expression right = unary();
-            return new UnaryExpr(operator, right);
+            if (frames == states.length) {
+                int capacity = frames * 2;
+                states = Arrays.copyOf(states, capacity);
+                operators = Arrays.copyOf(operators, capacity);
+                lefts = Arrays.copyOf(lefts, capacity);
+            }
+            states[frames] = kind | (long) precedence << 8 | (long) leftDepth << 32;
+            if (kind != GROUP_FRAME) operators[frames] = operator;
+            if (kind == BINARY_FRAME) lefts[frames] = left;
+            frames++;
+            precedence = nextPrecedence;
         }
-        return primary();
     }
 
-    //  primary  → NUMBER | STRING | "true" | "false" | "nil" | "(" expression ")" ;
-    private Expression primary() {
-        if (matchTokenTypes(TokenType.FALSE)) return new LiteralExpr(false);
-        if (matchTokenTypes(TokenType.TRUE)) return new LiteralExpr(true);
-        if (matchTokenTypes(TokenType.NULL)) return new LiteralExpr(null);
-
-        if (matchTokenTypes(TokenType.NUMBER, TokenType.STRING)) {
-            return new LiteralExpr(previous().literal);
-        }
-        if (matchTokenTypes(TokenType.LEFT_PAREN)) {
-            Expression expr = expression();
-
-            consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
-
-            return new GroupingExpr(expr);
+    private void consume(TokenType type, String message) {
+        if (checkTokenType(type)) {
+            nextToken();
+            return;
         }
-//        System.out.println(peek());
-
-        throw error(peek(), "Expect expression.");
-    }
-
-
-    private Token consume(TokenType type, String message) {
-        if (checkTokenType(type)) return nextToken();
 
         throw error(peek(), message);
     }
@@ -146,45 +452,52 @@ public class RParser {
         if (isAtEnd()) {
             return false;
         }
-        return type == peek().type;
+        return type == peekType();
     }
 
-    private boolean matchTokenTypes(TokenType... types) {
-        for (TokenType type : types) {
-            if (checkTokenType(type)) {
-                nextToken();
-                return true;
-            }
-        }
-        return false;
-    }
+    private void nextToken() {
+        if (isAtEnd()) return;
 
-    private Token nextToken() {
-        if (!isAtEnd()) {
+        if (tokens != null) {
             current++;
+        } else {
+            previousToken = currentToken;
+            currentToken = source.nextToken();
+            tokensRead++;
         }
-        return peek();
     }
 
     private boolean isAtEnd() {
-        return peek().type == TokenType.EOF;
+        return peekType() == TokenType.EOF;
+    }
+
+    private TokenType peekType() {
+        return tokens != null ? tokens.type(current) : currentToken.type;
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens != null ? tokens.token(current) : currentToken;
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens != null ? tokens.token(current - 1) : previousToken;
+    }
+
+    private TokenType previousType() {
+        return tokens != null ? tokens.type(current - 1) : previousToken.type;
+    }
+
+    private Object previousLiteral() {
+        return tokens != null ? tokens.literal(current - 1) : previousToken.literal;
     }
 
     private void synchronize() {
         nextToken();
 
         while (!isAtEnd()) {
-            if (previous().type == TokenType.SEMICOLON) return;
+            if (previousType() == TokenType.SEMICOLON) return;
 
-            switch (peek().type) {
+            switch (peekType()) {
                 case CLASS:
                 case FUN:
                 case VAR:
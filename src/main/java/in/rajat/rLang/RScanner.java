@@ -2,63 +2,204 @@ package in.rajat.rLang;
 
 import in.rajat.rLang.enums.TokenType;
 import in.rajat.rLang.models.Token;
+import in.rajat.rLang.models.TokenBuffer;
+import in.rajat.rLang.models.TokenSource;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 
-public class RScanner {
-
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+/**
+ * Lexer for rLang source. Tokens are produced on demand through
+ * {@link #nextToken()}; {@link #scanTokens()} is kept for callers that want
+ * the whole list.
+ * <p>
+ * Source text either comes as one String or is pulled from a Reader in
+ * fixed-size chunks. Each refill allocates a fresh chunk and carries over
+ * only the lexeme in progress, so memory stays bounded by the longest token
+ * rather than the size of the script.
+ * <p>
+ * Tokens are spans over the current chunk (or the source String) and no
+ * lexeme is copied while scanning. A String is scanned in place, and a
+ * chunk is never written again once tokens point into it.
+ */
+public class RScanner implements TokenSource {
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Reader reader;
+    private final Diagnostics diagnostics;
+    // Exactly one of these holds the text being scanned: the source
+    // String, scanned in place, or the chunk last read from the reader.
+    private final String text;
+    private char[] chunk;
+    // Read-only view of the text handed to tokens.
+    private CharSequence view;
+    private int limit;
+    private Token next;
+    // Set while scanning into a compact buffer instead of handing out Tokens.
+    private TokenBuffer compact;
     private int start = 0;
     private int current = 0;
     private int line = 1;
+    // Characters taken from the reader so far.
+    private long charactersRead;
+
+    // Keywords bucketed by first character so identifiers can be matched
+    // against the source without building a String.
+    private static final char[][][] keywordText = new char[128][][];
+    private static final TokenType[][] keywordTypes = new TokenType[128][];
 
-    private static final Map<String, TokenType> keywords;
+    // Powers of ten that are exact doubles, for the number fast path.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
 
     static {
-        keywords = new HashMap<>();
-        keywords.put("and", TokenType.AND);
-        keywords.put("class", TokenType.CLASS);
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("false", TokenType.FALSE);
-        keywords.put("for", TokenType.FOR);
-        keywords.put("fun", TokenType.FUN);
-        keywords.put("if", TokenType.IF);
-        keywords.put("NULL", TokenType.NULL);
-        keywords.put("or", TokenType.OR);
-        keywords.put("print", TokenType.PRINT);
-        keywords.put("return", TokenType.RETURN);
-        keywords.put("super", TokenType.SUPER);
-        keywords.put("this", TokenType.THIS);
-        keywords.put("true", TokenType.TRUE);
-        keywords.put("var", TokenType.VAR);
-        keywords.put("while", TokenType.WHILE);
-    }
-
-    RScanner(String source) {
-        this.source = source;
+        keyword("and", TokenType.AND);
+        keyword("class", TokenType.CLASS);
+        keyword("else", TokenType.ELSE);
+        keyword("false", TokenType.FALSE);
+        keyword("for", TokenType.FOR);
+        keyword("fun", TokenType.FUN);
+        keyword("if", TokenType.IF);
+        keyword("NULL", TokenType.NULL);
+        keyword("or", TokenType.OR);
+        keyword("print", TokenType.PRINT);
+        keyword("return", TokenType.RETURN);
+        keyword("super", TokenType.SUPER);
+        keyword("this", TokenType.THIS);
+        keyword("true", TokenType.TRUE);
+        keyword("var", TokenType.VAR);
+        keyword("while", TokenType.WHILE);
+    }
+
+    private static void keyword(String text, TokenType type) {
+        char first = text.charAt(0);
+        char[][] texts = keywordText[first];
+        TokenType[] types = keywordTypes[first];
+        int size = texts == null ? 0 : texts.length;
+
+        char[][] grownTexts = new char[size + 1][];
+        TokenType[] grownTypes = new TokenType[size + 1];
+        if (size > 0) {
+            System.arraycopy(texts, 0, grownTexts, 0, size);
+            System.arraycopy(types, 0, grownTypes, 0, size);
+        }
+        grownTexts[size] = text.toCharArray();
+        grownTypes[size] = type;
+
+        keywordText[first] = grownTexts;
+        keywordTypes[first] = grownTypes;
+    }
+
+    RScanner(String source, Diagnostics diagnostics) {
+        this(source, 1, diagnostics);
+    }
+
+    // For scanning a piece of a larger source that starts on `line`.
+    RScanner(String source, int line, Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+        this.reader = null;
+        this.text = source;
+        this.view = source;
+        this.limit = source.length();
+        this.line = line;
+    }
+
+    RScanner(Reader reader, Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+        this.reader = reader;
+        this.text = null;
+        this.chunk = new char[0];
+        this.view = "";
+        this.limit = 0;
+    }
+
+    /**
+     * Length of the source, or of as much of it as has been read when
+     * streaming.
+     */
+    public long characters() {
+        return reader == null ? limit : charactersRead;
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= limit && !fill(1);
     }
 
     public List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != TokenType.EOF);
+        return tokens;
+    }
 
+    public TokenBuffer scanTokenBuffer() {
+        compact = new TokenBuffer();
         while (!isAtEnd()) {
             // We are at the beginning of the next lexeme.
             start = current;
             scanToken();
         }
+        compact.add(TokenType.EOF, "", 0, 0, null, line);
 
-        tokens.add(new Token(TokenType.EOF, "", null, line));
+        TokenBuffer tokens = compact;
+        compact = null;
         return tokens;
     }
 
+    @Override
+    public Token nextToken() {
+        while (next == null) {
+            if (isAtEnd()) {
+                return new Token(TokenType.EOF, "", null, line);
+            }
+            // We are at the beginning of the next lexeme.
+            start = current;
+            scanToken();
+        }
+
+        Token token = next;
+        next = null;
+        return token;
+    }
+
+    // Makes sure at least `needed` chars are available from `current`, reading
+    // the next chunk if necessary. Returns false once the reader is exhausted.
+    private boolean fill(int needed) {
+        if (reader == null) return false;
+
+        while (limit - current < needed) {
+            int kept = limit - start;
+            char[] grown = new char[Math.max(CHUNK_SIZE, kept * 2)];
+            System.arraycopy(chunk, start, grown, 0, kept);
+
+            int read;
+            try {
+                read = reader.read(grown, kept, grown.length - kept);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (read == -1) return false;
+            charactersRead += read;
+
+            current -= start;
+            start = 0;
+            chunk = grown;
+            view = CharBuffer.wrap(grown);
+            limit = kept + read;
+        }
+        return true;
+    }
+
 
     private void scanToken() {
         char c = nextChar();
@@ -140,14 +281,19 @@ public class RScanner {
                 } else if (isAlpha(c)) {
                     identifierTokenHandler();
                 } else {
-                    RLang.error(line, "Unexpected character [` " + c + " `]");
+                    diagnostics.error(line, "Unexpected character [` " + c + " `]");
                 }
                 break;
         }
     }
 
     private char nextChar() {
-        return source.charAt(current++);
+        return charAt(current++);
+    }
+
+    // Predictable per scanner, and cheaper than going through the view.
+    private char charAt(int index) {
+        return text != null ? text.charAt(index) : chunk[index];
     }
 
     private void addToken(TokenType type) {
@@ -157,25 +303,28 @@ public class RScanner {
     private boolean matchNextChar(char expected) {
         if (isAtEnd()) return false;
 
-        if (source.charAt(current) != expected) return false;
+        if (charAt(current) != expected) return false;
 
         current++;
         return true;
     }
 
     private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+        if (compact != null) {
+            compact.add(type, view, start, current - start, literal, line);
+        } else {
+            next = new Token(type, view, start, current - start, literal, line);
+        }
     }
 
     private char lookAheadChar() {
         if (isAtEnd()) return '\0';
-        return source.charAt(current);
+        return charAt(current);
     }
 
     private char lookAheadNextChar() {
-        if (current + 1 >= source.length()) return '\0';
-        return source.charAt(current + 1);
+        if (current + 1 >= limit && !fill(2)) return '\0';
+        return charAt(current + 1);
     }
 
 
@@ -186,7 +335,7 @@ public class RScanner {
         }
 
         if (isAtEnd()) {
-            RLang.error(line, "Unterminated string.");
+            diagnostics.error(line, "Unterminated string.");
             return;
         }
 
@@ -194,7 +343,7 @@ public class RScanner {
         nextChar();
 
         // Trim the surrounding quotes.
-        String value = source.substring(start + 1, current - 1);
+        String value = view.subSequence(start + 1, current - 1).toString();
         addToken(TokenType.STRING, value);
     }
 
@@ -222,17 +371,70 @@ public class RScanner {
 
         }
 
-        addToken(TokenType.NUMBER,
-                Double.parseDouble(source.substring(start, current)));
+        addToken(TokenType.NUMBER, parseNumber(start, current));
+    }
+
+    // Literals without a fraction are integers, accumulated digit by digit.
+    // One too large for a long is a Double.
+    private Object parseNumber(int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = charAt(i);
+            if (c == '.') return parseDouble(from, to);
+            int digit = c - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) return parseDouble(from, to);
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // Reads the literal straight out of the source. Up to 15 significant
+    // digits and 22 fraction digits the mantissa and the power of ten are
+    // both exact doubles, so one division gives the correctly rounded value;
+    // anything longer goes through Double.parseDouble.
+    private double parseDouble(int from, int to) {
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+
+        for (int i = from; i < to; i++) {
+            char c = charAt(i);
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            if (mantissa != 0 || c != '0') digits++;
+            mantissa = mantissa * 10 + (c - '0');
+            if (fraction) fractionDigits++;
+            if (digits > 15 || fractionDigits >= POWERS_OF_TEN.length) {
+                return Double.parseDouble(view.subSequence(from, to).toString());
+            }
+        }
+
+        return mantissa / POWERS_OF_TEN[fractionDigits];
     }
 
     private void identifierTokenHandler() {
         while (isAlphaNumeric(lookAheadChar())) nextChar();
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) {
-            addToken(TokenType.IDENTIFIER);
+        addToken(keywordType(start, current - start));
+    }
+
+    private TokenType keywordType(int from, int length) {
+        char first = charAt(from);
+        char[][] texts = first < keywordText.length ? keywordText[first] : null;
+        if (texts == null) return TokenType.IDENTIFIER;
+
+        candidates:
+        for (int k = 0; k < texts.length; k++) {
+            char[] keyword = texts[k];
+            if (keyword.length != length) continue;
+            for (int i = 1; i < length; i++) {
+                if (keyword[i] != charAt(from + i)) continue candidates;
+            }
+            return keywordTypes[first][k];
         }
+        return TokenType.IDENTIFIER;
     }
 
     private boolean isDigit(char c) {
@@ -0,0 +1,75 @@
+package in.rajat.rLang;
+
+import java.util.ArrayDeque;
+
+/**
+ * A string built by {@code +} that keeps the pieces it was joined from, so
+ * a chain like {@code "a" + x + "b" + y ...} costs one node per step
+ * instead of a copy of everything joined so far. The characters are
+ * written out once, on the first {@link #toString()}.
+ * <p>
+ * Ropes stay inside one evaluation: every evaluator flattens its result
+ * with {@link Values#flatten(Object)}, and printing and comparing go
+ * through toString(). They are not thread-safe.
+ */
+final class Rope {
+    // Pieces are joined into a plain String up to this many characters:
+    // copying them is cheaper than a node.
+    static final int FLAT_LIMIT = 64;
+
+    // String or Rope each; null once flattened.
+    private Object left;
+    private Object right;
+    private final int length;
+    private String flat;
+
+    private Rope(Object left, Object right, int length) {
+        this.left = left;
+        this.right = right;
+        this.length = length;
+    }
+
+    // Both sides are String or Rope.
+    static Object concat(Object left, Object right) {
+        int length = length(left) + length(right);
+        if (length <= FLAT_LIMIT) return left.toString().concat(right.toString());
+        return new Rope(left, right, length);
+    }
+
+    static int length(Object piece) {
+        return piece instanceof Rope rope ? rope.length : ((String) piece).length();
+    }
+
+    /**
+     * Writes the characters to {@code out} without flattening this rope.
+     */
+    void appendTo(StringBuilder out) {
+        if (flat != null) {
+            out.append(flat);
+            return;
+        }
+        ArrayDeque<Object> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            Object piece = pending.pop();
+            if (piece instanceof Rope rope && rope.flat == null) {
+                pending.push(rope.right);
+                pending.push(rope.left);
+            } else {
+                out.append(piece.toString());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) {
+            StringBuilder out = new StringBuilder(length);
+            appendTo(out);
+            flat = out.toString();
+            left = null;
+            right = null;
+        }
+        return flat;
+    }
+}
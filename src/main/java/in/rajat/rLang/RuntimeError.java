@@ -0,0 +1,16 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.models.Token;
+
+public class RuntimeError extends RuntimeException {
+    public final int line;
+
+    public RuntimeError(Token token, String message) {
+        this(token.line, message);
+    }
+
+    public RuntimeError(int line, String message) {
+        super(message);
+        this.line = line;
+    }
+}
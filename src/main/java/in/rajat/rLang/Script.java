@@ -0,0 +1,185 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.expressions.BinaryExpr;
+import in.rajat.rLang.expressions.Expression;
+import in.rajat.rLang.expressions.GroupingExpr;
+import in.rajat.rLang.expressions.UnaryExpr;
+import in.rajat.rLang.jit.CompiledExpression;
+import in.rajat.rLang.jit.ExpressionJit;
+import in.rajat.rLang.nodes.NodeBuilder;
+import in.rajat.rLang.nodes.RootNode;
+import in.rajat.rLang.vm.Chunk;
+import in.rajat.rLang.vm.Compiler;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A parsed (and possibly optimized) expression ready to run. Scripts are
+ * safe to share between threads; derived forms (the bytecode, the
+ * specializing node tree and JIT-compiled code) are built on first use and
+ * may be replaced after deoptimization.
+ */
+public final class Script {
+    // Trees nested deeper than this are never handed to the recursive passes
+    // (optimizer, compilers, tree-walking interpreter); see deep().
+    static final int MAX_RECURSIVE_DEPTH = Integer.getInteger("rlang.recursion.limit", 1000);
+    // Failed runs of the compiled form that end a window; see deoptimized().
+    static final int MAX_DEOPTIMIZATIONS = Integer.getInteger("rlang.jit.deopt.limit", 8);
+
+    public final Expression expression;
+    // Nesting depth of the tree, 1 for a single leaf.
+    public final int depth;
+    private volatile Chunk chunk;
+    // Set if the script has too many constants for a chunk.
+    private volatile boolean uncompilable;
+    private volatile RootNode nodes;
+    private final AtomicInteger invocations = new AtomicInteger();
+    private volatile CompiledExpression compiled;
+    // Runs of compiled code, counted only from a window's first
+    // deoptimization to its last, so code that never fails pays one read.
+    private final LongAdder compiledRuns = new LongAdder();
+    private volatile boolean countingRuns;
+    // Guarded by this, like the rewrites of the compiled form.
+    private int deoptimizations;
+    private boolean generic;
+    // Set once compiled code has failed too often; runs stay interpreted.
+    private volatile boolean interpreted;
+    private volatile long operations = -1;
+
+    Script(Expression expression, int depth) {
+        this.expression = expression;
+        this.depth = depth;
+    }
+
+    /**
+     * Whether this script is too deeply nested to walk recursively. Deep
+     * scripts are only ever run by {@link Interpreter#interpretIteratively}.
+     */
+    public boolean deep() {
+        return depth > MAX_RECURSIVE_DEPTH;
+    }
+
+    /**
+     * Operators a successful run of this script applies: every unary and
+     * binary node, counted once per occurrence in the source even where an
+     * interned tree shares it. That is the fuel a run needs in any mode.
+     */
+    public long operations() {
+        long count = operations;
+        if (count < 0) {
+            // Iterative, since deep scripts are counted too.
+            count = 0;
+            ArrayDeque<Expression> pending = new ArrayDeque<>();
+            pending.push(expression);
+            while (!pending.isEmpty()) {
+                Expression expr = pending.pop();
+                if (expr instanceof BinaryExpr binary) {
+                    count++;
+                    pending.push(binary.right);
+                    pending.push(binary.left);
+                } else if (expr instanceof UnaryExpr unary) {
+                    count++;
+                    pending.push(unary.right);
+                } else if (expr instanceof GroupingExpr grouping) {
+                    pending.push(grouping.expression);
+                }
+            }
+            operations = count;
+        }
+        return count;
+    }
+
+    /**
+     * The bytecode for this script, or null if it has more constants than a
+     * chunk can index and has to be interpreted.
+     */
+    Chunk chunk() {
+        Chunk compiled = chunk;
+        if (compiled == null && !uncompilable) {
+            // Compiling is deterministic, so a racing thread doing it twice is harmless.
+            compiled = new Compiler().compile(expression);
+            if (compiled == null) {
+                uncompilable = true;
+            } else {
+                chunk = compiled;
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * The specializing tree for this script. It rewrites itself as it runs, so
+     * its {@link RootNode#dump()} shows the specializations reached so far.
+     */
+    public RootNode nodes() {
+        RootNode tree = nodes;
+        if (tree == null) {
+            // Unlike a chunk, the tree is built once: runs specialize it and
+            // dumps read it, so every thread has to share the same one.
+            synchronized (this) {
+                tree = nodes;
+                if (tree == null) {
+                    tree = NodeBuilder.build(expression);
+                    nodes = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Counts a run and returns the JIT-compiled form once this script has
+     * been run {@code threshold} times, or null while it should still be
+     * interpreted (or if it could not be compiled). It is specialized for
+     * the kinds of numbers in the {@code bindings} of the run that compiles.
+     */
+    CompiledExpression compiled(int threshold, Map<String, Object> bindings) {
+        CompiledExpression result = compiled;
+        if (result != null) {
+            if (countingRuns) compiledRuns.increment();
+            return result;
+        }
+        if (interpreted) return null;
+        // Only the run that crosses the threshold compiles, so the counter
+        // stops mattering afterwards and overflow is harmless.
+        if (invocations.incrementAndGet() == threshold) {
+            result = ExpressionJit.shared().compile(expression, bindings);
+            compiled = result;
+        }
+        return result;
+    }
+
+    /**
+     * Records a run that {@code failed} could not handle. The first one
+     * opens a window and the MAX_DEOPTIMIZATIONS-th closes it; if at least
+     * half the runs in it failed, code specialized on the kinds of the
+     * bindings is replaced by code compiled without them, which handles any
+     * binding. If that keeps failing too (an integer overflow does not go
+     * away), the script is interpreted from then on. Code that fails only
+     * now and then is kept: it beats the slower replacement on every other
+     * run.
+     */
+    synchronized void deoptimized(CompiledExpression failed) {
+        // Another thread already replaced it.
+        if (compiled != failed) return;
+        if (deoptimizations++ == 0) {
+            // This run was not counted yet.
+            compiledRuns.reset();
+            compiledRuns.increment();
+            countingRuns = true;
+        }
+        if (deoptimizations < MAX_DEOPTIMIZATIONS) return;
+        countingRuns = false;
+        boolean frequent = 2L * deoptimizations >= compiledRuns.sum();
+        deoptimizations = 0;
+        if (!frequent) return;
+
+        CompiledExpression replacement = generic ? null : ExpressionJit.shared().compile(expression, Map.of());
+        generic = true;
+        if (replacement == null) interpreted = true;
+        compiled = replacement;
+    }
+}
@@ -0,0 +1,329 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.expressions.*;
+import in.rajat.rLang.models.Token;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precompiled scripts. A script at {@code foo.rl} is stored as a compact
+ * binary AST in {@code foo.rl.rlc}:
+ * <pre>
+ * magic "RLNG" | version u16 | optimized u8 | SHA-256 of the source (32 bytes)
+ * string count varint | strings (varint length, UTF-8)
+ * nodes in prefix order
+ * </pre>
+ * Each node is a tag byte followed by its operands; lines, operator codes
+ * and string indexes are varints. A file whose version, optimizer setting
+ * or source hash does not match is stale and is ignored.
+ */
+final class ScriptFile {
+    static final String EXTENSION = ".rlc";
+
+    private static final int MAGIC = 0x524C4E47;
+    // Bump whenever the encoding below changes.
+    private static final short VERSION = 2;
+    private static final int HASH_LENGTH = 32;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte NUMBER = 3;
+    private static final byte STRING = 4;
+    private static final byte GROUPING = 5;
+    private static final byte UNARY = 6;
+    private static final byte BINARY = 7;
+    private static final byte VARIABLE = 8;
+    private static final byte INTEGER = 9;
+
+    // Operators are written as their index here, not as TokenType ordinals,
+    // so reordering TokenType does not invalidate existing files.
+    private static final TokenType[] OPERATORS = {
+            TokenType.MINUS, TokenType.PLUS, TokenType.SLASH, TokenType.STAR,
+            TokenType.BANG, TokenType.BANG_EQUAL, TokenType.EQUAL_EQUAL,
+            TokenType.GREATER, TokenType.GREATER_EQUAL, TokenType.LESS, TokenType.LESS_EQUAL
+    };
+    private static final String[] LEXEMES = {"-", "+", "/", "*", "!", "!=", "==", ">", ">=", "<", "<="};
+
+    private ScriptFile() {
+    }
+
+    static Path compiledPath(Path source) {
+        return source.resolveSibling(source.getFileName() + EXTENSION);
+    }
+
+    static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static byte[] hash(Path source) throws IOException {
+        MessageDigest digest = digest();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(source)) {
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Loads a precompiled script through a memory mapping. Returns null if
+     * the file is missing, stale or unreadable, so the caller compiles the
+     * source instead. Nodes are built by {@code factory}.
+     */
+    static Script read(Path compiled, byte[] sourceHash, boolean optimized, ExpressionFactory factory) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            // Missing, not a regular file, or not readable.
+            return null;
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) return null;
+            if ((buffer.get() != 0) != optimized) return null;
+            byte[] hash = new byte[HASH_LENGTH];
+            buffer.get(hash);
+            if (!Arrays.equals(hash, sourceHash)) return null;
+
+            Decoder decoder = new Decoder(buffer, factory);
+            Expression expression = decoder.decode();
+            return new Script(expression, decoder.depth);
+        } catch (RuntimeException e) {
+            // Truncated or corrupt (an underflow, a bad index or count, an
+            // unknown tag): treat it like a stale file.
+            return null;
+        } catch (InternalError e) {
+            // The file was truncated under the mapping, and reading past its
+            // new end faulted.
+            return null;
+        }
+    }
+
+    /**
+     * Writes {@code script} to {@code compiled}. The file is written under a
+     * temporary name and moved into place, so readers never see a partial one.
+     */
+    static void write(Script script, Path compiled, byte[] sourceHash, boolean optimized) throws IOException {
+        Encoder encoder = new Encoder();
+        script.expression.accept(encoder);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer header = ByteBuffer.allocate(4 + 2 + 1 + HASH_LENGTH);
+        header.putInt(MAGIC).putShort(VERSION).put((byte) (optimized ? 1 : 0)).put(sourceHash);
+        out.write(header.array());
+        writeVarint(out, encoder.strings.size());
+        for (String string : encoder.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+        encoder.nodes.writeTo(out);
+
+        Path temporary = Files.createTempFile(compiled.toAbsolutePath().getParent(), compiled.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, out.toByteArray());
+            Files.move(temporary, compiled, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint.");
+    }
+
+    // A count of items that take at least a byte each, so a corrupt one is
+    // caught before anything is allocated for it.
+    private static int readCount(ByteBuffer buffer) {
+        int count = readVarint(buffer);
+        if (count < 0 || count > buffer.remaining()) throw new IllegalArgumentException("Bad count " + count);
+        return count;
+    }
+
+    private static class Encoder implements Expression.Visitor<Void> {
+        final List<String> strings = new ArrayList<>();
+        final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+        private final Map<String, Integer> stringIndexes = new HashMap<>();
+
+        @Override
+        public Void visitBinaryExpr(BinaryExpr expr) {
+            nodes.write(BINARY);
+            operator(expr.operator);
+            expr.left.accept(this);
+            expr.right.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(GroupingExpr expr) {
+            nodes.write(GROUPING);
+            expr.expression.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(LiteralExpr expr) {
+            Object value = expr.value;
+            if (value == null) {
+                nodes.write(NULL);
+            } else if (value instanceof Boolean) {
+                nodes.write((boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Double) {
+                nodes.write(NUMBER);
+                long bits = Double.doubleToRawLongBits((double) value);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    nodes.write((int) (bits >>> shift));
+                }
+            } else if (value instanceof Long) {
+                nodes.write(INTEGER);
+                long bits = (long) value;
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    nodes.write((int) (bits >>> shift));
+                }
+            } else {
+                nodes.write(STRING);
+                writeVarint(nodes, string((String) value));
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(UnaryExpr expr) {
+            nodes.write(UNARY);
+            operator(expr.operator);
+            expr.right.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(VariableExpr expr) {
+            nodes.write(VARIABLE);
+            writeVarint(nodes, string(expr.identifier));
+            writeVarint(nodes, expr.name.line);
+            return null;
+        }
+
+        private void operator(Token operator) {
+            int code = Arrays.asList(OPERATORS).indexOf(operator.type);
+            if (code < 0) throw new IllegalArgumentException("Unexpected operator " + operator.type);
+            writeVarint(nodes, code);
+            writeVarint(nodes, operator.line);
+        }
+
+        private int string(String value) {
+            return stringIndexes.computeIfAbsent(value, s -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+        }
+    }
+
+    private static class Decoder {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+        private final ExpressionFactory factory;
+        int depth;
+
+        Decoder(ByteBuffer buffer, ExpressionFactory factory) {
+            this.buffer = buffer;
+            this.factory = factory;
+            this.strings = new String[readCount(buffer)];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[readCount(buffer)];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        Expression decode() {
+            Expression expression = node(1);
+            if (buffer.hasRemaining()) throw new IllegalArgumentException("Trailing data.");
+            return expression;
+        }
+
+        private Expression node(int level) {
+            // Only shallow scripts are written; anything deeper is corrupt
+            // and must not overflow the stack.
+            if (level > Script.MAX_RECURSIVE_DEPTH) throw new IllegalArgumentException("Too deeply nested.");
+            depth = Math.max(depth, level);
+
+            byte tag = buffer.get();
+            switch (tag) {
+                case NULL:
+                    return factory.literal(null);
+                case TRUE:
+                    return factory.literal(true);
+                case FALSE:
+                    return factory.literal(false);
+                case NUMBER:
+                    return factory.literal(buffer.getDouble());
+                case INTEGER:
+                    return factory.literal(buffer.getLong());
+                case STRING:
+                    return factory.literal(strings[readVarint(buffer)]);
+                case GROUPING:
+                    return factory.grouping(node(level + 1));
+                case UNARY: {
+                    Token operator = operator();
+                    return factory.unary(operator, node(level + 1));
+                }
+                case BINARY: {
+                    Token operator = operator();
+                    Expression left = node(level + 1);
+                    return factory.binary(left, operator, node(level + 1));
+                }
+                case VARIABLE: {
+                    String identifier = strings[readVarint(buffer)];
+                    int line = readVarint(buffer);
+                    return factory.variable(new Token(TokenType.IDENTIFIER, identifier, null, line));
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown node tag " + tag);
+            }
+        }
+
+        private Token operator() {
+            int code = readVarint(buffer);
+            return new Token(OPERATORS[code], LEXEMES[code], null, readVarint(buffer));
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package in.rajat.rLang;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Evaluates a stream of newline-delimited expressions, one per line, as a
+ * pipeline of three stages:
+ * <ol>
+ *     <li>a reader thread that cuts the input into batches of lines,</li>
+ *     <li>worker threads that scan, parse and evaluate a whole batch each,
+ *     several batches at once,</li>
+ *     <li>the calling thread, which writes finished batches in input order
+ *     and flushes only when it has to wait for the next one.</li>
+ * </ol>
+ * At most {@code window} batches are between being read and being written,
+ * so a slow consumer stalls the workers and then the reader instead of
+ * letting finished output pile up. Values go to {@code out} and messages
+ * to {@code err}, as the prompt prints them; each is in input order.
+ */
+public class StreamEvaluator {
+    // Most lines handed to a worker at once. A batch also ends when no more
+    // input is ready, so a slow producer still sees each answer promptly.
+    private static final int BATCH_LINES = 256;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Queued to a worker to tell it the input has ended.
+    private static final Batch END = new Batch(-1);
+
+    private final RLangEngine engine;
+    private final int workers;
+    private final int window;
+
+    public StreamEvaluator(RLangEngine engine, int workers) {
+        this.engine = engine;
+        this.workers = Math.max(1, workers);
+        this.window = 4 * this.workers;
+    }
+
+    public static class Summary {
+        public final long lines;
+        public final long syntaxErrors;
+        public final long runtimeErrors;
+
+        Summary(long lines, long syntaxErrors, long runtimeErrors) {
+            this.lines = lines;
+            this.syntaxErrors = syntaxErrors;
+            this.runtimeErrors = runtimeErrors;
+        }
+    }
+
+    private static final class Batch {
+        final long sequence;
+        String[] lines = new String[16];
+        int count;
+        final StringBuilder out = new StringBuilder();
+        final StringBuilder err = new StringBuilder();
+        int syntaxErrors;
+        int runtimeErrors;
+
+        Batch(long sequence) {
+            this.sequence = sequence;
+        }
+
+        void add(String line) {
+            if (count == lines.length) lines = Arrays.copyOf(lines, count * 2);
+            lines[count++] = line;
+        }
+    }
+
+    // Shared by the three stages of one run().
+    private final class Pipeline {
+        // Room for every batch in flight plus an END per worker, so neither
+        // put() nor offer() ever has to wait.
+        final BlockingQueue<Batch> pending = new ArrayBlockingQueue<>(window + workers);
+        // Permits for batches in flight; the writer returns one per batch.
+        final Semaphore inFlight = new Semaphore(window);
+        // Finished batches by sequence % window, guarded by itself. A batch
+        // is only read while fewer than `window` are in flight, so slots
+        // never collide.
+        final Batch[] finished = new Batch[window];
+        // Batches the reader produced, known once the input has ended.
+        long total = -1;
+        // Why reading stopped early; raised once everything before is written.
+        Exception readFailure;
+        // A worker failing loses its batch, so this is raised right away.
+        Throwable failure;
+
+        void read(BufferedReader reader) {
+            long sequence = 0;
+            try {
+                for (; ; ) {
+                    inFlight.acquire();
+                    Batch batch = new Batch(sequence);
+                    for (String line; batch.count < BATCH_LINES && (line = reader.readLine()) != null; ) {
+                        batch.add(line);
+                        if (!reader.ready()) break;
+                    }
+                    if (batch.count == 0) break;
+                    pending.put(batch);
+                    sequence++;
+                }
+            } catch (IOException | RuntimeException e) {
+                readFailure = e;
+            } catch (InterruptedException e) {
+                // The writer gave up; nothing is waiting for the rest.
+            } finally {
+                synchronized (finished) {
+                    total = sequence;
+                    finished.notifyAll();
+                }
+                for (int i = 0; i < workers; i++) pending.offer(END);
+            }
+        }
+
+        void evaluate() {
+            try {
+                for (Batch batch; (batch = pending.take()) != END; ) {
+                    for (int i = 0; i < batch.count; i++) evaluateLine(batch, batch.lines[i]);
+                    batch.lines = null;
+                    synchronized (finished) {
+                        finished[(int) (batch.sequence % window)] = batch;
+                        finished.notifyAll();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Shut down by the writer.
+            } catch (RuntimeException | Error e) {
+                fail(e);
+            }
+        }
+
+        // The batch numbered `sequence` if it is finished, without waiting.
+        Batch poll(long sequence) {
+            synchronized (finished) {
+                return remove(sequence);
+            }
+        }
+
+        // Waits for the batch numbered `sequence`; null once there is none.
+        Batch take(long sequence) throws IOException, InterruptedException {
+            synchronized (finished) {
+                for (; ; ) {
+                    Batch batch = remove(sequence);
+                    if (batch != null) return batch;
+                    if (failure != null) throw new IllegalStateException("Stream evaluation failed", failure);
+                    if (total == sequence) {
+                        if (readFailure instanceof IOException e) throw e;
+                        if (readFailure != null) throw (RuntimeException) readFailure;
+                        return null;
+                    }
+                    finished.wait();
+                }
+            }
+        }
+
+        private Batch remove(long sequence) {
+            int slot = (int) (sequence % window);
+            Batch batch = finished[slot];
+            if (batch == null || batch.sequence != sequence) return null;
+            finished[slot] = null;
+            return batch;
+        }
+
+        void fail(Throwable e) {
+            synchronized (finished) {
+                if (failure == null) failure = e;
+                finished.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Evaluates every line of {@code input} until it ends. Returns once all
+     * output has been written and flushed.
+     */
+    public Summary run(Reader input, Writer out, Writer err) throws IOException, InterruptedException {
+        Pipeline pipeline = new Pipeline();
+        BufferedReader reader = input instanceof BufferedReader buffered ? buffered : new BufferedReader(input, BUFFER_SIZE);
+
+        Thread[] threads = new Thread[workers + 1];
+        threads[0] = new Thread(() -> pipeline.read(reader), "rlang-stream-reader");
+        for (int i = 1; i <= workers; i++) {
+            threads[i] = new Thread(pipeline::evaluate, "rlang-stream-worker-" + i);
+        }
+        for (Thread thread : threads) {
+            // A reader blocked on stdin must not keep the JVM alive.
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long lines = 0, syntaxErrors = 0, runtimeErrors = 0;
+        try {
+            for (long sequence = 0; ; sequence++) {
+                Batch batch = pipeline.poll(sequence);
+                if (batch == null) {
+                    // Nothing more to write yet, so let the consumer have
+                    // what there is.
+                    out.flush();
+                    err.flush();
+                    batch = pipeline.take(sequence);
+                    if (batch == null) break;
+                }
+                out.append(batch.out);
+                err.append(batch.err);
+                lines += batch.count;
+                syntaxErrors += batch.syntaxErrors;
+                runtimeErrors += batch.runtimeErrors;
+                pipeline.inFlight.release();
+            }
+            out.flush();
+            err.flush();
+        } finally {
+            for (Thread thread : threads) thread.interrupt();
+        }
+        return new Summary(lines, syntaxErrors, runtimeErrors);
+    }
+
+    private void evaluateLine(Batch batch, String line) {
+        Diagnostics diagnostics = new Diagnostics();
+        try {
+            Script script = engine.compile(line, diagnostics);
+            if (script != null) {
+                batch.out.append(Values.stringify(engine.execute(script, Map.of(), Fuel.fromSystemProperties()))).append('\n');
+            }
+        } catch (RuntimeError error) {
+            diagnostics.runtimeError(error);
+        }
+
+        if (diagnostics.hadError()) batch.syntaxErrors++;
+        if (diagnostics.hadRuntimeError()) batch.runtimeErrors++;
+        for (String message : diagnostics.messages()) {
+            batch.err.append(message).append('\n');
+        }
+    }
+}
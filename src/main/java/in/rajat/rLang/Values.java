@@ -0,0 +1,87 @@
+package in.rajat.rLang;
+
+/**
+ * Value semantics shared by every execution mode, so the tree-walking
+ * {@link Interpreter} and the bytecode VM agree on truthiness, equality
+ * and how results are printed.
+ */
+public final class Values {
+
+    private Values() {
+    }
+
+    public static boolean isTruthy(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+
+        if (obj instanceof Boolean) {
+            return ((boolean) obj);
+        }
+
+        return true;
+    }
+
+    public static boolean isEqual(Object a, Object b) {
+        if (a == null && b == null) return true;
+        if (a == null) return false;
+
+        if (a instanceof Long || b instanceof Long) {
+            return Numbers.isNumber(a) && Numbers.isNumber(b) && Numbers.isEqual(a, b);
+        }
+        if (a instanceof Rope || b instanceof Rope) {
+            return isString(a) && isString(b) && a.toString().equals(b.toString());
+        }
+        return a.equals(b);
+    }
+
+    /**
+     * Whether {@code obj} is a string value, flattened or not.
+     */
+    public static boolean isString(Object obj) {
+        return obj instanceof String || obj instanceof Rope;
+    }
+
+    /**
+     * String {@code +}: both operands printed and joined. Long results are
+     * returned as a rope, which only copies the characters once it is
+     * printed, compared or flattened.
+     */
+    public static Object concat(Object left, Object right) {
+        return Rope.concat(left instanceof Rope ? left : stringify(left), right instanceof Rope ? right : stringify(right));
+    }
+
+    /**
+     * {@code obj} as it may leave an evaluator: ropes become Strings.
+     */
+    public static Object flatten(Object obj) {
+        return obj instanceof Rope ? obj.toString() : obj;
+    }
+
+    /**
+     * Appends {@code obj} as {@link #stringify} prints it.
+     */
+    public static void append(StringBuilder out, Object obj) {
+        if (obj instanceof Rope rope) {
+            rope.appendTo(out);
+        } else if (obj instanceof String string) {
+            out.append(string);
+        } else {
+            out.append(stringify(obj));
+        }
+    }
+
+    public static String stringify(Object obj) {
+        if (obj == null) return "NULL";
+
+        if (obj instanceof Double) {
+            String text = obj.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+
+        return obj.toString();
+    }
+}
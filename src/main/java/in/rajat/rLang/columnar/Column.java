@@ -0,0 +1,57 @@
+package in.rajat.rLang.columnar;
+
+import in.rajat.rLang.enums.ColumnType;
+
+/**
+ * One column of input or output rows, backed by a primitive array where
+ * the type allows it. Exactly one of the arrays is set, matching
+ * {@link #type}.
+ */
+public final class Column {
+    public final ColumnType type;
+    public final double[] numbers;
+    public final boolean[] booleans;
+    public final Object[] objects;
+
+    private Column(ColumnType type, double[] numbers, boolean[] booleans, Object[] objects) {
+        this.type = type;
+        this.numbers = numbers;
+        this.booleans = booleans;
+        this.objects = objects;
+    }
+
+    public static Column of(double[] values) {
+        return new Column(ColumnType.NUMBER, values, null, null);
+    }
+
+    public static Column of(boolean[] values) {
+        return new Column(ColumnType.BOOLEAN, null, values, null);
+    }
+
+    public static Column of(String[] values) {
+        return new Column(ColumnType.OBJECT, null, null, values);
+    }
+
+    static Column ofObjects(Object[] values) {
+        return new Column(ColumnType.OBJECT, null, null, values);
+    }
+
+    public int size() {
+        return switch (type) {
+            case NUMBER -> numbers.length;
+            case BOOLEAN -> booleans.length;
+            case OBJECT -> objects.length;
+        };
+    }
+
+    /**
+     * The value of one row, boxed the way the scalar evaluators return it.
+     */
+    public Object get(int row) {
+        return switch (type) {
+            case NUMBER -> numbers[row];
+            case BOOLEAN -> booleans[row];
+            case OBJECT -> objects[row];
+        };
+    }
+}
@@ -0,0 +1,522 @@
+package in.rajat.rLang.columnar;
+
+import in.rajat.rLang.Interpreter;
+import in.rajat.rLang.Numbers;
+import in.rajat.rLang.RuntimeError;
+import in.rajat.rLang.Values;
+import in.rajat.rLang.enums.ColumnType;
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.expressions.*;
+import in.rajat.rLang.models.Token;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Evaluates one expression over many rows at once. Variables are bound to
+ * whole columns, and every node processes a chunk of {@link #CHUNK_SIZE}
+ * rows per call in a plain loop over primitive arrays, so the tree is
+ * walked once per chunk rather than once per row and the arithmetic loops
+ * are simple enough for the JIT to vectorize.
+ * <p>
+ * Node types are resolved once from the column types when the evaluator is
+ * built. Row results match what the Interpreter returns for the same values,
+ * except that all numbers are doubles: integer literals are widened, so a
+ * row's value may be {@code 3.0} where the Interpreter returns {@code 3}.
+ * Arithmetic between integer literals is folded when the evaluator is
+ * built, with the Interpreter's integer semantics. An integer that is then
+ * compared, or returned, and is beyond 2^53 would not widen exactly; such
+ * an expression is not evaluated column by column but row by row on the
+ * Interpreter (see {@link #columnar()}), which returns its results as they
+ * are. An evaluator reuses its scratch buffers, so it must not be shared
+ * between threads.
+ */
+public class ColumnarEvaluator {
+    public static final int CHUNK_SIZE = 1024;
+
+    private final Expression expression;
+    private final Map<String, Column> columns;
+    // Null when the expression is evaluated row by row.
+    private final Node root;
+
+    // The largest magnitude of a long every double column holds exactly.
+    private static final long MAX_EXACT = 1L << 53;
+
+    /**
+     * Plans the evaluation of {@code expression} over {@code columns}.
+     */
+    public ColumnarEvaluator(Expression expression, Map<String, Column> columns) {
+        this.expression = expression;
+        this.columns = columns;
+        Node planned;
+        try {
+            planned = expression.accept(new Planner());
+            if (planned instanceof IntegerNode integer && !integer.exact()) throw NotColumnar.INSTANCE;
+        } catch (NotColumnar e) {
+            planned = null;
+        }
+        this.root = planned;
+    }
+
+    /**
+     * Whether the expression is evaluated column by column. If not, it
+     * needs an integer a double does not hold, and {@link #evaluate} runs it
+     * row by row on the Interpreter instead.
+     */
+    public boolean columnar() {
+        return root != null;
+    }
+
+    public Column evaluate(int rows) {
+        for (Column column : columns.values()) {
+            if (column.size() < rows) {
+                throw new IllegalArgumentException("Column has " + column.size() + " rows, expected " + rows + ".");
+            }
+        }
+
+        if (root == null) return rowByRow(rows);
+
+        double[] numbers = root.type == ColumnType.NUMBER ? new double[rows] : null;
+        boolean[] booleans = root.type == ColumnType.BOOLEAN ? new boolean[rows] : null;
+        Object[] objects = root.type == ColumnType.OBJECT ? new Object[rows] : null;
+
+        for (int offset = 0; offset < rows; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, rows - offset);
+            root.run(offset, length);
+
+            switch (root.type) {
+                case NUMBER -> System.arraycopy(root.numbers, 0, numbers, offset, length);
+                case BOOLEAN -> System.arraycopy(root.booleans, 0, booleans, offset, length);
+                case OBJECT -> {
+                    for (int i = 0; i < length; i++) objects[offset + i] = Values.flatten(root.objects[i]);
+                }
+            }
+        }
+
+        return switch (root.type) {
+            case NUMBER -> Column.of(numbers);
+            case BOOLEAN -> Column.of(booleans);
+            case OBJECT -> Column.ofObjects(objects);
+        };
+    }
+
+    private Column rowByRow(int rows) {
+        Map<String, Object> bindings = new HashMap<>();
+        Interpreter interpreter = new Interpreter(bindings);
+        Object[] results = new Object[rows];
+        for (int row = 0; row < rows; row++) {
+            for (Map.Entry<String, Column> column : columns.entrySet()) {
+                bindings.put(column.getKey(), column.getValue().get(row));
+            }
+            results[row] = interpreter.interpret(expression);
+        }
+        return Column.ofObjects(results);
+    }
+
+    // Thrown by the planner for an expression it cannot evaluate exactly.
+    private static final class NotColumnar extends RuntimeException {
+        static final NotColumnar INSTANCE = new NotColumnar();
+
+        private NotColumnar() {
+            super(null, null, false, false);
+        }
+    }
+
+    // A node fills its own scratch buffer with `length` results for the rows
+    // starting at `offset`.
+    private abstract static class Node {
+        final ColumnType type;
+        final double[] numbers;
+        final boolean[] booleans;
+        final Object[] objects;
+
+        Node(ColumnType type) {
+            this.type = type;
+            this.numbers = type == ColumnType.NUMBER ? new double[CHUNK_SIZE] : null;
+            this.booleans = type == ColumnType.BOOLEAN ? new boolean[CHUNK_SIZE] : null;
+            this.objects = type == ColumnType.OBJECT ? new Object[CHUNK_SIZE] : null;
+        }
+
+        abstract void run(int offset, int length);
+
+        Object get(int i) {
+            return switch (type) {
+                case NUMBER -> numbers[i];
+                case BOOLEAN -> booleans[i];
+                case OBJECT -> objects[i];
+            };
+        }
+    }
+
+    private static class ConstantNode extends Node {
+        ConstantNode(ColumnType type, Object value) {
+            super(type);
+            // Filled once; nothing to do per chunk.
+            switch (type) {
+                case NUMBER -> Arrays.fill(numbers, (double) value);
+                case BOOLEAN -> Arrays.fill(booleans, (boolean) value);
+                case OBJECT -> Arrays.fill(objects, value);
+            }
+        }
+
+        @Override
+        void run(int offset, int length) {
+        }
+    }
+
+    // An integer literal, or arithmetic on integer literals folded the way
+    // the Interpreter computes it, widened for the nodes that take doubles.
+    // Concatenation prints it as the integer it is.
+    private static final class IntegerNode extends ConstantNode {
+        final long value;
+
+        IntegerNode(long value) {
+            super(ColumnType.NUMBER, (double) value);
+            this.value = value;
+        }
+
+        // Whether the widened value is the integer itself.
+        boolean exact() {
+            return value >= -MAX_EXACT && value <= MAX_EXACT;
+        }
+
+        @Override
+        Object get(int i) {
+            return value;
+        }
+    }
+
+    private static final class ColumnNode extends Node {
+        private final Column column;
+
+        ColumnNode(Column column) {
+            super(column.type);
+            this.column = column;
+        }
+
+        @Override
+        void run(int offset, int length) {
+            switch (type) {
+                case NUMBER -> System.arraycopy(column.numbers, offset, numbers, 0, length);
+                case BOOLEAN -> System.arraycopy(column.booleans, offset, booleans, 0, length);
+                case OBJECT -> System.arraycopy(column.objects, offset, objects, 0, length);
+            }
+        }
+    }
+
+    private static final class NegateNode extends Node {
+        private final Node right;
+
+        NegateNode(Node right) {
+            super(ColumnType.NUMBER);
+            this.right = right;
+        }
+
+        @Override
+        void run(int offset, int length) {
+            right.run(offset, length);
+            double[] in = right.numbers;
+            for (int i = 0; i < length; i++) numbers[i] = -in[i];
+        }
+    }
+
+    private static final class NotNode extends Node {
+        private final Node right;
+
+        NotNode(Node right) {
+            super(ColumnType.BOOLEAN);
+            this.right = right;
+        }
+
+        @Override
+        void run(int offset, int length) {
+            right.run(offset, length);
+            switch (right.type) {
+                case BOOLEAN -> {
+                    boolean[] in = right.booleans;
+                    for (int i = 0; i < length; i++) booleans[i] = !in[i];
+                }
+                // Numbers are always truthy.
+                case NUMBER -> Arrays.fill(booleans, 0, length, false);
+                case OBJECT -> {
+                    Object[] in = right.objects;
+                    for (int i = 0; i < length; i++) booleans[i] = !Values.isTruthy(in[i]);
+                }
+            }
+        }
+    }
+
+    private static final class ArithmeticNode extends Node {
+        private final Node left;
+        private final Node right;
+        private final Token operator;
+
+        ArithmeticNode(Node left, Token operator, Node right) {
+            super(ColumnType.NUMBER);
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        void run(int offset, int length) {
+            left.run(offset, length);
+            right.run(offset, length);
+            double[] a = left.numbers;
+            double[] b = right.numbers;
+            switch (operator.type) {
+                case PLUS -> {
+                    for (int i = 0; i < length; i++) numbers[i] = a[i] + b[i];
+                }
+                case MINUS -> {
+                    for (int i = 0; i < length; i++) numbers[i] = a[i] - b[i];
+                }
+                case STAR -> {
+                    for (int i = 0; i < length; i++) numbers[i] = a[i] * b[i];
+                }
+                case SLASH -> {
+                    for (int i = 0; i < length; i++) numbers[i] = a[i] / b[i];
+                }
+                default -> throw new IllegalStateException("Unexpected operator " + operator.type);
+            }
+        }
+    }
+
+    private static final class CompareNode extends Node {
+        private final Node left;
+        private final Node right;
+        private final Token operator;
+
+        CompareNode(Node left, Token operator, Node right) {
+            super(ColumnType.BOOLEAN);
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        void run(int offset, int length) {
+            left.run(offset, length);
+            right.run(offset, length);
+            double[] a = left.numbers;
+            double[] b = right.numbers;
+            switch (operator.type) {
+                case GREATER -> {
+                    for (int i = 0; i < length; i++) booleans[i] = a[i] > b[i];
+                }
+                case GREATER_EQUAL -> {
+                    for (int i = 0; i < length; i++) booleans[i] = a[i] >= b[i];
+                }
+                case LESS -> {
+                    for (int i = 0; i < length; i++) booleans[i] = a[i] < b[i];
+                }
+                case LESS_EQUAL -> {
+                    for (int i = 0; i < length; i++) booleans[i] = a[i] <= b[i];
+                }
+                default -> throw new IllegalStateException("Unexpected operator " + operator.type);
+            }
+        }
+    }
+
+    private static final class EqualityNode extends Node {
+        private final Node left;
+        private final Node right;
+        private final boolean negate;
+
+        EqualityNode(Node left, Node right, boolean negate) {
+            super(ColumnType.BOOLEAN);
+            this.left = left;
+            this.right = right;
+            this.negate = negate;
+        }
+
+        @Override
+        void run(int offset, int length) {
+            left.run(offset, length);
+            right.run(offset, length);
+
+            if (left.type != right.type) {
+                // Numbers, booleans and strings/null never compare equal.
+                Arrays.fill(booleans, 0, length, negate);
+                return;
+            }
+
+            switch (left.type) {
+                case NUMBER -> {
+                    // Same comparison Double.equals makes.
+                    double[] a = left.numbers;
+                    double[] b = right.numbers;
+                    for (int i = 0; i < length; i++) {
+                        booleans[i] = (Double.doubleToLongBits(a[i]) == Double.doubleToLongBits(b[i])) != negate;
+                    }
+                }
+                case BOOLEAN -> {
+                    boolean[] a = left.booleans;
+                    boolean[] b = right.booleans;
+                    for (int i = 0; i < length; i++) booleans[i] = (a[i] == b[i]) != negate;
+                }
+                case OBJECT -> {
+                    Object[] a = left.objects;
+                    Object[] b = right.objects;
+                    for (int i = 0; i < length; i++) booleans[i] = Values.isEqual(a[i], b[i]) != negate;
+                }
+            }
+        }
+    }
+
+    // String concatenation, or PLUS on operands only known per row.
+    private static final class ConcatNode extends Node {
+        private final Node left;
+        private final Node right;
+        private final Token operator;
+
+        ConcatNode(Node left, Token operator, Node right) {
+            super(ColumnType.OBJECT);
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        void run(int offset, int length) {
+            left.run(offset, length);
+            right.run(offset, length);
+            for (int i = 0; i < length; i++) {
+                Object a = left.get(i);
+                Object b = right.get(i);
+                if (!Values.isString(a) && !Values.isString(b)) {
+                    throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+                }
+                objects[i] = Values.concat(a, b);
+            }
+        }
+    }
+
+    // Stands in for an operation whose operand types can never succeed, so
+    // evaluating any row raises the same error the Interpreter would.
+    private static final class ErrorNode extends Node {
+        private final Node[] operands;
+        private final RuntimeError error;
+
+        ErrorNode(RuntimeError error, Node... operands) {
+            super(ColumnType.OBJECT);
+            this.error = error;
+            this.operands = operands;
+        }
+
+        @Override
+        void run(int offset, int length) {
+            // Operands first, so their errors win as they would in the Interpreter.
+            for (Node operand : operands) operand.run(offset, length);
+            if (length > 0) throw new RuntimeError(error.line, error.getMessage());
+        }
+    }
+
+    private class Planner implements Expression.Visitor<Node> {
+
+        @Override
+        public Node visitBinaryExpr(BinaryExpr expr) {
+            Node left = expr.left.accept(this);
+            Node right = expr.right.accept(this);
+            boolean numbers = left.type == ColumnType.NUMBER && right.type == ColumnType.NUMBER;
+            // Arithmetic with a double widens both operands in the
+            // Interpreter too, so only integer arithmetic is folded here.
+            boolean integers = left instanceof IntegerNode && right instanceof IntegerNode;
+
+            switch (expr.operator.type) {
+                case MINUS:
+                case SLASH:
+                case STAR:
+                    if (integers && expr.operator.type != TokenType.SLASH) return fold(left, expr.operator, right);
+                    if (numbers) return new ArithmeticNode(left, expr.operator, right);
+                    return new ErrorNode(new RuntimeError(expr.operator, "Operands must be numbers."), left, right);
+
+                case PLUS:
+                    if (integers) return fold(left, expr.operator, right);
+                    if (numbers) return new ArithmeticNode(left, expr.operator, right);
+                    if (left.type == ColumnType.OBJECT || right.type == ColumnType.OBJECT) {
+                        return new ConcatNode(left, expr.operator, right);
+                    }
+                    return new ErrorNode(new RuntimeError(expr.operator,
+                            "Operands must be two numbers or two strings."), left, right);
+
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    if (numbers) return new CompareNode(exact(left), expr.operator, exact(right));
+                    return new ErrorNode(new RuntimeError(expr.operator, "Operands must be numbers."), left, right);
+
+                case BANG_EQUAL:
+                    return new EqualityNode(exact(left), exact(right), true);
+                case EQUAL_EQUAL:
+                    return new EqualityNode(exact(left), exact(right), false);
+
+                default:
+                    throw new IllegalStateException("Unexpected binary operator " + expr.operator.type);
+            }
+        }
+
+        private Node fold(Node left, Token operator, Node right) {
+            long a = ((IntegerNode) left).value;
+            long b = ((IntegerNode) right).value;
+            return constant(switch (operator.type) {
+                case PLUS -> Numbers.add(a, b);
+                case MINUS -> Numbers.subtract(a, b);
+                case STAR -> Numbers.multiply(a, b);
+                default -> throw new IllegalStateException("Unexpected operator " + operator.type);
+            });
+        }
+
+        // Numbers compare and equal exactly in the Interpreter, so an
+        // operand that would be rounded cannot be planned.
+        private Node exact(Node operand) {
+            if (operand instanceof IntegerNode integer && !integer.exact()) throw NotColumnar.INSTANCE;
+            return operand;
+        }
+
+        // An integer past the long range comes back as a double.
+        private Node constant(Object number) {
+            return number instanceof Long integer ? new IntegerNode(integer) : new ConstantNode(ColumnType.NUMBER, number);
+        }
+
+        @Override
+        public Node visitGroupingExpr(GroupingExpr expr) {
+            return expr.expression.accept(this);
+        }
+
+        @Override
+        public Node visitLiteralExpr(LiteralExpr expr) {
+            Object value = expr.value;
+            if (value instanceof Double || value instanceof Long) return constant(value);
+            if (value instanceof Boolean) return new ConstantNode(ColumnType.BOOLEAN, value);
+            return new ConstantNode(ColumnType.OBJECT, value);
+        }
+
+        @Override
+        public Node visitUnaryExpr(UnaryExpr expr) {
+            Node right = expr.right.accept(this);
+
+            switch (expr.operator.type) {
+                case BANG:
+                    return new NotNode(right);
+                case MINUS:
+                    if (right instanceof IntegerNode integer) return constant(Numbers.negate(integer.value));
+                    if (right.type == ColumnType.NUMBER) return new NegateNode(right);
+                    return new ErrorNode(new RuntimeError(expr.operator, "Operand must be a number."), right);
+                default:
+                    throw new IllegalStateException("Unexpected unary operator " + expr.operator.type);
+            }
+        }
+
+        @Override
+        public Node visitVariableExpr(VariableExpr expr) {
+            Column column = columns.get(expr.identifier);
+            if (column == null) {
+                return new ErrorNode(new RuntimeError(expr.name, "Undefined variable '" + expr.identifier + "'."));
+            }
+            return new ColumnNode(column);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package in.rajat.rLang.enums;
+
+public enum ColumnType {
+    // double[] values.
+    NUMBER,
+
+    // boolean[] values.
+    BOOLEAN,
+
+    // Object[] values holding Strings or null.
+    OBJECT
+}
@@ -0,0 +1,15 @@
+package in.rajat.rLang.enums;
+
+public enum ExecutionMode {
+    // Walks the Expression tree with the Interpreter visitor.
+    INTERPRETER,
+
+    // Compiles to a bytecode Chunk and runs it on the stack VM.
+    VM,
+
+    // Runs a self-specializing node tree that rewrites itself by operand type.
+    SPECIALIZING,
+
+    // Interprets until a script gets hot, then compiles it to JVM bytecode.
+    JIT
+}
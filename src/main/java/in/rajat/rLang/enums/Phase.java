@@ -0,0 +1,16 @@
+package in.rajat.rLang.enums;
+
+public enum Phase {
+    // Source text to tokens. Only measured on its own for in-memory sources;
+    // streamed sources are scanned while they are parsed.
+    SCAN,
+
+    // Tokens to an Expression tree.
+    PARSE,
+
+    // Constant folding and simplification.
+    OPTIMIZE,
+
+    // Running a compiled script in the engine's execution mode.
+    EVALUATE
+}
@@ -6,6 +6,8 @@ public class BinaryExpr implements Expression {
     public final Expression left;
     public final Token operator;
     public final Expression right;
+    // Set by InterningFactory.
+    int memo = -1;
 
     public BinaryExpr(Expression left, Token operator, Expression right) {
         this.left = left;
@@ -13,6 +15,14 @@ public class BinaryExpr implements Expression {
         this.right = right;
     }
 
+    /**
+     * Slot under which the interpreter keeps this node's value for the rest
+     * of a run, or -1 if the node is not shared; see {@link InterningFactory}.
+     */
+    public int memo() {
+        return memo;
+    }
+
     @Override
     public <R> R accept(Expression.Visitor<R> visitor) {
         return visitor.visitBinaryExpr(this);
@@ -17,7 +17,8 @@ public interface Expression {
 //        R visitSuperExpr(Super expr);
 //        R visitThisExpr(This expr);
         R visitUnaryExpr(UnaryExpr expr);
-//        R visitVariableExpr(Variable expr);
+
+        R visitVariableExpr(VariableExpr expr);
     }
 
     <R> R accept(Visitor<R> visitor);
@@ -0,0 +1,34 @@
+package in.rajat.rLang.expressions;
+
+import in.rajat.rLang.models.Token;
+
+/**
+ * Builds the nodes of a tree. {@link #PLAIN} allocates a node for every
+ * call; {@link InterningFactory} hands back one node for identical subtrees.
+ */
+public class ExpressionFactory {
+    public static final ExpressionFactory PLAIN = new ExpressionFactory();
+
+    protected ExpressionFactory() {
+    }
+
+    public Expression literal(Object value) {
+        return new LiteralExpr(value);
+    }
+
+    public Expression variable(Token name) {
+        return new VariableExpr(name);
+    }
+
+    public Expression grouping(Expression expression) {
+        return new GroupingExpr(expression);
+    }
+
+    public Expression unary(Token operator, Expression right) {
+        return new UnaryExpr(operator, right);
+    }
+
+    public Expression binary(Expression left, Token operator, Expression right) {
+        return new BinaryExpr(left, operator, right);
+    }
+}
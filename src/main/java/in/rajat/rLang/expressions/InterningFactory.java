@@ -0,0 +1,159 @@
+package in.rajat.rLang.expressions;
+
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.models.Token;
+
+import java.util.Objects;
+
+/**
+ * Hash-consing factory: a subtree equal to one built before (same operators,
+ * same literal values, same variable names, and children that are already
+ * the same nodes) is returned as that earlier node, so a tree built through
+ * one factory is a DAG with every repeated subtree stored once.
+ * <p>
+ * Tokens are not part of the identity, so a shared node keeps the tokens,
+ * and lines, of its first occurrence. That is also the first one evaluated:
+ * every evaluator runs operands left to right, and a subtree fails the same
+ * way wherever it appears, so runtime errors still carry the line they
+ * would have in the unshared tree.
+ * <p>
+ * Unary and binary nodes that are handed out more than once get a memo
+ * slot ({@link BinaryExpr#memo()}), numbered from 0 per factory, which lets
+ * the interpreter evaluate them once per run. A factory is meant for
+ * building one tree and is not thread-safe.
+ */
+public final class InterningFactory extends ExpressionFactory {
+    // Open-addressed table of every node built, probed linearly. The nodes
+    // are their own keys, so a lookup allocates nothing.
+    private Expression[] table = new Expression[256];
+    private int size;
+    private int slots;
+    private int hits;
+
+    @Override
+    public Expression literal(Object value) {
+        int index = index(Objects.hashCode(value));
+        for (Expression node; (node = table[index]) != null; index = next(index)) {
+            // Double.equals tells 0.0 from -0.0, which print differently.
+            if (node instanceof LiteralExpr literal && Objects.equals(literal.value, value)) return hit(node);
+        }
+        return add(index, new LiteralExpr(value));
+    }
+
+    @Override
+    public Expression variable(Token name) {
+        VariableExpr created = new VariableExpr(name);
+        int index = index(variableHash(created.identifier));
+        for (Expression node; (node = table[index]) != null; index = next(index)) {
+            if (node instanceof VariableExpr variable && variable.identifier.equals(created.identifier)) return hit(node);
+        }
+        return add(index, created);
+    }
+
+    @Override
+    public Expression grouping(Expression expression) {
+        int index = index(groupingHash(expression));
+        for (Expression node; (node = table[index]) != null; index = next(index)) {
+            if (node instanceof GroupingExpr grouping && grouping.expression == expression) return hit(node);
+        }
+        return add(index, new GroupingExpr(expression));
+    }
+
+    @Override
+    public Expression unary(Token operator, Expression right) {
+        TokenType type = operator.type;
+        int index = index(unaryHash(type, right));
+        for (Expression node; (node = table[index]) != null; index = next(index)) {
+            if (node instanceof UnaryExpr unary && unary.right == right && unary.operator.type == type) {
+                if (unary.memo < 0) unary.memo = slots++;
+                return hit(node);
+            }
+        }
+        return add(index, new UnaryExpr(operator, right));
+    }
+
+    @Override
+    public Expression binary(Expression left, Token operator, Expression right) {
+        TokenType type = operator.type;
+        int index = index(binaryHash(left, type, right));
+        for (Expression node; (node = table[index]) != null; index = next(index)) {
+            if (node instanceof BinaryExpr binary && binary.left == left && binary.right == right && binary.operator.type == type) {
+                if (binary.memo < 0) binary.memo = slots++;
+                return hit(node);
+            }
+        }
+        return add(index, new BinaryExpr(left, operator, right));
+    }
+
+    /**
+     * Memo slots handed out so far; every slot is below this.
+     */
+    public int slots() {
+        return slots;
+    }
+
+    /**
+     * Nodes that were not allocated because an equal one already existed.
+     */
+    public int hits() {
+        return hits;
+    }
+
+    private int index(int hash) {
+        hash ^= hash >>> 16;
+        return (hash * 0x9E3779B9) >>> 1 & table.length - 1;
+    }
+
+    private int next(int index) {
+        return index + 1 & table.length - 1;
+    }
+
+    private Expression hit(Expression node) {
+        hits++;
+        return node;
+    }
+
+    // `index` is the empty slot the probe for `node` ended on.
+    private Expression add(int index, Expression node) {
+        table[index] = node;
+        if (++size * 2 > table.length) rehash();
+        return node;
+    }
+
+    private void rehash() {
+        Expression[] old = table;
+        table = new Expression[old.length * 2];
+        for (Expression node : old) {
+            if (node == null) continue;
+            int index = index(hash(node));
+            while (table[index] != null) index = next(index);
+            table[index] = node;
+        }
+    }
+
+    private static int hash(Expression node) {
+        if (node instanceof LiteralExpr literal) return Objects.hashCode(literal.value);
+        if (node instanceof VariableExpr variable) return variableHash(variable.identifier);
+        if (node instanceof GroupingExpr grouping) return groupingHash(grouping.expression);
+        if (node instanceof UnaryExpr unary) return unaryHash(unary.operator.type, unary.right);
+        BinaryExpr binary = (BinaryExpr) node;
+        return binaryHash(binary.left, binary.operator.type, binary.right);
+    }
+
+    // Children hash by identity, like they compare.
+    private static int variableHash(String identifier) {
+        return identifier.hashCode() * 31 + 1;
+    }
+
+    private static int groupingHash(Expression expression) {
+        return System.identityHashCode(expression) * 31 + 2;
+    }
+
+    private static int unaryHash(TokenType type, Expression right) {
+        return (System.identityHashCode(right) * 31 + type.ordinal()) * 31 + 3;
+    }
+
+    private static int binaryHash(Expression left, TokenType type, Expression right) {
+        return ((System.identityHashCode(left) * 31 + System.identityHashCode(right)) * 31 + type.ordinal()) * 31 + 4;
+    }
+}
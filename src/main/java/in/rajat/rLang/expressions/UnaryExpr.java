@@ -5,12 +5,22 @@ import in.rajat.rLang.models.Token;
 public class UnaryExpr implements Expression {
     public final Token operator;
     public final Expression right;
+    // Set by InterningFactory.
+    int memo = -1;
 
     public UnaryExpr(Token operator, Expression right) {
         this.operator = operator;
         this.right = right;
     }
 
+    /**
+     * Slot under which the interpreter keeps this node's value for the rest
+     * of a run, or -1 if the node is not shared; see {@link InterningFactory}.
+     */
+    public int memo() {
+        return memo;
+    }
+
     @Override
     public <R> R accept(Expression.Visitor<R> visitor) {
         return visitor.visitUnaryExpr(this);
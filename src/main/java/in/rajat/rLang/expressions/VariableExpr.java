@@ -0,0 +1,19 @@
+package in.rajat.rLang.expressions;
+
+import in.rajat.rLang.models.Token;
+
+public class VariableExpr implements Expression {
+    public final Token name;
+    // The lexeme, materialized once so lookups don't rebuild it.
+    public final String identifier;
+
+    public VariableExpr(Token name) {
+        this.name = name;
+        this.identifier = name.lexeme();
+    }
+
+    @Override
+    public <R> R accept(Expression.Visitor<R> visitor) {
+        return visitor.visitVariableExpr(this);
+    }
+}
@@ -0,0 +1,28 @@
+package in.rajat.rLang.jit;
+
+import java.util.Map;
+
+/**
+ * An expression compiled to a JVM class by {@link ExpressionJit}. Compiled
+ * code only handles the runs it was specialized for: evaluate() throws
+ * {@link Deoptimized} when a variable is bound to another kind of value,
+ * and ArithmeticException when integer arithmetic overflows instead of
+ * promoting it. The caller must then run the expression again in an
+ * evaluator that handles it.
+ */
+public interface CompiledExpression {
+    Object evaluate(Map<String, Object> bindings);
+
+    /**
+     * Thrown out of compiled code whose specialization does not fit the run.
+     * It is thrown on the slow path only, so it is shared and skips the
+     * stack trace.
+     */
+    final class Deoptimized extends RuntimeException {
+        static final Deoptimized INSTANCE = new Deoptimized();
+
+        private Deoptimized() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package in.rajat.rLang.jit;
+
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.expressions.*;
+import in.rajat.rLang.models.Token;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiles an Expression into a hidden class whose single
+ * {@link CompiledExpression#evaluate} method is straight-line JVM bytecode,
+ * so HotSpot sees ordinary Java code instead of a visitor walk.
+ * <p>
+ * Every subexpression is typed as a primitive double, long or boolean, or
+ * an Object. Numbers stay primitive while both sides are known to be
+ * numbers; values of unknown type (variables, string concatenation) go
+ * through {@link JitRuntime}, which checks them with the same messages the
+ * Interpreter uses.
+ * <p>
+ * Code is specialized on the kinds of the numbers bound when it is compiled:
+ * a variable bound to a Long or Double is loaded as a primitive, behind a
+ * guard that deoptimizes if a later run binds something else. Integer
+ * arithmetic is emitted as the {@code Math.*Exact} intrinsics: rather than
+ * promote an overflowing result to double, the generated code throws
+ * ArithmeticException. Either way the caller re-runs the expression in an
+ * evaluator that handles it (see {@link CompiledExpression}). Generated
+ * classes are cached by the structure of the expression and those kinds.
+ * <p>
+ * Each operator's instructions are tagged with its source line, so stack
+ * traces and profilers sampling compiled code (see {@link
+ * in.rajat.rLang.Profiler}) show the script's lines in frames of
+ * {@link #SOURCE_FILE}.
+ */
+public class ExpressionJit implements Opcodes {
+    private static final String CLASS_NAME = "in/rajat/rLang/jit/Compiled";
+    // The source file compiled classes claim, so their frames read as
+    // script lines rather than Java ones.
+    public static final String SOURCE_FILE = "script.rl";
+    private static final String COMPILED = "in/rajat/rLang/jit/CompiledExpression";
+    private static final String RUNTIME = "in/rajat/rLang/jit/JitRuntime";
+    private static final String NUMBERS = "in/rajat/rLang/Numbers";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String DOUBLE = "java/lang/Double";
+    private static final String LONG = "java/lang/Long";
+    private static final String MATH = "java/lang/Math";
+    private static final String BOOLEAN = "java/lang/Boolean";
+
+    // Static type of the value a subexpression leaves on the operand stack.
+    private enum Kind {DOUBLE, LONG, BOOLEAN, OBJECT}
+
+    private static final ExpressionJit shared = new ExpressionJit(Integer.getInteger("rlang.jit.cache.size", 256));
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, CompiledExpression> cache;
+
+    public ExpressionJit(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                return size() > ExpressionJit.this.maxEntries;
+            }
+        };
+    }
+
+    public static ExpressionJit shared() {
+        return shared;
+    }
+
+    /**
+     * Returns the compiled form of {@code expression}, or null if it cannot
+     * be compiled (e.g. it is too large for one JVM method).
+     */
+    public CompiledExpression compile(Expression expression) {
+        return compile(expression, Map.of());
+    }
+
+    /**
+     * Like {@link #compile(Expression)}, specialized for numbers bound the way
+     * they are in {@code bindings}.
+     */
+    public CompiledExpression compile(Expression expression, Map<String, Object> bindings) {
+        Map<String, Kind> kinds = new HashMap<>();
+        bindings.forEach((name, value) -> {
+            if (value instanceof Double) kinds.put(name, Kind.DOUBLE);
+            if (value instanceof Long) kinds.put(name, Kind.LONG);
+        });
+        String key = expression.accept(new StructureKey(kinds));
+        synchronized (cache) {
+            CompiledExpression compiled = cache.get(key);
+            if (compiled != null) return compiled;
+        }
+
+        CompiledExpression compiled = define(generate(expression, kinds));
+        if (compiled != null) {
+            synchronized (cache) {
+                cache.put(key, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    private static byte[] generate(Expression expression, Map<String, Kind> kinds) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        writer.visit(V17, ACC_FINAL | ACC_SUPER, CLASS_NAME, null, OBJECT, new String[]{COMPILED});
+        writer.visitSource(SOURCE_FILE, null);
+
+        MethodVisitor init = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC, "evaluate", "(Ljava/util/Map;)Ljava/lang/Object;", null, null);
+        method.visitCode();
+        Kind kind = expression.accept(new CodeGenerator(method, kinds));
+        if (kind == Kind.OBJECT) {
+            method.visitMethodInsn(INVOKESTATIC, RUNTIME, "result", "(Ljava/lang/Object;)Ljava/lang/Object;", false);
+        } else {
+            box(method, kind);
+        }
+        method.visitInsn(ARETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+        try {
+            return writer.toByteArray();
+        } catch (MethodTooLargeException e) {
+            return null;
+        }
+    }
+
+    private static CompiledExpression define(byte[] bytes) {
+        if (bytes == null) return null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (CompiledExpression) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not define compiled expression.", e);
+        }
+    }
+
+    private static void box(MethodVisitor method, Kind kind) {
+        switch (kind) {
+            case DOUBLE -> method.visitMethodInsn(INVOKESTATIC, DOUBLE, "valueOf", "(D)Ljava/lang/Double;", false);
+            case LONG -> method.visitMethodInsn(INVOKESTATIC, LONG, "valueOf", "(J)Ljava/lang/Long;", false);
+            case BOOLEAN -> method.visitMethodInsn(INVOKESTATIC, BOOLEAN, "valueOf", "(Z)Ljava/lang/Boolean;", false);
+            case OBJECT -> {
+            }
+        }
+    }
+
+    private static class CodeGenerator implements Expression.Visitor<Kind> {
+        // Slot 0 is `this`, slot 1 the bindings map.
+        private final MethodVisitor method;
+        private final KindOf kindOf;
+        // The line the last instructions were tagged with.
+        private int line = -1;
+
+        CodeGenerator(MethodVisitor method, Map<String, Kind> kinds) {
+            this.method = method;
+            this.kindOf = new KindOf(kinds);
+        }
+
+        @Override
+        public Kind visitLiteralExpr(LiteralExpr expr) {
+            Object value = expr.value;
+            if (value == null) {
+                method.visitInsn(ACONST_NULL);
+                return Kind.OBJECT;
+            }
+            if (value instanceof Boolean) {
+                method.visitInsn((boolean) value ? ICONST_1 : ICONST_0);
+                return Kind.BOOLEAN;
+            }
+            method.visitLdcInsn(value);
+            return value instanceof Double ? Kind.DOUBLE : value instanceof Long ? Kind.LONG : Kind.OBJECT;
+        }
+
+        @Override
+        public Kind visitGroupingExpr(GroupingExpr expr) {
+            return expr.expression.accept(this);
+        }
+
+        @Override
+        public Kind visitVariableExpr(VariableExpr expr) {
+            line(expr.name);
+            method.visitVarInsn(ALOAD, 1);
+            method.visitLdcInsn(expr.identifier);
+            pushInt(expr.name.line);
+            Kind kind = peekKind(expr);
+            switch (kind) {
+                case DOUBLE -> method.visitMethodInsn(INVOKESTATIC, RUNTIME, "doubleVariable",
+                        "(Ljava/util/Map;Ljava/lang/String;I)D", false);
+                case LONG -> method.visitMethodInsn(INVOKESTATIC, RUNTIME, "longVariable",
+                        "(Ljava/util/Map;Ljava/lang/String;I)J", false);
+                default -> method.visitMethodInsn(INVOKESTATIC, RUNTIME, "variable",
+                        "(Ljava/util/Map;Ljava/lang/String;I)Ljava/lang/Object;", false);
+            }
+            return kind;
+        }
+
+        @Override
+        public Kind visitUnaryExpr(UnaryExpr expr) {
+            Kind kind = expr.right.accept(this);
+            line(expr.operator);
+
+            switch (expr.operator.type) {
+                case MINUS:
+                    switch (kind) {
+                        case DOUBLE -> method.visitInsn(DNEG);
+                        case LONG -> method.visitMethodInsn(INVOKESTATIC, MATH, "negateExact", "(J)J", false);
+                        default -> {
+                            box(method, kind);
+                            pushInt(expr.operator.line);
+                            method.visitMethodInsn(INVOKESTATIC, RUNTIME, "negate", "(Ljava/lang/Object;I)Ljava/lang/Object;", false);
+                            return Kind.OBJECT;
+                        }
+                    }
+                    return kind;
+                case BANG:
+                    switch (kind) {
+                        // Numbers are always truthy.
+                        case DOUBLE, LONG -> {
+                            method.visitInsn(POP2);
+                            method.visitInsn(ICONST_1);
+                        }
+                        case OBJECT -> method.visitMethodInsn(INVOKESTATIC, RUNTIME, "isTruthy", "(Ljava/lang/Object;)Z", false);
+                        case BOOLEAN -> {
+                        }
+                    }
+                    negate();
+                    return Kind.BOOLEAN;
+                default:
+                    throw new IllegalStateException("Unexpected unary operator " + expr.operator.type);
+            }
+        }
+
+        @Override
+        public Kind visitBinaryExpr(BinaryExpr expr) {
+            Token operator = expr.operator;
+            switch (operator.type) {
+                case EQUAL_EQUAL:
+                    equality(expr);
+                    return Kind.BOOLEAN;
+                case BANG_EQUAL:
+                    equality(expr);
+                    negate();
+                    return Kind.BOOLEAN;
+            }
+
+            Kind left = peekKind(expr.left);
+            Kind right = peekKind(expr.right);
+            if (!isNumber(left) || !isNumber(right)) return generic(expr);
+            if (left != right && isComparison(operator.type)) return mixedComparison(expr, left);
+
+            // Both operands are primitive numbers: longs stay longs unless
+            // the operator divides or the other side is a double.
+            Kind kind = left == Kind.LONG && right == Kind.LONG && operator.type != TokenType.SLASH
+                    ? Kind.LONG : Kind.DOUBLE;
+            operand(expr.left, kind);
+            operand(expr.right, kind);
+            line(operator);
+            boolean integers = kind == Kind.LONG;
+            switch (operator.type) {
+                case PLUS -> arithmetic(integers, "addExact", DADD);
+                case MINUS -> arithmetic(integers, "subtractExact", DSUB);
+                case STAR -> arithmetic(integers, "multiplyExact", DMUL);
+                case SLASH -> method.visitInsn(DDIV);
+                // Same NaN handling javac emits for the Java operators.
+                case GREATER -> compare(integers ? LCMP : DCMPL, IFLE);
+                case GREATER_EQUAL -> compare(integers ? LCMP : DCMPL, IFLT);
+                case LESS -> compare(integers ? LCMP : DCMPG, IFGE);
+                case LESS_EQUAL -> compare(integers ? LCMP : DCMPG, IFGT);
+                default -> throw new IllegalStateException("Unexpected binary operator " + operator.type);
+            }
+            return switch (operator.type) {
+                case PLUS, MINUS, STAR, SLASH -> kind;
+                default -> Kind.BOOLEAN;
+            };
+        }
+
+        // A long and a double compare exactly, which neither LCMP nor DCMP
+        // after widening the long does.
+        private Kind mixedComparison(BinaryExpr expr, Kind left) {
+            expr.left.accept(this);
+            expr.right.accept(this);
+            line(expr.operator);
+            String name = switch (expr.operator.type) {
+                case GREATER -> "greater";
+                case GREATER_EQUAL -> "greaterEqual";
+                case LESS -> "less";
+                default -> "lessEqual";
+            };
+            method.visitMethodInsn(INVOKESTATIC, NUMBERS, name, left == Kind.LONG ? "(JD)Z" : "(DJ)Z", false);
+            return Kind.BOOLEAN;
+        }
+
+        private static boolean isComparison(TokenType type) {
+            return type == TokenType.GREATER || type == TokenType.GREATER_EQUAL
+                    || type == TokenType.LESS || type == TokenType.LESS_EQUAL;
+        }
+
+        // Emits a number operand converted to `kind`.
+        private void operand(Expression expr, Kind kind) {
+            if (expr.accept(this) == Kind.LONG && kind == Kind.DOUBLE) method.visitInsn(L2D);
+        }
+
+        private void arithmetic(boolean integers, String exact, int doubleInsn) {
+            if (integers) {
+                method.visitMethodInsn(INVOKESTATIC, MATH, exact, "(JJ)J", false);
+            } else {
+                method.visitInsn(doubleInsn);
+            }
+        }
+
+        // An operator with an operand of unknown type: both sides boxed and
+        // handed to the runtime, which checks them once both have been
+        // evaluated, the order the Interpreter reports errors in.
+        private Kind generic(BinaryExpr expr) {
+            box(method, expr.left.accept(this));
+            box(method, expr.right.accept(this));
+            line(expr.operator);
+            pushInt(expr.operator.line);
+            String name = switch (expr.operator.type) {
+                case PLUS -> "plus";
+                case MINUS -> "subtract";
+                case STAR -> "multiply";
+                case SLASH -> "divide";
+                case GREATER -> "greater";
+                case GREATER_EQUAL -> "greaterEqual";
+                case LESS -> "less";
+                case LESS_EQUAL -> "lessEqual";
+                default -> throw new IllegalStateException("Unexpected binary operator " + expr.operator.type);
+            };
+            return switch (expr.operator.type) {
+                case PLUS, MINUS, STAR, SLASH -> {
+                    method.visitMethodInsn(INVOKESTATIC, RUNTIME, name,
+                            "(Ljava/lang/Object;Ljava/lang/Object;I)Ljava/lang/Object;", false);
+                    yield Kind.OBJECT;
+                }
+                default -> {
+                    method.visitMethodInsn(INVOKESTATIC, RUNTIME, name, "(Ljava/lang/Object;Ljava/lang/Object;I)Z", false);
+                    yield Kind.BOOLEAN;
+                }
+            };
+        }
+
+        private void equality(BinaryExpr expr) {
+            Kind left = peekKind(expr.left);
+            Kind right = peekKind(expr.right);
+
+            if (left == Kind.LONG && right == Kind.LONG) {
+                expr.left.accept(this);
+                expr.right.accept(this);
+                line(expr.operator);
+                compare(LCMP, IFNE);
+            } else if (left == Kind.DOUBLE && right == Kind.DOUBLE) {
+                expr.left.accept(this);
+                expr.right.accept(this);
+                line(expr.operator);
+                method.visitMethodInsn(INVOKESTATIC, RUNTIME, "isEqual", "(DD)Z", false);
+            } else if (isNumber(left) && isNumber(right)) {
+                // One of each: the long is compared exactly, not widened.
+                expr.left.accept(this);
+                expr.right.accept(this);
+                line(expr.operator);
+                if (left == Kind.DOUBLE) {
+                    // double, long -> long, double
+                    method.visitInsn(DUP2_X2);
+                    method.visitInsn(POP2);
+                }
+                method.visitMethodInsn(INVOKESTATIC, NUMBERS, "isEqual", "(JD)Z", false);
+            } else if (left == Kind.BOOLEAN && right == Kind.BOOLEAN) {
+                expr.left.accept(this);
+                expr.right.accept(this);
+                line(expr.operator);
+                method.visitInsn(IXOR);
+                negate();
+            } else {
+                box(method, expr.left.accept(this));
+                box(method, expr.right.accept(this));
+                line(expr.operator);
+                method.visitMethodInsn(INVOKESTATIC, RUNTIME, "isEqual", "(Ljava/lang/Object;Ljava/lang/Object;)Z", false);
+            }
+        }
+
+        private void compare(int compareInsn, int jumpIfFalse) {
+            Label isFalse = new Label();
+            Label end = new Label();
+            method.visitInsn(compareInsn);
+            method.visitJumpInsn(jumpIfFalse, isFalse);
+            method.visitInsn(ICONST_1);
+            method.visitJumpInsn(GOTO, end);
+            method.visitLabel(isFalse);
+            method.visitInsn(ICONST_0);
+            method.visitLabel(end);
+        }
+
+        // Attributes the instructions that follow to the line of `token`.
+        private void line(Token token) {
+            if (token.line == line) return;
+            line = token.line;
+            Label start = new Label();
+            method.visitLabel(start);
+            method.visitLineNumber(line, start);
+        }
+
+        private void negate() {
+            method.visitInsn(ICONST_1);
+            method.visitInsn(IXOR);
+        }
+
+        private static boolean isNumber(Kind kind) {
+            return kind == Kind.DOUBLE || kind == Kind.LONG;
+        }
+
+        private void pushInt(int value) {
+            method.visitLdcInsn(value);
+        }
+
+        // The kind an expression will produce, without emitting anything.
+        private Kind peekKind(Expression expr) {
+            return expr.accept(kindOf);
+        }
+    }
+
+    private static class KindOf implements Expression.Visitor<Kind> {
+        private final Map<String, Kind> kinds;
+
+        KindOf(Map<String, Kind> kinds) {
+            this.kinds = kinds;
+        }
+
+        @Override
+        public Kind visitLiteralExpr(LiteralExpr expr) {
+            if (expr.value instanceof Double) return Kind.DOUBLE;
+            if (expr.value instanceof Long) return Kind.LONG;
+            if (expr.value instanceof Boolean) return Kind.BOOLEAN;
+            return Kind.OBJECT;
+        }
+
+        @Override
+        public Kind visitGroupingExpr(GroupingExpr expr) {
+            return expr.expression.accept(this);
+        }
+
+        @Override
+        public Kind visitVariableExpr(VariableExpr expr) {
+            return kinds.getOrDefault(expr.identifier, Kind.OBJECT);
+        }
+
+        @Override
+        public Kind visitUnaryExpr(UnaryExpr expr) {
+            if (expr.operator.type == TokenType.BANG) return Kind.BOOLEAN;
+            Kind operand = expr.right.accept(this);
+            return operand == Kind.DOUBLE || operand == Kind.LONG ? operand : Kind.OBJECT;
+        }
+
+        @Override
+        public Kind visitBinaryExpr(BinaryExpr expr) {
+            switch (expr.operator.type) {
+                case PLUS, MINUS, STAR, SLASH:
+                    break;
+                default:
+                    return Kind.BOOLEAN;
+            }
+            Kind left = expr.left.accept(this);
+            Kind right = expr.right.accept(this);
+            if (!CodeGenerator.isNumber(left) || !CodeGenerator.isNumber(right)) return Kind.OBJECT;
+            return left == Kind.LONG && right == Kind.LONG && expr.operator.type != TokenType.SLASH
+                    ? Kind.LONG : Kind.DOUBLE;
+        }
+    }
+
+    // Cache key describing the shape of an expression, including operator
+    // lines since they end up in runtime error messages, and the kinds the
+    // variables were specialized for.
+    private static class StructureKey implements Expression.Visitor<String> {
+        private final Map<String, Kind> kinds;
+
+        StructureKey(Map<String, Kind> kinds) {
+            this.kinds = kinds;
+        }
+
+        @Override
+        public String visitBinaryExpr(BinaryExpr expr) {
+            return "(" + expr.operator.type + "@" + expr.operator.line + " "
+                    + expr.left.accept(this) + " " + expr.right.accept(this) + ")";
+        }
+
+        @Override
+        public String visitGroupingExpr(GroupingExpr expr) {
+            return expr.expression.accept(this);
+        }
+
+        @Override
+        public String visitLiteralExpr(LiteralExpr expr) {
+            Object value = expr.value;
+            if (value instanceof String) return "\"" + ((String) value).replace("\"", "\\\"") + "\"";
+            return String.valueOf(value);
+        }
+
+        @Override
+        public String visitUnaryExpr(UnaryExpr expr) {
+            return "(" + expr.operator.type + "@" + expr.operator.line + " " + expr.right.accept(this) + ")";
+        }
+
+        @Override
+        public String visitVariableExpr(VariableExpr expr) {
+            return expr.identifier + "@" + expr.name.line + ":" + kinds.getOrDefault(expr.identifier, Kind.OBJECT);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package in.rajat.rLang.jit;
+
+import in.rajat.rLang.Numbers;
+import in.rajat.rLang.RuntimeError;
+import in.rajat.rLang.Values;
+
+import java.util.Map;
+
+/**
+ * Slow-path helpers called from generated code. Everything on the fast
+ * path (double and long arithmetic and comparisons) is emitted inline.
+ */
+public final class JitRuntime {
+
+    private JitRuntime() {
+    }
+
+    public static Object variable(Map<String, Object> bindings, String name, int line) {
+        Object value = bindings.get(name);
+        if (value == null && !bindings.containsKey(name)) {
+            throw new RuntimeError(line, "Undefined variable '" + name + "'.");
+        }
+        return value;
+    }
+
+    // A variable the code was specialized for as a double.
+    public static double doubleVariable(Map<String, Object> bindings, String name, int line) {
+        if (variable(bindings, name, line) instanceof Double value) return value;
+        throw CompiledExpression.Deoptimized.INSTANCE;
+    }
+
+    // A variable the code was specialized for as a long.
+    public static long longVariable(Map<String, Object> bindings, String name, int line) {
+        if (variable(bindings, name, line) instanceof Long value) return value;
+        throw CompiledExpression.Deoptimized.INSTANCE;
+    }
+
+    public static Object negate(Object operand, int line) {
+        if (Numbers.isNumber(operand)) return Numbers.negate(operand);
+        throw new RuntimeError(line, "Operand must be a number.");
+    }
+
+    public static Object plus(Object left, Object right, int line) {
+        if (Numbers.isNumber(left) && Numbers.isNumber(right)) {
+            return Numbers.add(left, right);
+        }
+        if (Values.isString(left) || Values.isString(right)) {
+            return Values.concat(left, right);
+        }
+        throw new RuntimeError(line, "Operands must be two numbers or two strings.");
+    }
+
+    public static Object subtract(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return Numbers.subtract(left, right);
+    }
+
+    public static Object multiply(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return Numbers.multiply(left, right);
+    }
+
+    public static Object divide(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return Numbers.divide(left, right);
+    }
+
+    public static boolean greater(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return Numbers.greater(left, right);
+    }
+
+    public static boolean greaterEqual(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return Numbers.greaterEqual(left, right);
+    }
+
+    public static boolean less(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return Numbers.less(left, right);
+    }
+
+    public static boolean lessEqual(Object left, Object right, int line) {
+        checkNumbers(left, right, line);
+        return Numbers.lessEqual(left, right);
+    }
+
+    private static void checkNumbers(Object left, Object right, int line) {
+        if (Numbers.isNumber(left) && Numbers.isNumber(right)) return;
+        throw new RuntimeError(line, "Operands must be numbers.");
+    }
+
+    // What evaluate() returns for an object result.
+    public static Object result(Object value) {
+        return Values.flatten(value);
+    }
+
+    public static boolean isTruthy(Object value) {
+        return Values.isTruthy(value);
+    }
+
+    public static boolean isEqual(Object left, Object right) {
+        return Values.isEqual(left, right);
+    }
+
+    // Same comparison Double.equals makes.
+    public static boolean isEqual(double left, double right) {
+        return Numbers.isEqual(left, right);
+    }
+}
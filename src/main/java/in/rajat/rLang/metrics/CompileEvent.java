@@ -0,0 +1,22 @@
+package in.rajat.rLang.metrics;
+
+import jdk.jfr.*;
+
+@Name("in.rajat.rLang.Compile")
+@Label("rLang Compile")
+@Description("RLangEngine.compile of a source string, including the cache lookup; the scan, parse and optimize events nest inside it")
+@Category("rLang")
+@StackTrace(false)
+// Runs on every evaluation, so by default only slow ones are recorded;
+// lower the threshold in the recording settings to see all of them.
+@Threshold("1 ms")
+public class CompileEvent extends Event {
+    @Label("Source Characters")
+    public long characters;
+
+    @Label("Cache Hit")
+    public boolean cacheHit;
+
+    @Label("Failed")
+    public boolean failed;
+}
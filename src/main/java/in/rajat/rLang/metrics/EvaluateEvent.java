@@ -0,0 +1,27 @@
+package in.rajat.rLang.metrics;
+
+import jdk.jfr.*;
+
+@Name("in.rajat.rLang.Evaluate")
+@Label("rLang Evaluate")
+@Description("RLangEngine.execute of a compiled script")
+@Category("rLang")
+@StackTrace(false)
+// Runs on every evaluation, so by default only slow ones are recorded;
+// lower the threshold in the recording settings to see all of them.
+@Threshold("1 ms")
+public class EvaluateEvent extends Event {
+    @Label("Execution Mode")
+    public String mode;
+
+    @Label("Deep")
+    @Description("Run on the iterative interpreter because the tree is too deep to walk recursively")
+    public boolean deep;
+
+    @Label("Failed")
+    public boolean failed;
+
+    @Label("Fuel Used")
+    @Description("Operators applied by a metered evaluation, -1 if it was not metered")
+    public long fuel;
+}
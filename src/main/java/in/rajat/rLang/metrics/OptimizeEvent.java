@@ -0,0 +1,13 @@
+package in.rajat.rLang.metrics;
+
+import jdk.jfr.*;
+
+@Name("in.rajat.rLang.Optimize")
+@Label("rLang Optimize")
+@Category("rLang")
+@StackTrace(false)
+public class OptimizeEvent extends Event {
+    @Label("Nodes")
+    @Description("Nodes in the tree before optimizing")
+    public int nodes;
+}
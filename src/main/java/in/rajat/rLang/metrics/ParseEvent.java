@@ -0,0 +1,25 @@
+package in.rajat.rLang.metrics;
+
+import jdk.jfr.*;
+
+@Name("in.rajat.rLang.Parse")
+@Label("rLang Parse")
+@Category("rLang")
+@StackTrace(false)
+public class ParseEvent extends Event {
+    @Label("Tokens")
+    public int tokens;
+
+    @Label("Nodes")
+    public int nodes;
+
+    @Label("Depth")
+    public int depth;
+
+    @Label("Streamed")
+    @Description("The source was scanned while parsing, so this event includes the scan")
+    public boolean streamed;
+
+    @Label("Failed")
+    public boolean failed;
+}
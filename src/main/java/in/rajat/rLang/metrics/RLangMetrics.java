@@ -0,0 +1,193 @@
+package in.rajat.rLang.metrics;
+
+import in.rajat.rLang.ExpressionCache;
+import in.rajat.rLang.enums.Phase;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process counters for one RLangEngine: per-phase latency, the amount of
+ * source, tokens and nodes processed, error counts and the engine's cache
+ * statistics. All counters are striped, so recording from many threads does
+ * not contend.
+ * <p>
+ * When disabled nothing is timed or counted; {@link #start()} returns 0
+ * without reading the clock and the record methods return immediately.
+ */
+public final class RLangMetrics {
+
+    public static final class PhaseStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long totalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long maxNanos() {
+            return maxNanos.get();
+        }
+
+        public double meanNanos() {
+            long count = count();
+            return count == 0 ? 0 : (double) totalNanos() / count;
+        }
+    }
+
+    private final boolean enabled;
+    private final ExpressionCache cache;
+    private final Map<Phase, PhaseStats> phases = new EnumMap<>(Phase.class);
+
+    private final LongAdder characters = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder syntaxErrors = new LongAdder();
+    private final LongAdder runtimeErrors = new LongAdder();
+    private final LongAdder fuelUsed = new LongAdder();
+    private final LongAdder outOfFuel = new LongAdder();
+
+    public RLangMetrics(boolean enabled, ExpressionCache cache) {
+        this.enabled = enabled;
+        this.cache = cache;
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new PhaseStats());
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Start time for a phase, to be passed back to one of the record methods.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void scanned(long start, long characters, int tokens) {
+        if (!enabled) return;
+        phases.get(Phase.SCAN).record(System.nanoTime() - start);
+        this.characters.add(characters);
+        this.tokens.add(tokens);
+    }
+
+    /**
+     * @param characters source length, when the source was streamed and so
+     *                   scanned during the parse; 0 otherwise
+     */
+    public void parsed(long start, long characters, int tokens, int nodes, boolean failed) {
+        if (!enabled) return;
+        phases.get(Phase.PARSE).record(System.nanoTime() - start);
+        if (characters > 0) {
+            this.characters.add(characters);
+            this.tokens.add(tokens);
+        }
+        this.nodes.add(nodes);
+        if (failed) syntaxErrors.increment();
+    }
+
+    public void optimized(long start) {
+        if (!enabled) return;
+        phases.get(Phase.OPTIMIZE).record(System.nanoTime() - start);
+    }
+
+    public void evaluated(long start, boolean failed) {
+        if (!enabled) return;
+        phases.get(Phase.EVALUATE).record(System.nanoTime() - start);
+        if (failed) runtimeErrors.increment();
+    }
+
+    /**
+     * A metered evaluation applied {@code used} operators, and was stopped
+     * if {@code exhausted}.
+     */
+    public void fueled(long used, boolean exhausted) {
+        if (!enabled) return;
+        fuelUsed.add(used);
+        if (exhausted) outOfFuel.increment();
+    }
+
+    public PhaseStats phase(Phase phase) {
+        return phases.get(phase);
+    }
+
+    public long characters() {
+        return characters.sum();
+    }
+
+    public long tokens() {
+        return tokens.sum();
+    }
+
+    public long nodes() {
+        return nodes.sum();
+    }
+
+    public long syntaxErrors() {
+        return syntaxErrors.sum();
+    }
+
+    public long runtimeErrors() {
+        return runtimeErrors.sum();
+    }
+
+    public long fuelUsed() {
+        return fuelUsed.sum();
+    }
+
+    public long outOfFuel() {
+        return outOfFuel.sum();
+    }
+
+    public long cacheHits() {
+        return cache.hits();
+    }
+
+    public long cacheMisses() {
+        return cache.misses();
+    }
+
+    public long cacheEvictions() {
+        return cache.evictions();
+    }
+
+    public int cacheSize() {
+        return cache.size();
+    }
+
+    public int cacheCapacity() {
+        return cache.capacity();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            PhaseStats stats = phases.get(phase);
+            out.append(String.format("%-8s count=%d mean=%.1fus max=%.1fus total=%.1fms%n",
+                    phase.name().toLowerCase(), stats.count(), stats.meanNanos() / 1e3,
+                    stats.maxNanos() / 1e3, stats.totalNanos() / 1e6));
+        }
+        out.append(String.format("source=%d chars tokens=%d nodes=%d syntaxErrors=%d runtimeErrors=%d%n",
+                characters(), tokens(), nodes(), syntaxErrors(), runtimeErrors()));
+        out.append(String.format("fuel used=%d outOfFuel=%d%n", fuelUsed(), outOfFuel()));
+        out.append(String.format("cache hits=%d misses=%d evictions=%d size=%d/%d",
+                cacheHits(), cacheMisses(), cacheEvictions(), cacheSize(), cacheCapacity()));
+        return out.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package in.rajat.rLang.metrics;
+
+import jdk.jfr.*;
+
+@Name("in.rajat.rLang.Scan")
+@Label("rLang Scan")
+@Category("rLang")
+@StackTrace(false)
+public class ScanEvent extends Event {
+    @Label("Source Characters")
+    public long characters;
+
+    @Label("Tokens")
+    public int tokens;
+}
@@ -2,20 +2,46 @@ package in.rajat.rLang.models;
 
 import in.rajat.rLang.enums.TokenType;
 
+/**
+ * A token is a span over the scanned source rather than a copy of it. The
+ * lexeme text is only materialized when {@link #lexeme()} is called, which
+ * in practice means error messages and debugging output.
+ */
 public class Token {
     public final TokenType type;
-    public final String lexeme;
     public final Object literal;
     public final int line;
 
+    // Offset and length of the lexeme inside `source`.
+    public final int start;
+    public final int length;
+    private final CharSequence source;
+
     public Token(TokenType type, String lexeme, Object literal, int line) {
+        this(type, lexeme, 0, lexeme.length(), literal, line);
+    }
+
+    public Token(TokenType type, CharSequence source, int start, int length, Object literal, int line) {
         this.type = type;
-        this.lexeme = lexeme;
+        this.source = source;
+        this.start = start;
+        this.length = length;
         this.literal = literal;
         this.line = line;
     }
 
+    /**
+     * The same token on another line, for text that moved after an edit.
+     */
+    public Token atLine(int line) {
+        return new Token(type, source, start, length, literal, line);
+    }
+
+    public String lexeme() {
+        return source.subSequence(start, start + length).toString();
+    }
+
     public String toString() {
-        return type + " " + lexeme + " " + literal;
+        return type + " " + lexeme() + " " + literal;
     }
 }
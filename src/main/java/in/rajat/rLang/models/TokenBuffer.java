@@ -0,0 +1,120 @@
+package in.rajat.rLang.models;
+
+import in.rajat.rLang.enums.TokenType;
+
+import java.util.Arrays;
+
+/**
+ * Compact, struct-of-arrays token list. Each token costs a type ordinal and
+ * three ints (start, length, line); literal values live in a sparse side
+ * table since only NUMBER and STRING tokens carry one. Token objects are
+ * only materialized on request, e.g. for operators stored in the AST.
+ */
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private byte[] types = new byte[64];
+    private int[] starts = new int[64];
+    private int[] lengths = new int[64];
+    private int[] lines = new int[64];
+    private int size = 0;
+
+    // Sorted token indexes that have a literal, and the literal values.
+    private int[] literalTokens = new int[16];
+    private Object[] literalValues = new Object[16];
+    private int literalCount = 0;
+    // The parser reads literals in order, so remember where the last lookup
+    // landed. Only ever used after checking it, so a stale value is harmless.
+    private int literalHint = 0;
+
+    // Source each run of tokens points into, keyed by its first token index.
+    private CharSequence[] sources = new CharSequence[1];
+    private int[] sourceFirstToken = new int[1];
+    private int sourceCount = 0;
+
+    public void add(TokenType type, CharSequence source, int start, int length, Object literal, int line) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+
+        if (sourceCount == 0 || sources[sourceCount - 1] != source) {
+            if (sourceCount == sources.length) {
+                sources = Arrays.copyOf(sources, sourceCount * 2);
+                sourceFirstToken = Arrays.copyOf(sourceFirstToken, sourceCount * 2);
+            }
+            sources[sourceCount] = source;
+            sourceFirstToken[sourceCount] = size;
+            sourceCount++;
+        }
+
+        if (literal != null) {
+            if (literalCount == literalTokens.length) {
+                literalTokens = Arrays.copyOf(literalTokens, literalCount * 2);
+                literalValues = Arrays.copyOf(literalValues, literalCount * 2);
+            }
+            literalTokens[literalCount] = size;
+            literalValues[literalCount] = literal;
+            literalCount++;
+        }
+
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public Object literal(int index) {
+        TokenType type = type(index);
+        if (type != TokenType.NUMBER && type != TokenType.STRING) return null;
+
+        int hint = literalHint;
+        int slot;
+        if (hint < literalCount && literalTokens[hint] == index) {
+            slot = hint;
+        } else if (hint + 1 < literalCount && literalTokens[hint + 1] == index) {
+            slot = hint + 1;
+        } else {
+            slot = Arrays.binarySearch(literalTokens, 0, literalCount, index);
+            if (slot < 0) return null;
+        }
+        literalHint = slot;
+        return literalValues[slot];
+    }
+
+    public Token token(int index) {
+        return new Token(type(index), source(index), starts[index], lengths[index], literal(index), lines[index]);
+    }
+
+    private CharSequence source(int index) {
+        if (sourceCount == 1) return sources[0];
+
+        int slot = Arrays.binarySearch(sourceFirstToken, 0, sourceCount, index);
+        if (slot < 0) slot = -slot - 2;
+        return sources[slot];
+    }
+}
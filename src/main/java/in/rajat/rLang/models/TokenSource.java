@@ -0,0 +1,9 @@
+package in.rajat.rLang.models;
+
+/**
+ * Pull-based supply of tokens for the parser. Once the input is exhausted
+ * every call returns the EOF token.
+ */
+public interface TokenSource {
+    Token nextToken();
+}
@@ -0,0 +1,702 @@
+package in.rajat.rLang.nodes;
+
+import in.rajat.rLang.Numbers;
+import in.rajat.rLang.Values;
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.models.Token;
+
+import java.util.Map;
+
+final class BinaryNodes {
+
+    private BinaryNodes() {
+    }
+
+    abstract static class BinaryNode extends Node {
+        final Token operator;
+        volatile Node left;
+        volatile Node right;
+
+        BinaryNode(Token operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        abstract String state();
+
+        @Override
+        String describe() {
+            return "'" + operator.lexeme() + "' " + state() + " line " + operator.line;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{left, right};
+        }
+
+        @Override
+        boolean replaceChild(Node oldChild, Node newChild) {
+            if (left == oldChild) {
+                left = newChild;
+                return true;
+            }
+            if (right == oldChild) {
+                right = newChild;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        void handOver(Node replacement) {
+            BinaryNode node = (BinaryNode) replacement;
+            node.left = left;
+            node.right = right;
+        }
+
+        // The left operand had an unexpected type: finish evaluating with the
+        // generic node this one is replaced by.
+        final Object generalize(Map<String, Object> frame, Object leftValue) {
+            Object rightValue = right.execute(frame);
+            return replace(new GenericBinaryNode(operator, left, right)).compute(leftValue, rightValue);
+        }
+
+        // The right operand had an unexpected type. A left operand that
+        // widens a long is run again for its exact value; expressions have
+        // no side effects.
+        final Object generalize(Map<String, Object> frame, double leftValue, Object rightValue) {
+            Object exact = left.widens() ? left.execute(frame) : (Object) leftValue;
+            return replace(new GenericBinaryNode(operator, left, right)).compute(exact, rightValue);
+        }
+
+        // The right operand had an unexpected type, or an integer result
+        // overflowed; the generic node computes that one in double.
+        final Object generalize(long leftValue, Object rightValue) {
+            return replace(new GenericBinaryNode(operator, left, right)).compute(leftValue, rightValue);
+        }
+    }
+
+    static final class UninitializedBinaryNode extends BinaryNode {
+        UninitializedBinaryNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            Object leftValue = left.execute(frame);
+            Object rightValue = right.execute(frame);
+            Object result = Operations.binary(operator, leftValue, rightValue);
+            replace(specialize(leftValue, rightValue, result));
+            return result;
+        }
+
+        private BinaryNode specialize(Object leftValue, Object rightValue, Object result) {
+            boolean integers = leftValue instanceof Long && rightValue instanceof Long;
+            // A long node only ever returns longs, which a double parent can
+            // widen; one whose first result overflowed would break that.
+            if (integers && result instanceof Double && operator.type != TokenType.SLASH) {
+                return new GenericBinaryNode(operator, left, right);
+            }
+            boolean numbers = !integers && Numbers.isNumber(leftValue) && Numbers.isNumber(rightValue);
+            // A long widened to double may round, so only two doubles compare
+            // as doubles; the generic node compares a long and a double exactly.
+            boolean doubles = leftValue instanceof Double && rightValue instanceof Double;
+            boolean strings = Values.isString(leftValue) && Values.isString(rightValue);
+
+            return switch (operator.type) {
+                case PLUS -> numbers ? new DoubleAddNode(operator, left, right)
+                        : integers ? new LongAddNode(operator, left, right)
+                        : strings ? new ConcatNode(operator, left, right)
+                        : new GenericBinaryNode(operator, left, right);
+                case MINUS -> numbers ? new DoubleSubtractNode(operator, left, right)
+                        : integers ? new LongSubtractNode(operator, left, right)
+                        : new GenericBinaryNode(operator, left, right);
+                case STAR -> numbers ? new DoubleMultiplyNode(operator, left, right)
+                        : integers ? new LongMultiplyNode(operator, left, right)
+                        : new GenericBinaryNode(operator, left, right);
+                case SLASH -> numbers ? new DoubleDivideNode(operator, left, right)
+                        : integers ? new LongDivideNode(operator, left, right)
+                        : new GenericBinaryNode(operator, left, right);
+                case GREATER -> doubles ? new DoubleGreaterNode(operator, left, right)
+                        : integers ? new LongGreaterNode(operator, left, right)
+                        : new GenericBinaryNode(operator, left, right);
+                case GREATER_EQUAL -> doubles ? new DoubleGreaterEqualNode(operator, left, right)
+                        : integers ? new LongGreaterEqualNode(operator, left, right)
+                        : new GenericBinaryNode(operator, left, right);
+                case LESS -> doubles ? new DoubleLessNode(operator, left, right)
+                        : integers ? new LongLessNode(operator, left, right)
+                        : new GenericBinaryNode(operator, left, right);
+                case LESS_EQUAL -> doubles ? new DoubleLessEqualNode(operator, left, right)
+                        : integers ? new LongLessEqualNode(operator, left, right)
+                        : new GenericBinaryNode(operator, left, right);
+                default -> new GenericBinaryNode(operator, left, right);
+            };
+        }
+
+        @Override
+        String state() {
+            return "uninitialized";
+        }
+    }
+
+    // Each specialized operator extends a base for its kind that holds what
+    // the operators share. The fast path that reads the operands stays in
+    // the concrete node: C2 inlines a method into itself only one level
+    // deep, so a fast path shared by every operator would stop inlining at
+    // the first nested operator (IntegerBenchmark ran 3x slower that way).
+
+    // Arithmetic on two doubles.
+    abstract static class DoubleArithmeticNode extends BinaryNode {
+        DoubleArithmeticNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public final Object execute(Map<String, Object> frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        final String state() {
+            return "double";
+        }
+    }
+
+    static final class DoubleAddNode extends DoubleArithmeticNode {
+        DoubleAddNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public double executeDouble(Map<String, Object> frame) throws UnexpectedResultException {
+            double l;
+            try {
+                l = left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, e.result));
+            }
+            double r;
+            try {
+                r = right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, l, e.result));
+            }
+            return l + r;
+        }
+    }
+
+    static final class DoubleSubtractNode extends DoubleArithmeticNode {
+        DoubleSubtractNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public double executeDouble(Map<String, Object> frame) throws UnexpectedResultException {
+            double l;
+            try {
+                l = left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, e.result));
+            }
+            double r;
+            try {
+                r = right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, l, e.result));
+            }
+            return l - r;
+        }
+    }
+
+    static final class DoubleMultiplyNode extends DoubleArithmeticNode {
+        DoubleMultiplyNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public double executeDouble(Map<String, Object> frame) throws UnexpectedResultException {
+            double l;
+            try {
+                l = left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, e.result));
+            }
+            double r;
+            try {
+                r = right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, l, e.result));
+            }
+            return l * r;
+        }
+    }
+
+    static final class DoubleDivideNode extends DoubleArithmeticNode {
+        DoubleDivideNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public double executeDouble(Map<String, Object> frame) throws UnexpectedResultException {
+            double l;
+            try {
+                l = left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, e.result));
+            }
+            double r;
+            try {
+                r = right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, l, e.result));
+            }
+            return l / r;
+        }
+    }
+
+    // A comparison of two doubles.
+    abstract static class DoubleComparisonNode extends BinaryNode {
+        DoubleComparisonNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        final String state() {
+            return "double";
+        }
+    }
+
+    static final class DoubleGreaterNode extends DoubleComparisonNode {
+        DoubleGreaterNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            double l;
+            try {
+                l = left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, e.result);
+            }
+            double r;
+            try {
+                r = right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, l, e.result);
+            }
+            return l > r;
+        }
+    }
+
+    static final class DoubleGreaterEqualNode extends DoubleComparisonNode {
+        DoubleGreaterEqualNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            double l;
+            try {
+                l = left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, e.result);
+            }
+            double r;
+            try {
+                r = right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, l, e.result);
+            }
+            return l >= r;
+        }
+    }
+
+    static final class DoubleLessNode extends DoubleComparisonNode {
+        DoubleLessNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            double l;
+            try {
+                l = left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, e.result);
+            }
+            double r;
+            try {
+                r = right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, l, e.result);
+            }
+            return l < r;
+        }
+    }
+
+    static final class DoubleLessEqualNode extends DoubleComparisonNode {
+        DoubleLessEqualNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            double l;
+            try {
+                l = left.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, e.result);
+            }
+            double r;
+            try {
+                r = right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, l, e.result);
+            }
+            return l <= r;
+        }
+    }
+
+    // Exact arithmetic on two longs, widened for a double parent.
+    abstract static class LongArithmeticNode extends BinaryNode {
+        LongArithmeticNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public final Object execute(Map<String, Object> frame) {
+            try {
+                return executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        public final double executeDouble(Map<String, Object> frame) throws UnexpectedResultException {
+            return executeWidened(frame);
+        }
+
+        // The result does not fit in a long: the generic node this one is
+        // replaced by computes it in double.
+        final UnexpectedResultException overflowed(long l, long r) {
+            return new UnexpectedResultException(generalize(l, (Object) r));
+        }
+
+        @Override
+        final boolean widens() {
+            return true;
+        }
+
+        @Override
+        final String state() {
+            return "long";
+        }
+    }
+
+    static final class LongAddNode extends LongArithmeticNode {
+        LongAddNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public long executeLong(Map<String, Object> frame) throws UnexpectedResultException {
+            long l;
+            try {
+                l = left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, e.result));
+            }
+            long r;
+            try {
+                r = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(l, e.result));
+            }
+            if (Numbers.addOverflows(l, r)) throw overflowed(l, r);
+            return l + r;
+        }
+    }
+
+    static final class LongSubtractNode extends LongArithmeticNode {
+        LongSubtractNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public long executeLong(Map<String, Object> frame) throws UnexpectedResultException {
+            long l;
+            try {
+                l = left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, e.result));
+            }
+            long r;
+            try {
+                r = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(l, e.result));
+            }
+            if (Numbers.subtractOverflows(l, r)) throw overflowed(l, r);
+            return l - r;
+        }
+    }
+
+    static final class LongMultiplyNode extends LongArithmeticNode {
+        LongMultiplyNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public long executeLong(Map<String, Object> frame) throws UnexpectedResultException {
+            long l;
+            try {
+                l = left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, e.result));
+            }
+            long r;
+            try {
+                r = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(l, e.result));
+            }
+            if (Numbers.multiplyOverflows(l, r)) throw overflowed(l, r);
+            return l * r;
+        }
+    }
+
+    // Division is always in double, but integer operands are still read
+    // without boxing.
+    static final class LongDivideNode extends BinaryNode {
+        LongDivideNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        public double executeDouble(Map<String, Object> frame) throws UnexpectedResultException {
+            long l;
+            try {
+                l = left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(frame, e.result));
+            }
+            long r;
+            try {
+                r = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(l, e.result));
+            }
+            return (double) l / (double) r;
+        }
+
+        @Override
+        String state() {
+            return "long";
+        }
+    }
+
+    // A comparison of two longs.
+    abstract static class LongComparisonNode extends BinaryNode {
+        LongComparisonNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        final String state() {
+            return "long";
+        }
+    }
+
+    static final class LongGreaterNode extends LongComparisonNode {
+        LongGreaterNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            long l;
+            try {
+                l = left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, e.result);
+            }
+            long r;
+            try {
+                r = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(l, e.result);
+            }
+            return l > r;
+        }
+    }
+
+    static final class LongGreaterEqualNode extends LongComparisonNode {
+        LongGreaterEqualNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            long l;
+            try {
+                l = left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, e.result);
+            }
+            long r;
+            try {
+                r = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(l, e.result);
+            }
+            return l >= r;
+        }
+    }
+
+    static final class LongLessNode extends LongComparisonNode {
+        LongLessNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            long l;
+            try {
+                l = left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, e.result);
+            }
+            long r;
+            try {
+                r = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(l, e.result);
+            }
+            return l < r;
+        }
+    }
+
+    static final class LongLessEqualNode extends LongComparisonNode {
+        LongLessEqualNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            long l;
+            try {
+                l = left.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(frame, e.result);
+            }
+            long r;
+            try {
+                r = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return generalize(l, e.result);
+            }
+            return l <= r;
+        }
+    }
+
+    static final class ConcatNode extends BinaryNode {
+        ConcatNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            Object leftValue = left.execute(frame);
+            Object rightValue = right.execute(frame);
+            if (Values.isString(leftValue) && Values.isString(rightValue)) {
+                return Values.concat(leftValue, rightValue);
+            }
+            return replace(new GenericBinaryNode(operator, left, right)).compute(leftValue, rightValue);
+        }
+
+        @Override
+        String state() {
+            return "string-concat";
+        }
+    }
+
+    // A run of string concatenations, joined in one pass.
+    static final class ConcatChainNode extends Node {
+        final Token operator;
+        // Copied on write, so a replaced operand is published like any
+        // other child link.
+        volatile Node[] operands;
+
+        ConcatChainNode(Token operator, Node[] operands) {
+            this.operator = operator;
+            this.operands = operands;
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            StringBuilder out = new StringBuilder();
+            for (Node operand : operands) Values.append(out, operand.execute(frame));
+            return out.toString();
+        }
+
+        @Override
+        String describe() {
+            return "'" + operator.lexeme() + "' string-chain of " + operands.length + " line " + operator.line;
+        }
+
+        @Override
+        Node[] children() {
+            return operands.clone();
+        }
+
+        @Override
+        boolean replaceChild(Node oldChild, Node newChild) {
+            Node[] current = operands;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == oldChild) {
+                    Node[] next = current.clone();
+                    next[i] = newChild;
+                    operands = next;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class GenericBinaryNode extends BinaryNode {
+        GenericBinaryNode(Token operator, Node left, Node right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            return compute(left.execute(frame), right.execute(frame));
+        }
+
+        Object compute(Object leftValue, Object rightValue) {
+            return Operations.binary(operator, leftValue, rightValue);
+        }
+
+        @Override
+        String state() {
+            return "generic";
+        }
+    }
+}
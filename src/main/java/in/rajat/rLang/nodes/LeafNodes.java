@@ -0,0 +1,111 @@
+package in.rajat.rLang.nodes;
+
+import in.rajat.rLang.RuntimeError;
+import in.rajat.rLang.Values;
+import in.rajat.rLang.models.Token;
+
+import java.util.Map;
+
+final class LeafNodes {
+
+    private LeafNodes() {
+    }
+
+    static final class ObjectLiteralNode extends Node {
+        private final Object value;
+
+        ObjectLiteralNode(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            return value;
+        }
+
+        @Override
+        String describe() {
+            return "Literal " + (value instanceof String ? "\"" + value + "\"" : Values.stringify(value));
+        }
+    }
+
+    static final class DoubleLiteralNode extends Node {
+        private final double value;
+
+        DoubleLiteralNode(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            return value;
+        }
+
+        @Override
+        public double executeDouble(Map<String, Object> frame) {
+            return value;
+        }
+
+        @Override
+        String describe() {
+            return "DoubleLiteral " + Values.stringify(value);
+        }
+    }
+
+    static final class LongLiteralNode extends Node {
+        private final long value;
+
+        LongLiteralNode(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            return value;
+        }
+
+        @Override
+        public long executeLong(Map<String, Object> frame) {
+            return value;
+        }
+
+        @Override
+        public double executeDouble(Map<String, Object> frame) {
+            return value;
+        }
+
+        @Override
+        boolean widens() {
+            return true;
+        }
+
+        @Override
+        String describe() {
+            return "LongLiteral " + value;
+        }
+    }
+
+    static final class VariableNode extends Node {
+        private final Token name;
+        private final String identifier;
+
+        VariableNode(Token name, String identifier) {
+            this.name = name;
+            this.identifier = identifier;
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            Object value = frame.get(identifier);
+            if (value == null && !frame.containsKey(identifier)) {
+                throw new RuntimeError(name, "Undefined variable '" + identifier + "'.");
+            }
+            return value;
+        }
+
+        @Override
+        String describe() {
+            return "Variable " + identifier;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package in.rajat.rLang.nodes;
+
+import java.util.Map;
+
+/**
+ * Base class of the self-specializing AST. A node starts out uninitialized,
+ * looks at the operand types it actually sees on its first execution and
+ * replaces itself in its parent with a node specialized for those types.
+ * A specialized node that later sees other types replaces itself with a
+ * generic node, and never specializes again.
+ * <p>
+ * One tree can be run by many threads while it rewrites itself. Rewrites
+ * are serialized by the {@link RootNode}, and every link between nodes is
+ * volatile, so a thread always sees a replacement whole, with its parent and
+ * children set.
+ */
+public abstract class Node {
+    volatile Node parent;
+
+    public abstract Object execute(Map<String, Object> frame);
+
+    /**
+     * Fast path for nodes that produce numbers. Nodes that are not
+     * specialized on doubles box through {@link #execute} and report any
+     * non-number through the exception.
+     */
+    public double executeDouble(Map<String, Object> frame) throws UnexpectedResultException {
+        Object value = execute(frame);
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResultException(value);
+    }
+
+    /**
+     * Fast path for nodes that produce integers, like {@link #executeDouble}.
+     */
+    public long executeLong(Map<String, Object> frame) throws UnexpectedResultException {
+        Object value = execute(frame);
+        if (value instanceof Long) return (long) value;
+        throw new UnexpectedResultException(value);
+    }
+
+    /**
+     * {@link #executeDouble} for nodes specialized on longs, so a double
+     * node can take them as operands without boxing. A parent only
+     * specializes on doubles if one of its operands was not a long, so
+     * widening never turns an integer result into a double.
+     */
+    final double executeWidened(Map<String, Object> frame) throws UnexpectedResultException {
+        try {
+            return executeLong(frame);
+        } catch (UnexpectedResultException e) {
+            // The node generalized and overflowed into a double.
+            if (e.result instanceof Double) return (double) e.result;
+            throw e;
+        }
+    }
+
+    // Whether executeDouble returns a long widened to double.
+    boolean widens() {
+        return false;
+    }
+
+    // Short name of the node's current specialization, for dumps.
+    abstract String describe();
+
+    Node[] children() {
+        return new Node[0];
+    }
+
+    boolean replaceChild(Node oldChild, Node newChild) {
+        throw new IllegalStateException(describe() + " has no children.");
+    }
+
+    /**
+     * Swaps this node for {@code replacement} in the tree. If another thread
+     * already replaced this node, the tree is left alone.
+     */
+    final <T extends Node> T replace(T replacement) {
+        RootNode root = root();
+        synchronized (root) {
+            Node parent = this.parent;
+            // The replacement was built with this node's children as they
+            // were then; one may have been replaced since. Both are set
+            // before the replacement can be reached.
+            replacement.parent = parent;
+            handOver(replacement);
+            if (parent.replaceChild(this, replacement)) {
+                for (Node child : replacement.children()) child.parent = replacement;
+                root.transition(this, replacement);
+            }
+        }
+        return replacement;
+    }
+
+    // Gives a replacement of the same shape this node's current children.
+    void handOver(Node replacement) {
+    }
+
+    private RootNode root() {
+        // Parent links of replaced nodes stay as they were, so even a stale
+        // path leads to the root.
+        Node node = this;
+        while (!(node instanceof RootNode)) node = node.parent;
+        return (RootNode) node;
+    }
+
+    void dump(StringBuilder out, int depth) {
+        out.append("  ".repeat(depth)).append(describe()).append('\n');
+        for (Node child : children()) child.dump(out, depth + 1);
+    }
+
+    /**
+     * Carries a value of an unexpected type out of {@link #executeDouble}
+     * or {@link #executeLong}.
+     * It is thrown on the slow path only, so it skips the stack trace.
+     */
+    public static final class UnexpectedResultException extends Exception {
+        public final transient Object result;
+
+        public UnexpectedResultException(Object result) {
+            super(null, null, false, false);
+            this.result = result;
+        }
+    }
+}
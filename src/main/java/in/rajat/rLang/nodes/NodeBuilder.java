@@ -0,0 +1,69 @@
+package in.rajat.rLang.nodes;
+
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.expressions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds an uninitialized specializing tree from a parsed Expression.
+ * Groupings are dropped since the tree shape already encodes them.
+ */
+public class NodeBuilder implements Expression.Visitor<Node> {
+
+    public static RootNode build(Expression expression) {
+        return new RootNode(expression.accept(new NodeBuilder()));
+    }
+
+    @Override
+    public Node visitBinaryExpr(BinaryExpr expr) {
+        Node concatenation = expr.operator.type == TokenType.PLUS ? concatenation(expr) : null;
+        if (concatenation != null) return concatenation;
+        return new BinaryNodes.UninitializedBinaryNode(expr.operator, expr.left.accept(this), expr.right.accept(this));
+    }
+
+    // A run of PLUS down the left side that starts with a string literal
+    // only ever concatenates; it becomes one node that joins its operands.
+    private Node concatenation(BinaryExpr expr) {
+        List<BinaryExpr> run = new ArrayList<>();
+        Expression head = expr;
+        while (head instanceof BinaryExpr binary && binary.operator.type == TokenType.PLUS) {
+            run.add(binary);
+            head = binary.left;
+        }
+        while (head instanceof GroupingExpr grouping) head = grouping.expression;
+        if (run.size() < 2 || !(head instanceof LiteralExpr literal && literal.value instanceof String)) return null;
+
+        Node[] operands = new Node[run.size() + 1];
+        operands[0] = head.accept(this);
+        for (int i = 1; i < operands.length; i++) operands[i] = run.get(run.size() - i).right.accept(this);
+        return new BinaryNodes.ConcatChainNode(expr.operator, operands);
+    }
+
+    @Override
+    public Node visitGroupingExpr(GroupingExpr expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Node visitLiteralExpr(LiteralExpr expr) {
+        if (expr.value instanceof Double) {
+            return new LeafNodes.DoubleLiteralNode((double) expr.value);
+        }
+        if (expr.value instanceof Long) {
+            return new LeafNodes.LongLiteralNode((long) expr.value);
+        }
+        return new LeafNodes.ObjectLiteralNode(expr.value);
+    }
+
+    @Override
+    public Node visitUnaryExpr(UnaryExpr expr) {
+        return new UnaryNodes.UninitializedUnaryNode(expr.operator, expr.right.accept(this));
+    }
+
+    @Override
+    public Node visitVariableExpr(VariableExpr expr) {
+        return new LeafNodes.VariableNode(expr.name, expr.identifier);
+    }
+}
@@ -0,0 +1,59 @@
+package in.rajat.rLang.nodes;
+
+import in.rajat.rLang.Numbers;
+import in.rajat.rLang.RuntimeError;
+import in.rajat.rLang.Values;
+import in.rajat.rLang.models.Token;
+
+/**
+ * Fully generic operator semantics on boxed values, matching the
+ * Interpreter. Used by uninitialized and generic nodes.
+ */
+final class Operations {
+
+    private Operations() {
+    }
+
+    static Object unary(Token operator, Object right) {
+        return switch (operator.type) {
+            case BANG -> !Values.isTruthy(right);
+            case MINUS -> {
+                if (!Numbers.isNumber(right)) throw new RuntimeError(operator, "Operand must be a number.");
+                yield Numbers.negate(right);
+            }
+            default -> throw new IllegalStateException("Unexpected unary operator " + operator.type);
+        };
+    }
+
+    static Object binary(Token operator, Object left, Object right) {
+        switch (operator.type) {
+            case BANG_EQUAL:
+                return !Values.isEqual(left, right);
+            case EQUAL_EQUAL:
+                return Values.isEqual(left, right);
+            case PLUS:
+                if (Numbers.isNumber(left) && Numbers.isNumber(right)) {
+                    return Numbers.add(left, right);
+                }
+                if (Values.isString(left) || Values.isString(right)) {
+                    return Values.concat(left, right);
+                }
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+        }
+
+        if (!Numbers.isNumber(left) || !Numbers.isNumber(right)) {
+            throw new RuntimeError(operator, "Operands must be numbers.");
+        }
+
+        return switch (operator.type) {
+            case GREATER -> Numbers.greater(left, right);
+            case GREATER_EQUAL -> Numbers.greaterEqual(left, right);
+            case LESS -> Numbers.less(left, right);
+            case LESS_EQUAL -> Numbers.lessEqual(left, right);
+            case MINUS -> Numbers.subtract(left, right);
+            case SLASH -> Numbers.divide(left, right);
+            case STAR -> Numbers.multiply(left, right);
+            default -> throw new IllegalStateException("Unexpected binary operator " + operator.type);
+        };
+    }
+}
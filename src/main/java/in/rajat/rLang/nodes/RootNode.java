@@ -0,0 +1,70 @@
+package in.rajat.rLang.nodes;
+
+import in.rajat.rLang.Values;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Top of a specializing tree. Records every node rewrite so the
+ * specialization history can be inspected with {@link #transitions()} or
+ * {@link #dump()}.
+ */
+public final class RootNode extends Node {
+    private volatile Node body;
+    private final List<String> transitions = new ArrayList<>();
+
+    /**
+     * Takes a freshly built tree and links every node in it to its parent.
+     */
+    public RootNode(Node body) {
+        this.body = body;
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            for (Node child : node.children()) {
+                child.parent = node;
+                pending.push(child);
+            }
+        }
+    }
+
+    @Override
+    public Object execute(Map<String, Object> frame) {
+        return Values.flatten(body.execute(frame));
+    }
+
+    @Override
+    String describe() {
+        return "Root";
+    }
+
+    @Override
+    Node[] children() {
+        return new Node[]{body};
+    }
+
+    @Override
+    boolean replaceChild(Node oldChild, Node newChild) {
+        if (body != oldChild) return false;
+        body = newChild;
+        return true;
+    }
+
+    void transition(Node from, Node to) {
+        transitions.add(from.describe() + " -> " + to.describe());
+    }
+
+    public synchronized List<String> transitions() {
+        return List.copyOf(transitions);
+    }
+
+    public synchronized String dump() {
+        StringBuilder out = new StringBuilder();
+        dump(out, 0);
+        return out.toString();
+    }
+}
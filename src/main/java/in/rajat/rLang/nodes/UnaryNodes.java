@@ -0,0 +1,190 @@
+package in.rajat.rLang.nodes;
+
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.models.Token;
+
+import java.util.Map;
+
+final class UnaryNodes {
+
+    private UnaryNodes() {
+    }
+
+    abstract static class UnaryNode extends Node {
+        final Token operator;
+        volatile Node right;
+
+        UnaryNode(Token operator, Node right) {
+            this.operator = operator;
+            this.right = right;
+        }
+
+        abstract String state();
+
+        @Override
+        String describe() {
+            return "'" + operator.lexeme() + "' " + state() + " line " + operator.line;
+        }
+
+        @Override
+        Node[] children() {
+            return new Node[]{right};
+        }
+
+        @Override
+        boolean replaceChild(Node oldChild, Node newChild) {
+            if (right != oldChild) return false;
+            right = newChild;
+            return true;
+        }
+
+        @Override
+        void handOver(Node replacement) {
+            ((UnaryNode) replacement).right = right;
+        }
+
+        final Object generalize(Object rightValue) {
+            return replace(new GenericUnaryNode(operator, right)).compute(rightValue);
+        }
+    }
+
+    static final class UninitializedUnaryNode extends UnaryNode {
+        UninitializedUnaryNode(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            Object value = right.execute(frame);
+
+            UnaryNode specialized;
+            if (operator.type == TokenType.MINUS && value instanceof Double) {
+                specialized = new DoubleNegateNode(operator, right);
+            } else if (operator.type == TokenType.MINUS && value instanceof Long l && l != Long.MIN_VALUE) {
+                specialized = new LongNegateNode(operator, right);
+            } else if (operator.type == TokenType.BANG && value instanceof Boolean) {
+                specialized = new BooleanNotNode(operator, right);
+            } else {
+                specialized = new GenericUnaryNode(operator, right);
+            }
+            replace(specialized);
+            return Operations.unary(operator, value);
+        }
+
+        @Override
+        String state() {
+            return "uninitialized";
+        }
+    }
+
+    static final class DoubleNegateNode extends UnaryNode {
+        DoubleNegateNode(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            try {
+                return executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        public double executeDouble(Map<String, Object> frame) throws UnexpectedResultException {
+            try {
+                return -right.executeDouble(frame);
+            } catch (UnexpectedResultException e) {
+                // generalize() throws the RuntimeError: negation of a non-number never succeeds.
+                throw new UnexpectedResultException(generalize(e.result));
+            }
+        }
+
+        @Override
+        String state() {
+            return "double";
+        }
+    }
+
+    static final class LongNegateNode extends UnaryNode {
+        LongNegateNode(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            try {
+                return executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                return e.result;
+            }
+        }
+
+        @Override
+        public long executeLong(Map<String, Object> frame) throws UnexpectedResultException {
+            long value;
+            try {
+                value = right.executeLong(frame);
+            } catch (UnexpectedResultException e) {
+                throw new UnexpectedResultException(generalize(e.result));
+            }
+            // The one negation that overflows; the generic node makes it a double.
+            if (value == Long.MIN_VALUE) throw new UnexpectedResultException(generalize(value));
+            return -value;
+        }
+
+        @Override
+        public double executeDouble(Map<String, Object> frame) throws UnexpectedResultException {
+            return executeWidened(frame);
+        }
+
+        @Override
+        boolean widens() {
+            return true;
+        }
+
+        @Override
+        String state() {
+            return "long";
+        }
+    }
+
+    static final class BooleanNotNode extends UnaryNode {
+        BooleanNotNode(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            Object value = right.execute(frame);
+            if (value instanceof Boolean) return !(boolean) value;
+            return generalize(value);
+        }
+
+        @Override
+        String state() {
+            return "boolean";
+        }
+    }
+
+    static final class GenericUnaryNode extends UnaryNode {
+        GenericUnaryNode(Token operator, Node right) {
+            super(operator, right);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> frame) {
+            return compute(right.execute(frame));
+        }
+
+        Object compute(Object rightValue) {
+            return Operations.unary(operator, rightValue);
+        }
+
+        @Override
+        String state() {
+            return "generic";
+        }
+    }
+}
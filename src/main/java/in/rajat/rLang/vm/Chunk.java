@@ -0,0 +1,61 @@
+package in.rajat.rLang.vm;
+
+/**
+ * A compiled expression: a flat array of opcodes with their operands, the
+ * source line of every byte for runtime errors, and a constant pool. Number
+ * and integer constants live in their own primitive pools so loading one
+ * never unboxes. Built whole by {@link Compiler} and never changed after,
+ * so one chunk can be run by many VMs at once.
+ */
+public class Chunk {
+    final byte[] code;
+    final int[] lines;
+    final Object[] constants;
+    final double[] numbers;
+    final long[] integers;
+
+    Chunk(byte[] code, int[] lines, Object[] constants, double[] numbers, long[] integers) {
+        this.code = code;
+        this.lines = lines;
+        this.constants = constants;
+        this.numbers = numbers;
+        this.integers = integers;
+    }
+
+    public int size() {
+        return code.length;
+    }
+
+    public String disassemble() {
+        StringBuilder out = new StringBuilder();
+        int offset = 0;
+        while (offset < code.length) {
+            byte op = code[offset];
+            out.append(String.format("%04d %4d %s", offset, lines[offset], OpCode.name(op)));
+            if (op == OpCode.CONCAT) {
+                out.append(' ').append(readShort(offset + 1));
+                offset += 3;
+            } else if (op == OpCode.CONSTANT || op == OpCode.GET_VARIABLE) {
+                int index = readShort(offset + 1);
+                out.append(' ').append(index).append(" '").append(constants[index]).append('\'');
+                offset += 3;
+            } else if (op == OpCode.NUMBER) {
+                int index = readShort(offset + 1);
+                out.append(' ').append(index).append(" '").append(numbers[index]).append('\'');
+                offset += 3;
+            } else if (op == OpCode.INTEGER) {
+                int index = readShort(offset + 1);
+                out.append(' ').append(index).append(" '").append(integers[index]).append('\'');
+                offset += 3;
+            } else {
+                offset++;
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    int readShort(int offset) {
+        return ((code[offset] & 0xff) << 8) | (code[offset + 1] & 0xff);
+    }
+}
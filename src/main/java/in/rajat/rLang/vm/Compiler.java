@@ -0,0 +1,227 @@
+package in.rajat.rLang.vm;
+
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.expressions.*;
+import in.rajat.rLang.models.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lowers the Expression tree produced by RParser into a {@link Chunk}.
+ * Operands are emitted in post-order so the VM only ever touches the top
+ * of its operand stack.
+ */
+public class Compiler implements Expression.Visitor<Void> {
+    // The chunk being compiled.
+    private byte[] code;
+    private int[] lines;
+    private int count;
+    private List<Object> constants;
+    private double[] numbers;
+    private int numberCount;
+    private long[] integers;
+    private int integerCount;
+
+    // Pool index of every constant added so far, so a script with many
+    // literals compiles in linear time. Numbers are keyed by their bits:
+    // 0.0 and -0.0 are different constants, and NaN is one.
+    private Map<Object, Integer> constantIndex;
+    private Map<Long, Integer> numberIndex;
+    private Map<Long, Integer> integerIndex;
+
+    /**
+     * Returns null if the expression needs more than 65,536 entries in one
+     * of the chunk's pools, which its two-byte operands cannot index.
+     */
+    public Chunk compile(Expression expression) {
+        code = new byte[16];
+        lines = new int[16];
+        count = 0;
+        constants = new ArrayList<>();
+        numbers = new double[8];
+        numberCount = 0;
+        integers = new long[8];
+        integerCount = 0;
+        constantIndex = new HashMap<>();
+        numberIndex = new HashMap<>();
+        integerIndex = new HashMap<>();
+
+        Chunk compiled;
+        try {
+            if (expression != null) {
+                expression.accept(this);
+            } else {
+                emit(OpCode.NULL, 0);
+            }
+            emit(OpCode.RETURN, 0);
+            compiled = new Chunk(Arrays.copyOf(code, count), Arrays.copyOf(lines, count), constants.toArray(),
+                    Arrays.copyOf(numbers, numberCount), Arrays.copyOf(integers, integerCount));
+        } catch (PoolOverflow e) {
+            compiled = null;
+        }
+        code = null;
+        lines = null;
+        constants = null;
+        numbers = null;
+        integers = null;
+        constantIndex = null;
+        numberIndex = null;
+        integerIndex = null;
+        return compiled;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr expr) {
+        if (expr.operator.type == TokenType.PLUS && concatenation(expr)) return null;
+
+        expr.left.accept(this);
+        expr.right.accept(this);
+
+        Token operator = expr.operator;
+        switch (operator.type) {
+            case GREATER -> emit(OpCode.GREATER, operator.line);
+            case GREATER_EQUAL -> emit(OpCode.GREATER_EQUAL, operator.line);
+            case LESS -> emit(OpCode.LESS, operator.line);
+            case LESS_EQUAL -> emit(OpCode.LESS_EQUAL, operator.line);
+            case MINUS -> emit(OpCode.SUBTRACT, operator.line);
+            case SLASH -> emit(OpCode.DIVIDE, operator.line);
+            case STAR -> emit(OpCode.MULTIPLY, operator.line);
+            case PLUS -> emit(OpCode.ADD, operator.line);
+            case BANG_EQUAL -> emit(OpCode.NOT_EQUAL, operator.line);
+            case EQUAL_EQUAL -> emit(OpCode.EQUAL, operator.line);
+            default -> throw new IllegalStateException("Unexpected binary operator " + operator.type);
+        }
+        return null;
+    }
+
+    // A run of PLUS down the left side that starts with a string literal
+    // only ever concatenates, so its operands are pushed and joined by one
+    // CONCAT instead of building every string in between.
+    private boolean concatenation(BinaryExpr expr) {
+        List<BinaryExpr> run = new ArrayList<>();
+        Expression head = expr;
+        while (head instanceof BinaryExpr binary && binary.operator.type == TokenType.PLUS) {
+            run.add(binary);
+            head = binary.left;
+        }
+        while (head instanceof GroupingExpr grouping) head = grouping.expression;
+        if (run.size() < 2 || run.size() >= 0xffff || !(head instanceof LiteralExpr literal && literal.value instanceof String)) {
+            return false;
+        }
+
+        head.accept(this);
+        for (int i = run.size() - 1; i >= 0; i--) run.get(i).right.accept(this);
+        emitWithIndex(OpCode.CONCAT, run.size() + 1, expr.operator.line);
+        return true;
+    }
+
+    @Override
+    public Void visitGroupingExpr(GroupingExpr expr) {
+        expr.expression.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr expr) {
+        Object value = expr.value;
+        if (value == null) {
+            emit(OpCode.NULL, 0);
+        } else if (value.equals(Boolean.TRUE)) {
+            emit(OpCode.TRUE, 0);
+        } else if (value.equals(Boolean.FALSE)) {
+            emit(OpCode.FALSE, 0);
+        } else if (value instanceof Double) {
+            emitWithIndex(OpCode.NUMBER, addNumber((double) value));
+        } else if (value instanceof Long) {
+            emitWithIndex(OpCode.INTEGER, addInteger((long) value));
+        } else {
+            emitWithIndex(OpCode.CONSTANT, addConstant(value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(VariableExpr expr) {
+        // The name goes in the constant pool; the VM resolves it against the bindings.
+        emitWithIndex(OpCode.GET_VARIABLE, addConstant(expr.identifier), expr.name.line);
+        return null;
+    }
+
+    private void emitWithIndex(byte op, int index) {
+        emitWithIndex(op, index, 0);
+    }
+
+    private void emitWithIndex(byte op, int index, int line) {
+        if (index > 0xffff) throw PoolOverflow.INSTANCE;
+        emit(op, line);
+        emit((byte) (index >> 8), line);
+        emit((byte) index, line);
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr expr) {
+        expr.right.accept(this);
+
+        Token operator = expr.operator;
+        switch (operator.type) {
+            case BANG -> emit(OpCode.NOT, operator.line);
+            case MINUS -> emit(OpCode.NEGATE, operator.line);
+            default -> throw new IllegalStateException("Unexpected unary operator " + operator.type);
+        }
+        return null;
+    }
+
+    private void emit(byte op, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        code[count] = op;
+        lines[count] = line;
+        count++;
+    }
+
+    private int addConstant(Object value) {
+        Integer index = constantIndex.get(value);
+        if (index != null) return index;
+
+        constants.add(value);
+        constantIndex.put(value, constants.size() - 1);
+        return constants.size() - 1;
+    }
+
+    private int addNumber(double value) {
+        Integer index = numberIndex.putIfAbsent(Double.doubleToLongBits(value), numberCount);
+        if (index != null) return index;
+
+        if (numberCount == numbers.length) {
+            numbers = Arrays.copyOf(numbers, numberCount * 2);
+        }
+        numbers[numberCount] = value;
+        return numberCount++;
+    }
+
+    private int addInteger(long value) {
+        Integer index = integerIndex.putIfAbsent(value, integerCount);
+        if (index != null) return index;
+
+        if (integerCount == integers.length) {
+            integers = Arrays.copyOf(integers, integerCount * 2);
+        }
+        integers[integerCount] = value;
+        return integerCount++;
+    }
+
+    // Unwinds the visitor out of compile() as soon as a pool is full.
+    private static final class PoolOverflow extends RuntimeException {
+        static final PoolOverflow INSTANCE = new PoolOverflow();
+
+        private PoolOverflow() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package in.rajat.rLang.vm;
+
+/**
+ * Instruction set of the stack VM. Kept as byte constants rather than an enum
+ * so the dispatch loop in {@link VM} switches straight on the code array.
+ */
+public final class OpCode {
+    public static final byte CONSTANT = 0;
+    public static final byte NULL = 1;
+    public static final byte TRUE = 2;
+    public static final byte FALSE = 3;
+
+    public static final byte NEGATE = 4;
+    public static final byte NOT = 5;
+
+    public static final byte ADD = 6;
+    public static final byte SUBTRACT = 7;
+    public static final byte MULTIPLY = 8;
+    public static final byte DIVIDE = 9;
+
+    public static final byte GREATER = 10;
+    public static final byte GREATER_EQUAL = 11;
+    public static final byte LESS = 12;
+    public static final byte LESS_EQUAL = 13;
+    public static final byte EQUAL = 14;
+    public static final byte NOT_EQUAL = 15;
+
+    public static final byte RETURN = 16;
+
+    public static final byte NUMBER = 17;
+    public static final byte GET_VARIABLE = 18;
+    // Pops the given number of values and pushes them joined as one string.
+    public static final byte CONCAT = 19;
+    public static final byte INTEGER = 20;
+
+    private static final String[] NAMES = {
+            "CONSTANT", "NULL", "TRUE", "FALSE",
+            "NEGATE", "NOT",
+            "ADD", "SUBTRACT", "MULTIPLY", "DIVIDE",
+            "GREATER", "GREATER_EQUAL", "LESS", "LESS_EQUAL", "EQUAL", "NOT_EQUAL",
+            "RETURN",
+            "NUMBER",
+            "GET_VARIABLE",
+            "CONCAT",
+            "INTEGER"
+    };
+
+    private OpCode() {
+    }
+
+    public static String name(byte op) {
+        return op >= 0 && op < NAMES.length ? NAMES[op] : "UNKNOWN(" + op + ")";
+    }
+}
@@ -0,0 +1,368 @@
+package in.rajat.rLang.vm;
+
+import in.rajat.rLang.Numbers;
+import in.rajat.rLang.RuntimeError;
+import in.rajat.rLang.Values;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Stack machine for {@link Chunk}s. Mirrors the semantics of the
+ * tree-walking Interpreter, including its runtime error messages, so the
+ * two execution modes can be diffed against each other.
+ * <p>
+ * Every stack slot is a type tag plus a primitive {@code double}, or a
+ * {@code long} for integers; only strings use the reference array. Booleans
+ * are stored as 0 or 1 in the number slot, so arithmetic and comparisons
+ * never allocate. A value is boxed once, when it is returned. Integer
+ * arithmetic follows {@link Numbers}.
+ */
+public class VM {
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte NUMBER = 2;
+    private static final byte OBJECT = 3;
+    private static final byte INTEGER = 4;
+
+    private byte[] tags = new byte[64];
+    private double[] numbers = new double[64];
+    private long[] integers = new long[64];
+    private Object[] objects = new Object[64];
+    private int sp = 0;
+
+    public Object run(Chunk chunk) {
+        return run(chunk, Map.of());
+    }
+
+    public Object run(Chunk chunk, Map<String, Object> bindings) {
+        final byte[] code = chunk.code;
+        final double[] numberPool = chunk.numbers;
+        final long[] integerPool = chunk.integers;
+        final Object[] constants = chunk.constants;
+        sp = 0;
+        int ip = 0;
+
+        for (; ; ) {
+            byte op = code[ip++];
+            switch (op) {
+                case OpCode.NUMBER -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    push(NUMBER, numberPool[index], null);
+                }
+                case OpCode.INTEGER -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    pushInteger(integerPool[index]);
+                }
+                case OpCode.CONSTANT -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    push(OBJECT, 0, constants[index]);
+                }
+                case OpCode.GET_VARIABLE -> {
+                    int index = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    String name = (String) constants[index];
+                    Object value = bindings.get(name);
+                    if (value == null && !bindings.containsKey(name)) {
+                        throw error(chunk, ip, "Undefined variable '" + name + "'.");
+                    }
+                    pushValue(value);
+                }
+                case OpCode.NULL -> push(NULL, 0, null);
+                case OpCode.TRUE -> push(BOOLEAN, 1, null);
+                case OpCode.FALSE -> push(BOOLEAN, 0, null);
+
+                case OpCode.NEGATE -> {
+                    if (tags[sp - 1] == NUMBER) {
+                        numbers[sp - 1] = -numbers[sp - 1];
+                    } else {
+                        negate(chunk, ip, sp - 1);
+                    }
+                }
+                case OpCode.NOT -> {
+                    boolean truthy = isTruthy(sp - 1);
+                    setBoolean(sp - 1, !truthy);
+                }
+
+                case OpCode.ADD -> {
+                    int r = --sp;
+                    int l = sp - 1;
+                    if (tags[l] == NUMBER && tags[r] == NUMBER) {
+                        numbers[l] += numbers[r];
+                    } else if (tags[l] == INTEGER && tags[r] == INTEGER && !Numbers.addOverflows(integers[l], integers[r])) {
+                        integers[l] += integers[r];
+                    } else {
+                        add(chunk, ip, l, r);
+                    }
+                }
+                case OpCode.CONCAT -> {
+                    int count = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    StringBuilder out = new StringBuilder();
+                    int first = sp - count;
+                    for (int slot = first; slot < sp; slot++) {
+                        Values.append(out, box(slot));
+                        objects[slot] = null;
+                    }
+                    sp = first;
+                    push(OBJECT, 0, out.toString());
+                }
+                case OpCode.SUBTRACT -> {
+                    if (tags[sp - 2] == NUMBER && tags[sp - 1] == NUMBER) {
+                        numbers[sp - 2] -= numbers[sp - 1];
+                    } else if (tags[sp - 2] == INTEGER && tags[sp - 1] == INTEGER
+                            && !Numbers.subtractOverflows(integers[sp - 2], integers[sp - 1])) {
+                        integers[sp - 2] -= integers[sp - 1];
+                    } else {
+                        arithmetic(op, chunk, ip);
+                    }
+                    sp--;
+                }
+                case OpCode.MULTIPLY -> {
+                    if (tags[sp - 2] == NUMBER && tags[sp - 1] == NUMBER) {
+                        numbers[sp - 2] *= numbers[sp - 1];
+                    } else if (tags[sp - 2] == INTEGER && tags[sp - 1] == INTEGER
+                            && !Numbers.multiplyOverflows(integers[sp - 2], integers[sp - 1])) {
+                        integers[sp - 2] *= integers[sp - 1];
+                    } else {
+                        arithmetic(op, chunk, ip);
+                    }
+                    sp--;
+                }
+                case OpCode.DIVIDE -> {
+                    if (tags[sp - 2] == NUMBER && tags[sp - 1] == NUMBER) {
+                        numbers[sp - 2] /= numbers[sp - 1];
+                    } else {
+                        arithmetic(op, chunk, ip);
+                    }
+                    sp--;
+                }
+
+                case OpCode.GREATER -> {
+                    boolean result = tags[sp - 2] == NUMBER && tags[sp - 1] == NUMBER
+                            ? numbers[sp - 2] > numbers[sp - 1]
+                            : compare(op, chunk, ip);
+                    sp--;
+                    setBoolean(sp - 1, result);
+                }
+                case OpCode.GREATER_EQUAL -> {
+                    boolean result = tags[sp - 2] == NUMBER && tags[sp - 1] == NUMBER
+                            ? numbers[sp - 2] >= numbers[sp - 1]
+                            : compare(op, chunk, ip);
+                    sp--;
+                    setBoolean(sp - 1, result);
+                }
+                case OpCode.LESS -> {
+                    boolean result = tags[sp - 2] == NUMBER && tags[sp - 1] == NUMBER
+                            ? numbers[sp - 2] < numbers[sp - 1]
+                            : compare(op, chunk, ip);
+                    sp--;
+                    setBoolean(sp - 1, result);
+                }
+                case OpCode.LESS_EQUAL -> {
+                    boolean result = tags[sp - 2] == NUMBER && tags[sp - 1] == NUMBER
+                            ? numbers[sp - 2] <= numbers[sp - 1]
+                            : compare(op, chunk, ip);
+                    sp--;
+                    setBoolean(sp - 1, result);
+                }
+                case OpCode.EQUAL -> {
+                    sp--;
+                    boolean equal = isEqual(sp - 1, sp);
+                    objects[sp] = null;
+                    setBoolean(sp - 1, equal);
+                }
+                case OpCode.NOT_EQUAL -> {
+                    sp--;
+                    boolean equal = isEqual(sp - 1, sp);
+                    objects[sp] = null;
+                    setBoolean(sp - 1, !equal);
+                }
+
+                case OpCode.RETURN -> {
+                    Object result = Values.flatten(box(--sp));
+                    objects[sp] = null;
+                    return result;
+                }
+                default -> throw error(chunk, ip, "Unknown opcode " + op + ".");
+            }
+        }
+    }
+
+    // The slow paths of the arithmetic and comparison ops. run() handles
+    // two doubles, and two integers for +, - and * unless they overflow.
+
+    private void negate(Chunk chunk, int ip, int slot) {
+        if (tags[slot] == INTEGER && integers[slot] != Long.MIN_VALUE) {
+            integers[slot] = -integers[slot];
+        } else if (tags[slot] == INTEGER) {
+            setNumber(slot, -asDouble(slot));
+        } else {
+            throw error(chunk, ip, "Operand must be a number.");
+        }
+    }
+
+    private void add(Chunk chunk, int ip, int l, int r) {
+        if (isNumber(l) && isNumber(r)) {
+            setNumber(l, asDouble(l) + asDouble(r));
+        } else if (Values.isString(objects[l]) || Values.isString(objects[r])) {
+            objects[l] = Values.concat(box(l), box(r));
+            tags[l] = OBJECT;
+            objects[r] = null;
+        } else {
+            throw error(chunk, ip, "Operands must be two numbers or two strings.");
+        }
+    }
+
+    // SUBTRACT, MULTIPLY or DIVIDE of the top two slots, into the lower one.
+    private void arithmetic(byte op, Chunk chunk, int ip) {
+        checkNumberOperands(chunk, ip);
+        int l = sp - 2;
+        double a = asDouble(l);
+        double b = asDouble(sp - 1);
+        setNumber(l, op == OpCode.SUBTRACT ? a - b : op == OpCode.MULTIPLY ? a * b : a / b);
+    }
+
+    private boolean compare(byte op, Chunk chunk, int ip) {
+        checkNumberOperands(chunk, ip);
+        int l = sp - 2;
+        int r = sp - 1;
+        if (tags[l] == INTEGER && tags[r] == INTEGER) {
+            long a = integers[l];
+            long b = integers[r];
+            return switch (op) {
+                case OpCode.GREATER -> a > b;
+                case OpCode.GREATER_EQUAL -> a >= b;
+                case OpCode.LESS -> a < b;
+                default -> a <= b;
+            };
+        }
+        if (tags[l] == INTEGER) {
+            long a = integers[l];
+            double b = numbers[r];
+            return switch (op) {
+                case OpCode.GREATER -> Numbers.greater(a, b);
+                case OpCode.GREATER_EQUAL -> Numbers.greaterEqual(a, b);
+                case OpCode.LESS -> Numbers.less(a, b);
+                default -> Numbers.lessEqual(a, b);
+            };
+        }
+        double a = numbers[l];
+        long b = integers[r];
+        return switch (op) {
+            case OpCode.GREATER -> Numbers.greater(a, b);
+            case OpCode.GREATER_EQUAL -> Numbers.greaterEqual(a, b);
+            case OpCode.LESS -> Numbers.less(a, b);
+            default -> Numbers.lessEqual(a, b);
+        };
+    }
+
+    private void push(byte tag, double number, Object object) {
+        if (sp == tags.length) grow();
+        tags[sp] = tag;
+        numbers[sp] = number;
+        objects[sp] = object;
+        sp++;
+    }
+
+    private void pushInteger(long value) {
+        if (sp == tags.length) grow();
+        tags[sp] = INTEGER;
+        integers[sp] = value;
+        objects[sp] = null;
+        sp++;
+    }
+
+    private void grow() {
+        int capacity = sp * 2;
+        tags = Arrays.copyOf(tags, capacity);
+        numbers = Arrays.copyOf(numbers, capacity);
+        integers = Arrays.copyOf(integers, capacity);
+        objects = Arrays.copyOf(objects, capacity);
+    }
+
+    private void pushValue(Object value) {
+        if (value == null) {
+            push(NULL, 0, null);
+        } else if (value instanceof Double) {
+            push(NUMBER, (double) value, null);
+        } else if (value instanceof Long) {
+            pushInteger((long) value);
+        } else if (value instanceof Boolean) {
+            push(BOOLEAN, (boolean) value ? 1 : 0, null);
+        } else {
+            push(OBJECT, 0, value);
+        }
+    }
+
+    private void setNumber(int slot, double value) {
+        tags[slot] = NUMBER;
+        numbers[slot] = value;
+    }
+
+    private boolean isNumber(int slot) {
+        return tags[slot] == NUMBER || tags[slot] == INTEGER;
+    }
+
+    // A number slot's value as a double.
+    private double asDouble(int slot) {
+        return tags[slot] == INTEGER ? integers[slot] : numbers[slot];
+    }
+
+    private void setBoolean(int slot, boolean value) {
+        tags[slot] = BOOLEAN;
+        numbers[slot] = value ? 1 : 0;
+        objects[slot] = null;
+    }
+
+    private boolean isTruthy(int slot) {
+        return switch (tags[slot]) {
+            case NULL -> false;
+            case BOOLEAN -> numbers[slot] != 0;
+            default -> true;
+        };
+    }
+
+    private boolean isEqual(int a, int b) {
+        if (tags[a] != tags[b]) {
+            if (tags[a] == INTEGER && tags[b] == NUMBER) return Numbers.isEqual(integers[a], numbers[b]);
+            if (tags[a] == NUMBER && tags[b] == INTEGER) return Numbers.isEqual(integers[b], numbers[a]);
+            return false;
+        }
+
+        return switch (tags[a]) {
+            case NULL -> true;
+            case BOOLEAN -> numbers[a] == numbers[b];
+            // Same comparison Double.equals makes.
+            case NUMBER -> Double.doubleToLongBits(numbers[a]) == Double.doubleToLongBits(numbers[b]);
+            case INTEGER -> integers[a] == integers[b];
+            default -> Values.isEqual(objects[a], objects[b]);
+        };
+    }
+
+    private Object box(int slot) {
+        return switch (tags[slot]) {
+            case NULL -> null;
+            case BOOLEAN -> numbers[slot] != 0;
+            case NUMBER -> numbers[slot];
+            case INTEGER -> integers[slot];
+            default -> objects[slot];
+        };
+    }
+
+    private void checkNumberOperands(Chunk chunk, int ip) {
+        if (isNumber(sp - 2) && isNumber(sp - 1)) return;
+        throw error(chunk, ip, "Operands must be numbers.");
+    }
+
+    private RuntimeError error(Chunk chunk, int ip, String message) {
+        // ip has already moved past the failing instruction.
+        RuntimeError error = new RuntimeError(chunk.lines[ip - 1], message);
+        Arrays.fill(objects, 0, sp, null);
+        sp = 0;
+        return error;
+    }
+}
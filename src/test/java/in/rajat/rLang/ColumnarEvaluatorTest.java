@@ -0,0 +1,74 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.columnar.Column;
+import in.rajat.rLang.columnar.ColumnarEvaluator;
+import in.rajat.rLang.enums.ExecutionMode;
+import in.rajat.rLang.expressions.Expression;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integer literals in double columns: those a double holds exactly are
+ * widened, arithmetic between them is exact, and larger integers that
+ * would be compared or returned are evaluated row by row instead.
+ */
+class ColumnarEvaluatorTest {
+    private final RLangEngine engine = new RLangEngine(ExecutionMode.INTERPRETER, false, 0);
+
+    @Test
+    void widensExactIntegerLiterals() {
+        Map<String, Column> columns = Map.of("x", Column.of(new double[]{9007199254740992.0, 9007199254740991.0, 0.5}));
+        Column result = new ColumnarEvaluator(parse("x == 9007199254740992 == (-9007199254740992 < x)"), columns).evaluate(3);
+        assertEquals(true, result.get(0));
+        assertEquals(false, result.get(1));
+        assertEquals(false, result.get(2));
+    }
+
+    @Test
+    void foldsIntegerArithmeticExactly() {
+        Map<String, Column> columns = Map.of("x", Column.of(new double[]{1.5}));
+        // Past 2^53 and back, and past the long range into doubles.
+        String[] sources = {"(9007199254740993 - 2) * 1 == 9007199254740991", "9223372036854775807 + 1 + x",
+                "x + -9007199254740993", "\"n\" + (9007199254740991 + 2) + x"};
+        for (String source : sources) {
+            ColumnarEvaluator evaluator = new ColumnarEvaluator(parse(source), columns);
+            assertTrue(evaluator.columnar(), source);
+            assertEquals(widened(rowByRow(source, 1.5)), evaluator.evaluate(1).get(0), source);
+        }
+    }
+
+    @Test
+    void evaluatesIntegersPastTwoToThe53RowByRow() {
+        Map<String, Column> columns = Map.of("x", Column.of(new double[]{9007199254740992.0, 0.5}));
+        String[] sources = {"x < 9007199254740993", "9223372036854775807 > x", "9007199254740993 == x + 0",
+                "9007199254740991 + 2", "-(9007199254740991 + 2) * 1"};
+        for (String source : sources) {
+            ColumnarEvaluator evaluator = new ColumnarEvaluator(parse(source), columns);
+            assertFalse(evaluator.columnar(), source);
+            Column result = evaluator.evaluate(2);
+            assertEquals(rowByRow(source, 9007199254740992.0), result.get(0), source);
+            assertEquals(rowByRow(source, 0.5), result.get(1), source);
+        }
+    }
+
+    private Object rowByRow(String source, double x) {
+        return engine.execute(engine.compile(source, new Diagnostics()), Map.of("x", x));
+    }
+
+    // The Interpreter's result as a column holds it: longs widened, which
+    // must be exact.
+    private static Object widened(Object value) {
+        if (!(value instanceof Long l)) return value;
+        assertTrue(Math.abs(l) <= 1L << 53, l.toString());
+        return (double) l;
+    }
+
+    private Expression parse(String source) {
+        return engine.compile(source, new Diagnostics()).expression;
+    }
+}
@@ -0,0 +1,83 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Expressions nested past the parser's recursion limit and past
+ * {@link Script#MAX_RECURSIVE_DEPTH} parse, and evaluate to the same value
+ * in every mode, without overflowing the Java stack.
+ */
+class DeepNestingTest {
+    private static final int DEEP = 100_000;
+
+    @Test
+    void scriptsPastTheLimitAreDeep() {
+        RLangEngine engine = new RLangEngine(ExecutionMode.INTERPRETER, false, 0);
+        int limit = Script.MAX_RECURSIVE_DEPTH;
+
+        Script shallow = engine.compile("-".repeat(limit - 1) + "1", new Diagnostics());
+        assertEquals(limit, shallow.depth);
+        assertFalse(shallow.deep());
+
+        Script deep = engine.compile("-".repeat(limit) + "1", new Diagnostics());
+        assertEquals(limit + 1, deep.depth);
+        assertTrue(deep.deep());
+    }
+
+    @Test
+    void nestingAroundTheParsersLimit() {
+        // The parser recurses up to 64 levels and continues on a heap stack.
+        for (int n = 60; n <= 70; n++) {
+            assertEverywhere("-".repeat(n) + "1", Map.of(), n % 2 == 0 ? 1L : -1L);
+            assertEverywhere("(".repeat(n) + "x + 1" + ")".repeat(n), Map.of("x", 2L), 3L);
+        }
+    }
+
+    @Test
+    void deepGroupings() {
+        assertEverywhere("(".repeat(DEEP) + "1 + 2" + ")".repeat(DEEP), Map.of(), 3L);
+    }
+
+    @Test
+    void deepUnaryChains() {
+        assertEverywhere("-".repeat(DEEP) + "x", Map.of("x", 2.5), 2.5);
+        assertEverywhere("!".repeat(DEEP + 1) + "b", Map.of("b", true), false);
+    }
+
+    @Test
+    void longLeftAssociativeChains() {
+        assertEverywhere("x" + " + x".repeat(DEEP), Map.of("x", 1L), DEEP + 1L);
+        assertEverywhere("x" + " - 1".repeat(DEEP), Map.of("x", 0.5), 0.5 - DEEP);
+    }
+
+    @Test
+    void deepRightNestedChains() {
+        // 1 - (1 - (1 - ... (1 - x)))
+        String source = "1 - (".repeat(DEEP) + "x" + ")".repeat(DEEP);
+        assertEverywhere(source, Map.of("x", 3L), 3L);
+    }
+
+    private static void assertEverywhere(String source, Map<String, Object> bindings, Object expected) {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            for (boolean optimize : new boolean[]{false, true}) {
+                RLangEngine engine = new RLangEngine(mode, optimize, 0, 1);
+                Diagnostics diagnostics = new Diagnostics();
+                Script script = engine.compile(source, diagnostics);
+                assertNotNull(script, String.join("\n", diagnostics.messages()));
+                String context = mode + (optimize ? " optimized" : "");
+                // Twice, so a compiled form runs as well as the first.
+                for (int run = 0; run < 2; run++) {
+                    assertEquals(expected, engine.execute(script, bindings), context);
+                }
+            }
+        }
+    }
+}
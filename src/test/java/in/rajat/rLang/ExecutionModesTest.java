@@ -0,0 +1,245 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import in.rajat.rLang.jit.CompiledExpression;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every execution mode, optimized or not, against the tree-walking
+ * interpreter on random scripts: the same values of the same kinds, and the
+ * same runtime errors on the same lines.
+ */
+class ExecutionModesTest {
+    private static final int SCRIPTS = 4000;
+
+    @Test
+    void everyModeAgreesWithTheInterpreter() {
+        RandomScripts scripts = new RandomScripts(12);
+        RLangEngine reference = new RLangEngine(ExecutionMode.INTERPRETER, false, 0, 1);
+        for (int i = 0; i < SCRIPTS; i++) {
+            String source = scripts.expression(4);
+            Script expected = reference.compile(source, new Diagnostics());
+            if (expected == null) continue;
+            Map<String, Object> bindings = scripts.bindings();
+            Map<String, Object> flipped = flipped(bindings);
+
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                for (boolean optimize : new boolean[]{false, true}) {
+                    RLangEngine engine = new RLangEngine(mode, optimize, 0, 1);
+                    Script script = engine.compile(source, new Diagnostics());
+                    assertNotNull(script, source);
+                    String context = mode + (optimize ? " optimized: " : ": ") + source;
+                    // Twice, so specialized and compiled forms run as well as
+                    // the first, and then with the number kinds swapped.
+                    for (int run = 0; run < 2; run++) {
+                        assertEquals(evaluate(reference, expected, bindings), evaluate(engine, script, bindings), context);
+                    }
+                    assertEquals(evaluate(reference, expected, flipped), evaluate(engine, script, flipped), context + " " + flipped);
+                }
+            }
+        }
+    }
+
+    @Test
+    void longsAndDoublesCompareExactly() {
+        // 2^53 + 1 widens to 2^53, and Long.MAX_VALUE to 2^63.
+        Object[][] cases = {
+                {"a == b", 9007199254740993L, 9007199254740992.0, false},
+                {"a > b", 9007199254740993L, 9007199254740992.0, true},
+                {"a >= b", 9007199254740993L, 9007199254740992.0, true},
+                {"b < a", 9007199254740993L, 9007199254740992.0, true},
+                {"b >= a", 9007199254740993L, 9007199254740992.0, false},
+                {"a != b", 9223372036854775807L, 9223372036854775808.0, true},
+                {"a < b", 9223372036854775807L, 9223372036854775808.0, true},
+                {"b <= a", 9223372036854775807L, 9223372036854775808.0, false},
+                {"a == b", Long.MIN_VALUE, -9223372036854775808.0, true},
+                {"a <= b", Long.MIN_VALUE, -9223372036854775808.0, true},
+                {"a > b", -3L, -3.5, true},
+                {"a < b", -3L, -2.5, true},
+                {"a == b", 2L, 2.0, true},
+                {"a == b", 0L, -0.0, false},
+                {"a < b", 1L, Double.NaN, false},
+                {"b >= a", 1L, Double.NaN, false},
+                {"a < b", 1L, Double.POSITIVE_INFINITY, true},
+        };
+        for (Object[] test : cases) {
+            String source = (String) test[0];
+            Map<String, Object> bindings = Map.of("a", test[1], "b", test[2]);
+            // As literals too, so compilers see both kinds up front.
+            String literals = source.replace("a", literal(test[1])).replace("b", literal(test[2]));
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                for (boolean optimize : new boolean[]{false, true}) {
+                    RLangEngine engine = new RLangEngine(mode, optimize, 0, 1);
+                    String context = mode + " " + source + " " + bindings;
+                    Script script = engine.compile(source, new Diagnostics());
+                    Script constant = engine.compile(literals, new Diagnostics());
+                    for (int run = 0; run < 2; run++) {
+                        assertEquals(test[3], engine.execute(script, bindings), context);
+                        assertEquals(test[3], engine.execute(constant, bindings), mode + " " + literals);
+                    }
+                }
+            }
+        }
+    }
+
+    // Source for a number, with NaN and the infinities made from arithmetic.
+    private static String literal(Object value) {
+        if (value instanceof Long l) return l == Long.MIN_VALUE ? "(-9223372036854775807 - 1)" : l.toString();
+        double d = (double) value;
+        if (Double.isNaN(d)) return "(0.0 / 0.0)";
+        if (Double.isInfinite(d)) return "(1.0 / 0.0)";
+        if (d == 0 && 1 / d < 0) return "(-0.0)";
+        return new java.math.BigDecimal(d).toPlainString() + (d == Math.rint(d) ? ".0" : "");
+    }
+
+    @Test
+    void scriptsWithMoreConstantsThanAChunkHoldsRunInEveryMode() {
+        // Balanced, so the script is not deep and the VM would take it.
+        String source = sum(0, 70_000);
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            RLangEngine engine = new RLangEngine(mode, false, 0, 1);
+            Script script = engine.compile(source, new Diagnostics());
+            assertNotNull(script, mode.name());
+            for (int run = 0; run < 2; run++) {
+                assertEquals(70_000L * 69_999 / 2, engine.execute(script), mode.name());
+            }
+        }
+    }
+
+    // The integers from..to-1 added pairwise.
+    private static String sum(int from, int to) {
+        if (to - from == 1) return Integer.toString(from);
+        int middle = (from + to) >>> 1;
+        return "(" + sum(from, middle) + " + " + sum(middle, to) + ")";
+    }
+
+    @Test
+    void specializingTreeSharedAcrossThreads() throws Exception {
+        String source = "(x * 3 + 1) - (x * 1 - 7) + (x / 2) * -x + \"s\" + (x > 2 == (x >= 3)) + x";
+        RLangEngine engine = new RLangEngine(ExecutionMode.SPECIALIZING, false, 0, 1);
+        RLangEngine reference = new RLangEngine(ExecutionMode.INTERPRETER, false, 0, 1);
+        Script expected = reference.compile(source, new Diagnostics());
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 300; round++) {
+                // A fresh tree each round, so its nodes specialize and then
+                // generalize while all threads are running it.
+                Script script = engine.compile(source, new Diagnostics());
+                List<Future<Integer>> mismatches = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    int thread = t;
+                    mismatches.add(threads.submit(() -> {
+                        int count = 0;
+                        for (int i = 0; i < 60; i++) {
+                            Object x = ((i + thread) & 1) == 0 ? (Object) (long) (i + 2) : (Object) (i + 2.5);
+                            Map<String, Object> bindings = Map.of("x", x);
+                            if (!Objects.equals(evaluate(reference, expected, bindings), evaluate(engine, script, bindings))) {
+                                count++;
+                            }
+                        }
+                        return count;
+                    }));
+                }
+                for (Future<Integer> mismatch : mismatches) assertEquals(0, mismatch.get(), "round " + round);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void jitRecompilesWithoutKindsThatKeepChanging() {
+        RLangEngine engine = new RLangEngine(ExecutionMode.JIT, false, 0, 1);
+        Script script = engine.compile("x * 2 + 1", new Diagnostics());
+        for (int i = 0; i < 4 * Script.MAX_DEOPTIMIZATIONS; i++) {
+            Object x = (i & 1) == 0 ? (Object) (long) i : (Object) (i + 0.5);
+            assertEquals(x instanceof Long l ? (Object) (l * 2 + 1) : (Object) ((double) x * 2 + 1), engine.execute(script, Map.of("x", x)));
+        }
+        // The code it settled on handles both kinds without deoptimizing.
+        assertEquals(7L, script.compiled(1, Map.of()).evaluate(Map.of("x", 3L)));
+        assertEquals(8.0, script.compiled(1, Map.of()).evaluate(Map.of("x", 3.5)));
+    }
+
+    @Test
+    void jitKeepsCodeThatFailsOnlyNowAndThen() {
+        RLangEngine engine = new RLangEngine(ExecutionMode.JIT, false, 0, 1);
+        Script script = engine.compile("x * 2 + 1", new Diagnostics());
+        engine.execute(script, Map.of("x", 1L));
+        CompiledExpression specialized = script.compiled(1, Map.of());
+        for (int i = 0; i < 100 * Script.MAX_DEOPTIMIZATIONS; i++) {
+            Object x = i % 50 == 0 ? (Object) (i + 0.5) : (Object) (long) i;
+            assertEquals(x instanceof Long l ? (Object) (l * 2 + 1) : (Object) ((double) x * 2 + 1), engine.execute(script, Map.of("x", x)));
+        }
+        assertSame(specialized, script.compiled(1, Map.of()));
+    }
+
+    @Test
+    void jitGivesUpOnCodeThatAlwaysFails() {
+        RLangEngine engine = new RLangEngine(ExecutionMode.JIT, false, 0, 1);
+        // Two integer literals that overflow on every run, whatever x is,
+        // so compiled code always throws.
+        Script script = engine.compile("9223372036854775807 + 1 + x", new Diagnostics());
+        for (int i = 0; i < 4 * Script.MAX_DEOPTIMIZATIONS; i++) {
+            assertEquals(9.223372036854775807E18 + 2, engine.execute(script, Map.of("x", 1L)));
+        }
+        assertNull(script.compiled(1, Map.of("x", 1L)));
+    }
+
+    @Test
+    void profiledJitKeepsRunningCompiledCode() throws Exception {
+        try (Profiler profiler = new Profiler(1000, null)) {
+            RLangEngine engine = new RLangEngine(ExecutionMode.JIT, false, 0, 1, false, false, profiler);
+            Script script = engine.compile("x * 2\n+ 1", new Diagnostics());
+            for (int i = 0; i < 10; i++) assertEquals(2L * i + 1, engine.execute(script, Map.of("x", (long) i)));
+            assertNotNull(script.compiled(1, Map.of()));
+        }
+    }
+
+    @Test
+    void profilerSamplesModesItCannotSeeIntoOnTheInterpreter() throws Exception {
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.VM, ExecutionMode.SPECIALIZING}) {
+            try (Profiler profiler = new Profiler(100, null)) {
+                RLangEngine engine = new RLangEngine(mode, false, 0, 1, false, false, profiler);
+                Script script = engine.compile("(x * 2 + 1) * (x - 3) / (x + 0.5)\n- x * x", new Diagnostics());
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                for (long i = 0; profiler.samples() == 0 && System.nanoTime() < deadline; i++) {
+                    engine.execute(script, Map.of("x", i));
+                }
+                StringWriter profile = new StringWriter();
+                profiler.writeCollapsed(profile);
+                assertTrue(profile.toString().contains("' line "), mode + ": " + profile);
+            }
+        }
+    }
+
+    static String evaluate(RLangEngine engine, Script script, Map<String, Object> bindings) {
+        return RandomScripts.describe(() -> engine.execute(script, bindings));
+    }
+
+    // The same bindings with x of the other number kind and y a string, to
+    // send specialized forms down their slow paths.
+    static Map<String, Object> flipped(Map<String, Object> bindings) {
+        Map<String, Object> flipped = new HashMap<>(bindings);
+        Object x = bindings.get("x");
+        flipped.put("x", x instanceof Long l ? (Object) (double) l : (Object) (long) (double) x);
+        flipped.put("y", "str");
+        return flipped;
+    }
+}
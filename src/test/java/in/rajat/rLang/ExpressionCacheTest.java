@@ -0,0 +1,40 @@
+package in.rajat.rLang;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * The bound is on the whole cache, whatever its size and however the
+ * sources spread over segments.
+ */
+class ExpressionCacheTest {
+    private static final Script SCRIPT = new Script(null, 1);
+
+    @Test
+    void holdsNoMoreThanMaxEntries() {
+        for (int maxEntries : new int[]{1, 3, 15, 17, 100}) {
+            ExpressionCache cache = new ExpressionCache(maxEntries);
+            for (int i = 0; i < 1000; i++) {
+                cache.put("source " + i, SCRIPT);
+                assertEquals(Math.min(i + 1, maxEntries), cache.size(), "maxEntries " + maxEntries);
+            }
+            assertEquals(1000 - maxEntries, cache.evictions());
+            assertEquals(maxEntries, cache.capacity());
+            // The latest put always stays.
+            assertNotNull(cache.get("source 999"));
+        }
+    }
+
+    @Test
+    void fillsUpWhenSourcesShareASegment() {
+        // "Aa" and "BB" have the same hash, so these all land in one segment.
+        String[] sources = {"AaAa", "AaBB", "BBAa", "BBBB"};
+        ExpressionCache cache = new ExpressionCache(4);
+        for (String source : sources) cache.put(source, SCRIPT);
+        assertEquals(4, cache.size());
+        assertEquals(0, cache.evictions());
+        for (String source : sources) assertNotNull(cache.get(source), source);
+    }
+}
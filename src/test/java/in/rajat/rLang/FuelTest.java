@@ -0,0 +1,68 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Metered runs stop exactly when the fuel runs out, and sliced evaluations
+ * reach the value an unmetered run does.
+ */
+class FuelTest {
+    // 8 operators.
+    private static final String SOURCE = "(x * 2 + 1) * (x - 3) / (x + 0.5)\n- -x";
+
+    @Test
+    void stopsWhenTheFuelRunsOut() {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            RLangEngine engine = new RLangEngine(mode, false, 0, 1);
+            Script script = engine.compile(SOURCE, new Diagnostics());
+            assertEquals(8, script.operations());
+            Object expected = engine.execute(script, Map.of("x", 4L));
+
+            Fuel enough = new Fuel(8);
+            assertEquals(expected, engine.execute(script, Map.of("x", 4L), enough), mode.name());
+            assertEquals(8, enough.used());
+
+            Fuel tooLittle = new Fuel(7);
+            OutOfFuelError error = assertThrows(OutOfFuelError.class, () -> engine.execute(script, Map.of("x", 4L), tooLittle));
+            assertEquals(7, tooLittle.used());
+            assertEquals(7, error.limit);
+            // The unary minus on the second line is the one left.
+            assertEquals(2, error.line);
+        }
+    }
+
+    @Test
+    void resumesInSlices() {
+        RLangEngine engine = new RLangEngine(ExecutionMode.INTERPRETER, false, 0);
+        Script script = engine.compile(SOURCE, new Diagnostics());
+        Object expected = engine.execute(script, Map.of("x", 4L));
+        for (long slice = 1; slice <= 8; slice++) {
+            Evaluation evaluation = engine.start(script, Map.of("x", 4L));
+            int slices = 0;
+            while (!evaluation.resume(slice)) slices++;
+            assertEquals(expected, evaluation.value(), "slices of " + slice);
+            assertEquals(8, evaluation.fuelUsed());
+            assertEquals((8 + slice - 1) / slice - 1, slices, "slices of " + slice);
+            assertTrue(evaluation.resume(1));
+        }
+    }
+
+    @Test
+    void cannotBeResumedAfterFailing() {
+        RLangEngine engine = new RLangEngine(ExecutionMode.INTERPRETER, false, 0);
+        Evaluation evaluation = engine.start(engine.compile("(1 + 2) * (3 - \"a\")", new Diagnostics()), Map.of());
+        assertFalse(evaluation.resume(1));
+        assertThrows(RuntimeError.class, () -> evaluation.resume(10));
+        assertFalse(evaluation.done());
+        assertThrows(IllegalStateException.class, () -> evaluation.resume(10));
+        assertThrows(IllegalStateException.class, evaluation::value);
+    }
+}
@@ -0,0 +1,100 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import in.rajat.rLang.expressions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Random edits to random scripts: after every one the incremental parser
+ * must report what a full compile of the new text reports, and build the
+ * same tree, down to the lines, or none when the compile fails.
+ */
+class IncrementalParserTest {
+    private static final int SCRIPTS = 300;
+    private static final int EDITS = 40;
+    // Pieces that split, join and break tokens: operators that pair up,
+    // unterminated strings, lines, and characters the scanner rejects.
+    private static final String[] INSERTS = {
+            "+", "-", "*", "/", "=", "!", "<", ">", "(", ")", "\"", "\n", " ", "1", "2.5", ".", "x", "y", "q",
+            "@", "#", "== 3", " + (y", "\"a\nb\"", "9223372036854775808", "NULL", "true", "// c\n"
+    };
+
+    private final RLangEngine engine = new RLangEngine(ExecutionMode.INTERPRETER, false, 0);
+
+    @Test
+    void randomEditsMatchAFullCompile() {
+        RandomScripts scripts = new RandomScripts(18);
+        Random random = scripts.random();
+        for (int i = 0; i < SCRIPTS; i++) {
+            String text = scripts.expression(4).replace(" + ", random.nextBoolean() ? "\n+ " : " + ");
+            IncrementalParser parser = new IncrementalParser(text);
+            check(parser, text);
+            for (int e = 0; e < EDITS; e++) {
+                int length = text.length();
+                int offset = random.nextInt(length + 1);
+                int removed = random.nextInt(3) == 0 ? random.nextInt(Math.min(length - offset, 6) + 1) : 0;
+                String inserted = random.nextInt(4) == 0 ? "" : INSERTS[random.nextInt(INSERTS.length)];
+                parser.edit(offset, removed, inserted);
+                text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+                check(parser, text);
+            }
+        }
+    }
+
+    @Test
+    void lexicalErrorsLeaveNoExpression() {
+        IncrementalParser parser = new IncrementalParser("1 + 2");
+        parser.edit(1, 0, "@");
+        assertEquals(1, parser.diagnostics().messages().size());
+        assertNull(parser.expression());
+        assertNull(parser.script());
+    }
+
+    private void check(IncrementalParser parser, String text) {
+        Diagnostics diagnostics = new Diagnostics();
+        Script expected = engine.compile(text, diagnostics);
+        assertEquals(text, parser.text());
+        assertEquals(diagnostics.messages(), parser.diagnostics().messages(), text);
+        assertEquals(expected == null ? null : print(expected.expression), print(parser.expression()), text);
+        Script script = parser.script();
+        assertEquals(expected == null ? null : print(expected.expression), script == null ? null : print(script.expression), text);
+    }
+
+    private static String print(Expression expression) {
+        return expression == null ? null : expression.accept(new Printer());
+    }
+
+    // Structure, values with their kinds, and the lines of operators and
+    // variables, which runtime errors report.
+    private static class Printer implements Expression.Visitor<String> {
+        @Override
+        public String visitBinaryExpr(BinaryExpr expr) {
+            return "(" + expr.operator.type + "@" + expr.operator.line + " " + expr.left.accept(this) + " " + expr.right.accept(this) + ")";
+        }
+
+        @Override
+        public String visitGroupingExpr(GroupingExpr expr) {
+            return "(group " + expr.expression.accept(this) + ")";
+        }
+
+        @Override
+        public String visitLiteralExpr(LiteralExpr expr) {
+            return expr.value == null ? "nil" : expr.value.getClass().getSimpleName() + ":" + expr.value;
+        }
+
+        @Override
+        public String visitUnaryExpr(UnaryExpr expr) {
+            return "(" + expr.operator.type + "@" + expr.operator.line + " " + expr.right.accept(this) + ")";
+        }
+
+        @Override
+        public String visitVariableExpr(VariableExpr expr) {
+            return expr.identifier + "@" + expr.name.line;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import in.rajat.rLang.enums.TokenType;
+import in.rajat.rLang.expressions.BinaryExpr;
+import in.rajat.rLang.expressions.Expression;
+import in.rajat.rLang.expressions.LiteralExpr;
+import in.rajat.rLang.expressions.UnaryExpr;
+import in.rajat.rLang.expressions.VariableExpr;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Folding, and identities that are only dropped when the operand's kind
+ * shows they cannot hide an error or change a value's kind.
+ */
+class OptimizerTest {
+    private final RLangEngine engine = new RLangEngine(ExecutionMode.INTERPRETER, false, 0);
+
+    @Test
+    void foldsConstantsAndDropsGroupings() {
+        assertEquals(7L, ((LiteralExpr) optimize("1 + 2 * 3")).value);
+        assertEquals(3.5, ((LiteralExpr) optimize("7 / 2")).value);
+        assertEquals("ab1", ((LiteralExpr) optimize("\"a\" + \"b\" + 1")).value);
+        assertInstanceOf(VariableExpr.class, optimize("((x))"));
+        // An error stays in the tree, to be raised when the script runs.
+        assertOperator(TokenType.MINUS, optimize("1 - \"a\""));
+    }
+
+    @Test
+    void dropsIdentitiesOnOperandsOfAKnownKind() {
+        // Division yields a double, so any 1 leaves it alone.
+        assertOperator(TokenType.SLASH, optimize("(x / 2) * 1"));
+        assertOperator(TokenType.SLASH, optimize("1.0 * (x / 2)"));
+        assertOperator(TokenType.SLASH, optimize("(x / 2) / 1"));
+        // Integer arithmetic stays a number under an integer 0 or 1.
+        assertOperator(TokenType.STAR, optimize("(x * 2) - 0"));
+        assertOperator(TokenType.STAR, optimize("(x * 2) * 1"));
+        assertOperator(TokenType.SLASH, optimize("-(-(x / 2))"));
+        assertOperator(TokenType.LESS, optimize("!!(x < 1)"));
+    }
+
+    @Test
+    void keepsIdentitiesThatCouldChangeTheResult() {
+        // x may be a string or a boolean, where these raise errors.
+        assertOperator(TokenType.STAR, optimize("x * 1"));
+        assertOperator(TokenType.MINUS, optimize("x - 0"));
+        assertOperator(TokenType.BANG, optimize("!!x"));
+        // A double 1 or 0 would turn an integer into a double.
+        assertOperator(TokenType.STAR, optimize("(x * 2) * 1.0"));
+        assertOperator(TokenType.MINUS, optimize("(x * 2) - 0.0"));
+        // Negating the smallest long yields a double.
+        assertOperator(TokenType.MINUS, optimize("-(-(x * 2))"));
+        // -0.0 + 0 is 0.0.
+        assertOperator(TokenType.PLUS, optimize("(x / 2) + 0"));
+    }
+
+    @Test
+    void longPlusChainsOptimizeInLinearTime() {
+        // The kind of the chain decides whether the * 1 goes.
+        StringBuilder source = new StringBuilder("(x * 2");
+        for (int i = 1; i < 500; i++) source.append(" + x * 2");
+        source.append(") * 1");
+        Expression parsed = parse(source.toString());
+        Expression optimized = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> new Optimizer().optimize(parsed));
+        assertOperator(TokenType.PLUS, optimized);
+    }
+
+    private Expression parse(String source) {
+        return engine.compile(source, new Diagnostics()).expression;
+    }
+
+    private Expression optimize(String source) {
+        return new Optimizer().optimize(parse(source));
+    }
+
+    private static void assertOperator(TokenType expected, Expression expression) {
+        TokenType actual = expression instanceof BinaryExpr binary ? binary.operator.type
+                : expression instanceof UnaryExpr unary ? unary.operator.type : null;
+        assertEquals(expected, actual, String.valueOf(expression));
+    }
+}
@@ -0,0 +1,145 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Requests and responses over both transports: one line back per line
+ * sent, in order, whether the client waits for each answer or not.
+ */
+class RLangServerTest {
+    private static final int CLIENTS = 50;
+
+    @Test
+    void answersOverTcp() throws Exception {
+        try (RLangServer server = RLangServer.tcp(new RLangEngine(ExecutionMode.VM, false, 16), 0)) {
+            Future<?> serving = serve(server);
+            roundTrips(server);
+            server.close();
+            serving.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void answersOverAUnixSocket(@TempDir Path directory) throws Exception {
+        Path socket = directory.resolve("rlang.sock");
+        try (RLangServer server = RLangServer.unix(new RLangEngine(ExecutionMode.VM, false, 16), socket)) {
+            Future<?> serving = serve(server);
+            roundTrips(server);
+            server.close();
+            serving.get(10, TimeUnit.SECONDS);
+            assertFalse(Files.exists(socket));
+        }
+    }
+
+    @Test
+    void answersConcurrentClients() throws Exception {
+        try (RLangServer server = RLangServer.tcp(new RLangEngine(ExecutionMode.VM, false, 16), 0)) {
+            Future<?> serving = serve(server);
+            ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+            try {
+                List<Future<?>> sessions = new ArrayList<>();
+                for (int i = 0; i < CLIENTS; i++) {
+                    long n = i;
+                    sessions.add(clients.submit(() -> {
+                        try (Client client = new Client(server)) {
+                            for (int j = 0; j < 100; j++) {
+                                assertEquals("OK " + (n * 1000 + j), client.ask(n + " * 1000 + " + j));
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> session : sessions) session.get(30, TimeUnit.SECONDS);
+            } finally {
+                clients.shutdownNow();
+            }
+            server.close();
+            serving.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void closeDisconnectsClients() throws Exception {
+        RLangServer server = RLangServer.tcp(new RLangEngine(ExecutionMode.VM, false, 16), 0);
+        Future<?> serving = serve(server);
+        try (Client client = new Client(server)) {
+            assertEquals("OK 2", client.ask("1 + 1"));
+            server.close();
+            serving.get(10, TimeUnit.SECONDS);
+            assertNull(client.in.readLine());
+        }
+    }
+
+    private static void roundTrips(RLangServer server) throws IOException {
+        try (Client client = new Client(server)) {
+            assertEquals("OK 7", client.ask("1 + 2 * 3"));
+            assertEquals("OK ab", client.ask("\"a\" + \"b\""));
+            String syntaxError = client.ask("1 +");
+            assertTrue(syntaxError.startsWith("ERROR "), syntaxError);
+            String runtimeError = client.ask("\"a\" - 1");
+            assertTrue(runtimeError.startsWith("ERROR "), runtimeError);
+
+            // Several requests before reading any answer.
+            for (int i = 0; i < 1000; i++) client.out.write(i + " + 1\n");
+            client.out.flush();
+            for (int i = 0; i < 1000; i++) assertEquals("OK " + (i + 1), client.in.readLine());
+        }
+    }
+
+    private static Future<?> serve(RLangServer server) {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> serving = executor.submit(() -> {
+            server.serve();
+            return null;
+        });
+        executor.shutdown();
+        return serving;
+    }
+
+    private static final class Client implements AutoCloseable {
+        final SocketChannel channel;
+        final BufferedReader in;
+        final Writer out;
+
+        Client(RLangServer server) throws IOException {
+            channel = SocketChannel.open(server.address());
+            in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            out = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+        }
+
+        String ask(String source) throws IOException {
+            out.write(source + "\n");
+            out.flush();
+            return in.readLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package in.rajat.rLang;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Random, mostly well-formed rLang sources and bindings for the differential
+ * tests. Seeded, so a failure names the script that caused it and repeats.
+ */
+final class RandomScripts {
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "==", "!=", "<", "<=", ">", ">=", "*", "-"};
+    // Integers around the edges of a long and of exact doubles.
+    private static final String[] BIG = {
+            "9223372036854775807", "9223372036854775806", "4611686018427387904", "3037000500",
+            "9007199254740993", "9007199254740992", "99999999999999999999", "0"
+    };
+
+    private final Random random;
+
+    RandomScripts(long seed) {
+        this.random = new Random(seed);
+    }
+
+    Random random() {
+        return random;
+    }
+
+    // An expression nested at most `depth` operators deep.
+    String expression(int depth) {
+        if (depth == 0 || random.nextInt(5) == 0) return leaf();
+        switch (random.nextInt(10)) {
+            case 0:
+                return "-" + expression(depth - 1);
+            case 1:
+                return "!" + expression(depth - 1);
+            case 2: {
+                StringBuilder sum = new StringBuilder(expression(depth - 1));
+                for (int i = 2 + random.nextInt(5); i > 0; i--) sum.append(" + ").append(expression(depth - 1));
+                return "(" + sum + ")";
+            }
+            default:
+                return "(" + expression(depth - 1) + " " + OPERATORS[random.nextInt(OPERATORS.length)] + " "
+                        + expression(depth - 1) + ")";
+        }
+    }
+
+    private String leaf() {
+        return switch (random.nextInt(13)) {
+            case 0 -> "x";
+            case 1 -> "y";
+            case 2 -> "s";
+            case 3 -> BIG[random.nextInt(BIG.length)];
+            case 4 -> random.nextInt(4) + ".5";
+            case 5 -> "2.0";
+            case 6 -> "\"q\"";
+            case 7 -> "true";
+            case 8 -> "NULL";
+            case 9 -> "9007199254740992.0";
+            default -> Integer.toString(random.nextInt(7));
+        };
+    }
+
+    // Values for x, y and s, with x and y of either number kind.
+    Map<String, Object> bindings() {
+        Map<String, Object> bindings = new HashMap<>();
+        bindings.put("x", random.nextBoolean() ? (Object) (long) (random.nextInt(7) - 3) : (Object) (random.nextInt(5) * 0.5));
+        bindings.put("y", switch (random.nextInt(4)) {
+            case 0 -> Long.MAX_VALUE;
+            case 1 -> Long.MIN_VALUE;
+            case 2 -> 9007199254740993L;
+            default -> 3.0;
+        });
+        bindings.put("s", "str");
+        return bindings;
+    }
+
+    /**
+     * A result as the tests compare it: the value with its kind, so 2 and 2.0
+     * differ, or the runtime error with its line.
+     */
+    static String describe(Supplier<Object> evaluation) {
+        try {
+            Object value = evaluation.get();
+            return (value == null ? "null" : value.getClass().getSimpleName()) + " " + Values.stringify(value);
+        } catch (RuntimeError error) {
+            return "error " + error.getMessage() + " [line " + error.line + "]";
+        }
+    }
+}
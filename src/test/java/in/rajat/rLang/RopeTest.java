@@ -0,0 +1,77 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Ropes join short pieces eagerly and long ones lazily, flatten without
+ * recursing, and never escape an evaluation.
+ */
+class RopeTest {
+    private static final int PIECES = 100_000;
+
+    @Test
+    void joinsShortPiecesIntoStrings() {
+        String half = "a".repeat(Rope.FLAT_LIMIT / 2);
+        assertEquals(half + half, assertInstanceOf(String.class, Rope.concat(half, half)));
+
+        Object rope = assertInstanceOf(Rope.class, Rope.concat(half, half + "b"));
+        assertEquals(Rope.FLAT_LIMIT + 1, Rope.length(rope));
+        assertEquals(half + half + "b", rope.toString());
+        // Flattened once.
+        assertSame(rope.toString(), rope.toString());
+    }
+
+    @Test
+    void flattensDeepRopes() {
+        String piece = "x".repeat(Rope.FLAT_LIMIT);
+        Object leftDeep = piece;
+        Object rightDeep = piece;
+        for (int i = 1; i < PIECES; i++) {
+            leftDeep = Rope.concat(leftDeep, piece);
+            rightDeep = Rope.concat(piece, rightDeep);
+        }
+        String expected = piece.repeat(PIECES);
+
+        StringBuilder out = new StringBuilder();
+        ((Rope) leftDeep).appendTo(out);
+        assertEquals(expected, out.toString());
+        assertEquals(expected, leftDeep.toString());
+        assertEquals(expected, rightDeep.toString());
+        // A flattened rope inside another is written from its flat form.
+        Object outer = Rope.concat(leftDeep, "y");
+        assertEquals(expected + "y", outer.toString());
+    }
+
+    @Test
+    void concatenationChainsInEveryMode() {
+        StringBuilder source = new StringBuilder("n + n");
+        StringBuilder expected = new StringBuilder("2");
+        for (int i = 1; i <= 2000; i++) {
+            source.append(i % 3 == 0 ? " + n" : " + s");
+            expected.append(i % 3 == 0 ? "1" : "abc");
+        }
+        source.append(" + \"!\"");
+        expected.append('!');
+        Map<String, Object> bindings = Map.of("n", 1L, "s", "abc");
+
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            for (boolean optimize : new boolean[]{false, true}) {
+                RLangEngine engine = new RLangEngine(mode, optimize, 0, 1);
+                Script script = engine.compile(source.toString(), new Diagnostics());
+                String context = mode + (optimize ? " optimized" : "");
+                // Twice, so a compiled form runs as well as the first.
+                for (int run = 0; run < 2; run++) {
+                    Object value = engine.execute(script, bindings);
+                    assertEquals(expected.toString(), assertInstanceOf(String.class, value, context), context);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.models.Token;
+import in.rajat.rLang.models.TokenBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Scanning from a Reader, whose chunks end anywhere, gives the same tokens
+ * as scanning the whole String.
+ */
+class ScannerTest {
+    // Tokens that are more than one character long or look ahead.
+    private static final String[] TOKENS = {
+            "identifier_42", "12345.6789", "9007199254740993", "\"a string\nover two lines\"", "<=", "!=",
+            "// a comment\n", "true", "1.", "NULL"
+    };
+    private static final int CHUNK = 8192;
+
+    @Test
+    void tokensAcrossTheChunkBoundary() {
+        for (String token : TOKENS) {
+            // Every way the token can be cut by the end of the first chunk.
+            for (int offset = CHUNK - token.length(); offset <= CHUNK; offset++) {
+                String source = "x\n".repeat(offset / 2) + " ".repeat(offset % 2) + token + " + y";
+                assertSameTokens(source, new StringReader(source));
+            }
+        }
+    }
+
+    @Test
+    void tokensLongerThanAChunk() {
+        String source = "\"" + "s".repeat(3 * CHUNK) + "\" + " + "v".repeat(CHUNK + 7) + " + 1.5";
+        assertSameTokens(source, new StringReader(source));
+    }
+
+    @Test
+    void readersThatReturnFewCharacters() {
+        String source = "(alpha + 12.5) * beta_2 >= \"str\" + 42 != true // done\n- x".repeat(400);
+        assertSameTokens(source, new Trickle(source));
+    }
+
+    private static void assertSameTokens(String source, Reader reader) {
+        Diagnostics stringDiagnostics = new Diagnostics();
+        TokenBuffer expected = new RScanner(source, stringDiagnostics).scanTokenBuffer();
+        Diagnostics readerDiagnostics = new Diagnostics();
+        List<Token> actual = new RScanner(reader, readerDiagnostics).scanTokens();
+        assertFalse(stringDiagnostics.hadError() || readerDiagnostics.hadError(), source);
+
+        assertEquals(expected.size(), actual.size(), source);
+        for (int i = 0; i < actual.size(); i++) {
+            Token token = actual.get(i);
+            Token reference = expected.token(i);
+            String context = i + ": " + token;
+            assertEquals(reference.type, token.type, context);
+            assertEquals(reference.lexeme(), token.lexeme(), context);
+            assertEquals(reference.literal, token.literal, context);
+            assertEquals(reference.line, token.line, context);
+        }
+    }
+
+    // Hands out at most 3 characters per read.
+    private static final class Trickle extends Reader {
+        private final StringReader in;
+
+        Trickle(String source) {
+            this.in = new StringReader(source);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws java.io.IOException {
+            return in.read(buffer, offset, Math.min(length, 3));
+        }
+
+        @Override
+        public void close() {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import in.rajat.rLang.expressions.ExpressionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Precompiled files: scripts read back from them behave like the source, and
+ * truncated or corrupt ones are stale rather than fatal.
+ */
+class ScriptFileTest {
+    private static final int SCRIPTS = 500;
+    private static final int HEADER = 4 + 2 + 1 + 32;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsRandomScripts() throws IOException {
+        RandomScripts scripts = new RandomScripts(14);
+        RLangEngine engine = new RLangEngine(ExecutionMode.INTERPRETER, false, 0, 1);
+        Path source = directory.resolve("a.rl");
+        Path compiled = ScriptFile.compiledPath(source);
+        for (int i = 0; i < SCRIPTS; i++) {
+            String text = scripts.expression(4);
+            Files.writeString(source, text);
+            Script expected = engine.compile(text, new Diagnostics());
+            if (expected == null) continue;
+            Files.deleteIfExists(compiled);
+            assertNotNull(engine.load(source, new Diagnostics()), text);
+
+            Script read = ScriptFile.read(compiled, ScriptFile.hash(source), false, ExpressionFactory.PLAIN);
+            assertNotNull(read, text);
+            Map<String, Object> bindings = scripts.bindings();
+            assertEquals(ExecutionModesTest.evaluate(engine, expected, bindings), ExecutionModesTest.evaluate(engine, read, bindings), text);
+        }
+    }
+
+    @Test
+    void corruptFilesAreStale() throws IOException {
+        RLangEngine engine = new RLangEngine(ExecutionMode.INTERPRETER, false, 0, 1);
+        Path source = directory.resolve("a.rl");
+        Path compiled = ScriptFile.compiledPath(source);
+        String text = "(x + \"q\") + (y * 2.5 - -3 >= 4) + x";
+        Files.writeString(source, text);
+        engine.load(source, new Diagnostics());
+        byte[] valid = Files.readAllBytes(compiled);
+        byte[] hash = ScriptFile.hash(source);
+
+        for (int length = 0; length < valid.length; length++) {
+            Files.write(compiled, Arrays.copyOf(valid, length));
+            assertNull(ScriptFile.read(compiled, hash, false, ExpressionFactory.PLAIN), "truncated to " + length);
+        }
+
+        // A string count of -1, and counts and lengths far past the end.
+        for (byte[] count : new byte[][]{
+                {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f},
+                {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07},
+                {0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07}}) {
+            ByteBuffer corrupt = ByteBuffer.allocate(HEADER + count.length);
+            corrupt.put(valid, 0, HEADER).put(count);
+            Files.write(compiled, corrupt.array());
+            assertNull(ScriptFile.read(compiled, hash, false, ExpressionFactory.PLAIN), Arrays.toString(count));
+        }
+
+        // Anything past the header may decode to some other script, but must
+        // never escape as an exception.
+        Random random = new Random(14);
+        for (int i = 0; i < 5000; i++) {
+            byte[] corrupt = valid.clone();
+            for (int flips = 1 + random.nextInt(3); flips > 0; flips--) {
+                corrupt[HEADER + random.nextInt(corrupt.length - HEADER)] = (byte) random.nextInt(256);
+            }
+            Files.write(compiled, corrupt);
+            ScriptFile.read(compiled, hash, false, ExpressionFactory.PLAIN);
+        }
+
+        // Loading falls back to the source and rewrites the file.
+        Files.write(compiled, new byte[]{'R', 'L', 'N', 'G', 0, 2, 0});
+        Map<String, Object> bindings = Map.of("x", "s", "y", 1L);
+        assertEquals(engine.execute(engine.compile(text, new Diagnostics()), bindings),
+                engine.execute(engine.load(source, new Diagnostics()), bindings));
+        assertArrayEquals(valid, Files.readAllBytes(compiled));
+    }
+
+    @Test
+    void truncatedOrUnreadableFilesAreCompiledFromSource() throws IOException {
+        RLangEngine engine = new RLangEngine(ExecutionMode.INTERPRETER, false, 0, 1);
+        Path source = directory.resolve("b.rl");
+        Path compiled = ScriptFile.compiledPath(source);
+        String text = "x * 3 + -y";
+        Files.writeString(source, text);
+        Map<String, Object> bindings = Map.of("x", 2L, "y", 0.5);
+
+        // Cut off in the middle of its nodes.
+        engine.load(source, new Diagnostics());
+        byte[] valid = Files.readAllBytes(compiled);
+        Files.write(compiled, Arrays.copyOf(valid, valid.length - 3));
+        assertEquals(5.5, engine.execute(engine.load(source, new Diagnostics()), bindings));
+        assertArrayEquals(valid, Files.readAllBytes(compiled));
+
+        // A directory in its place cannot be read, or replaced.
+        Files.delete(compiled);
+        Files.createDirectory(compiled);
+        assertNull(ScriptFile.read(compiled, ScriptFile.hash(source), false, ExpressionFactory.PLAIN));
+        assertEquals(5.5, engine.execute(engine.load(source, new Diagnostics()), bindings));
+    }
+}
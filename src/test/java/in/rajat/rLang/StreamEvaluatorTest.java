@@ -0,0 +1,126 @@
+package in.rajat.rLang;
+
+import in.rajat.rLang.enums.ExecutionMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Streamed output comes back in input order whatever the number of
+ * workers, and a consumer that stops reading stops the input being read.
+ */
+class StreamEvaluatorTest {
+    private static final int LINES = 20_000;
+
+    @Test
+    void writesInInputOrder() throws Exception {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expectedOut = new StringBuilder();
+        int syntaxErrors = 0, runtimeErrors = 0;
+        for (int i = 0; i < LINES; i++) {
+            if (i % 97 == 0) {
+                input.append(i).append(" +\n");
+                syntaxErrors++;
+            } else if (i % 89 == 0) {
+                input.append("\"").append(i).append("\" - 1\n");
+                runtimeErrors++;
+            } else {
+                input.append(i).append(" * 2 + 1\n");
+                expectedOut.append(i * 2L + 1).append('\n');
+            }
+        }
+
+        String expectedErr = null;
+        for (int workers : new int[]{1, 2, 8}) {
+            RLangEngine engine = new RLangEngine(ExecutionMode.VM, false, 0);
+            StringWriter out = new StringWriter();
+            StringWriter err = new StringWriter();
+            StreamEvaluator.Summary summary = new StreamEvaluator(engine, workers)
+                    .run(new StringReader(input.toString()), out, err);
+
+            assertEquals(expectedOut.toString(), out.toString(), workers + " workers");
+            assertEquals(LINES, summary.lines);
+            assertEquals(syntaxErrors, summary.syntaxErrors);
+            assertEquals(runtimeErrors, summary.runtimeErrors);
+            // The messages come in the same order whatever the workers.
+            if (expectedErr == null) expectedErr = err.toString();
+            assertEquals(expectedErr, err.toString(), workers + " workers");
+        }
+        assertEquals(syntaxErrors + runtimeErrors, expectedErr.lines().filter(line -> line.contains("line 1")).count());
+    }
+
+    @Test
+    void stopsReadingWhileTheOutputIsBlocked() throws Exception {
+        // Endless input, counted as it is read.
+        AtomicLong read = new AtomicLong();
+        CountDownLatch ended = new CountDownLatch(1);
+        BufferedReader input = new BufferedReader(new StringReader("")) {
+            @Override
+            public String readLine() {
+                if (ended.getCount() == 0) return null;
+                read.incrementAndGet();
+                return "1 + 1";
+            }
+
+            @Override
+            public boolean ready() {
+                return true;
+            }
+        };
+        CountDownLatch unblocked = new CountDownLatch(1);
+        StringWriter written = new StringWriter();
+        Writer out = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                try {
+                    unblocked.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                written.write(buffer, offset, length);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RLangEngine engine = new RLangEngine(ExecutionMode.VM, false, 0);
+            Future<StreamEvaluator.Summary> run = executor.submit(
+                    () -> new StreamEvaluator(engine, 2).run(input, out, new StringWriter()));
+
+            // 2 workers keep 8 batches of up to 256 lines in flight.
+            Thread.sleep(500);
+            long stalled = read.get();
+            assertTrue(stalled > 0 && stalled <= 8 * 256, "read " + stalled);
+            Thread.sleep(500);
+            assertEquals(stalled, read.get());
+
+            ended.countDown();
+            unblocked.countDown();
+            StreamEvaluator.Summary summary = run.get(30, TimeUnit.SECONDS);
+            assertEquals(read.get(), summary.lines);
+            assertEquals("2\n".repeat((int) summary.lines), written.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}